@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.annotations.checkers.benchmarks;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Resources;
+import com.google.errorprone.VisitorState;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.MemberReferenceTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreePathScanner;
+import com.sun.tools.javac.api.BasicJavacTask;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+/**
+ * A compilation unit that has been parsed and attributed by javac, along with a
+ * {@link VisitorState} for every tree the checker's matchers are called for, so benchmarks can
+ * call the matchers directly without running the rest of the compiler.
+ */
+final class AttributedSources {
+
+  final CompilationUnitTree unit;
+  final VisitorState unitState;
+  final ImmutableList<IdentifierTree> identifiers;
+  final ImmutableList<VisitorState> identifierStates;
+  final ImmutableList<MemberSelectTree> memberSelects;
+  final ImmutableList<VisitorState> memberSelectStates;
+  final ImmutableList<MemberReferenceTree> memberReferences;
+  final ImmutableList<VisitorState> memberReferenceStates;
+
+  private AttributedSources(CompilationUnitTree unit, VisitorState baseState) {
+    this.unit = unit;
+    this.unitState = baseState.withPath(new TreePath(unit));
+    List<IdentifierTree> identifiers = new ArrayList<>();
+    List<VisitorState> identifierStates = new ArrayList<>();
+    List<MemberSelectTree> memberSelects = new ArrayList<>();
+    List<VisitorState> memberSelectStates = new ArrayList<>();
+    List<MemberReferenceTree> memberReferences = new ArrayList<>();
+    List<VisitorState> memberReferenceStates = new ArrayList<>();
+    new TreePathScanner<Void, Void>() {
+      @Override
+      public Void visitIdentifier(IdentifierTree tree, Void unused) {
+        identifiers.add(tree);
+        identifierStates.add(baseState.withPath(getCurrentPath()));
+        return super.visitIdentifier(tree, null);
+      }
+
+      @Override
+      public Void visitMemberSelect(MemberSelectTree tree, Void unused) {
+        memberSelects.add(tree);
+        memberSelectStates.add(baseState.withPath(getCurrentPath()));
+        return super.visitMemberSelect(tree, null);
+      }
+
+      @Override
+      public Void visitMemberReference(MemberReferenceTree tree, Void unused) {
+        memberReferences.add(tree);
+        memberReferenceStates.add(baseState.withPath(getCurrentPath()));
+        return super.visitMemberReference(tree, null);
+      }
+    }.scan(unit, null);
+    this.identifiers = ImmutableList.copyOf(identifiers);
+    this.identifierStates = ImmutableList.copyOf(identifierStates);
+    this.memberSelects = ImmutableList.copyOf(memberSelects);
+    this.memberSelectStates = ImmutableList.copyOf(memberSelectStates);
+    this.memberReferences = ImmutableList.copyOf(memberReferences);
+    this.memberReferenceStates = ImmutableList.copyOf(memberReferenceStates);
+  }
+
+  /**
+   * Parses and attributes the source with the given resource name (relative to this class)
+   * against the current class path, which includes Guava.
+   */
+  static AttributedSources attribute(String resourceName) throws IOException {
+    String source =
+        Resources.toString(Resources.getResource(AttributedSources.class, resourceName), UTF_8);
+    URI uri = URI.create("string:///" + resourceName);
+    JavaFileObject file =
+        new SimpleJavaFileObject(uri, JavaFileObject.Kind.SOURCE) {
+          @Override
+          public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return source;
+          }
+        };
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    JavacTask task =
+        (JavacTask)
+            ToolProvider.getSystemJavaCompiler()
+                .getTask(
+                    null,
+                    null,
+                    diagnostics,
+                    ImmutableList.of(
+                        "-proc:none", "-classpath", System.getProperty("java.class.path")),
+                    null,
+                    ImmutableList.of(file));
+    CompilationUnitTree unit = task.parse().iterator().next();
+    task.analyze();
+    if (!diagnostics.getDiagnostics().isEmpty()) {
+      throw new IllegalStateException(
+          "Benchmark source " + resourceName + " doesn't compile: " + diagnostics.getDiagnostics());
+    }
+    return new AttributedSources(
+        unit, VisitorState.createForUtilityPurposes(((BasicJavacTask) task).getContext()));
+  }
+
+  /** Returns the total number of trees the matchers are called for. */
+  int treeCount() {
+    return identifiers.size() + memberSelects.size() + memberReferences.size();
+  }
+}
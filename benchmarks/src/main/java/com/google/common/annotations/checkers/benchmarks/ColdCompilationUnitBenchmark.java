@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.annotations.checkers.benchmarks;
+
+import com.google.common.annotations.checkers.BetaChecker;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures a first pass of {@link BetaChecker} over a compilation unit, before any of its
+ * per-compilation caches are populated. Every invocation uses a new checker, and so new caches.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 200)
+@Measurement(iterations = 200)
+@Fork(
+    value = 2,
+    jvmArgsAppend = {
+      "--add-exports=jdk.compiler/com.sun.tools.javac.api=ALL-UNNAMED",
+      "--add-exports=jdk.compiler/com.sun.tools.javac.code=ALL-UNNAMED",
+      "--add-exports=jdk.compiler/com.sun.tools.javac.comp=ALL-UNNAMED",
+      "--add-exports=jdk.compiler/com.sun.tools.javac.file=ALL-UNNAMED",
+      "--add-exports=jdk.compiler/com.sun.tools.javac.main=ALL-UNNAMED",
+      "--add-exports=jdk.compiler/com.sun.tools.javac.model=ALL-UNNAMED",
+      "--add-exports=jdk.compiler/com.sun.tools.javac.parser=ALL-UNNAMED",
+      "--add-exports=jdk.compiler/com.sun.tools.javac.processing=ALL-UNNAMED",
+      "--add-exports=jdk.compiler/com.sun.tools.javac.tree=ALL-UNNAMED",
+      "--add-exports=jdk.compiler/com.sun.tools.javac.util=ALL-UNNAMED",
+      "--add-opens=jdk.compiler/com.sun.tools.javac.code=ALL-UNNAMED",
+      "--add-opens=jdk.compiler/com.sun.tools.javac.comp=ALL-UNNAMED",
+    })
+public class ColdCompilationUnitBenchmark {
+
+  @Param({"GuavaHeavy.java", "JdkOnly.java"})
+  public String source;
+
+  @Param({"true", "false"})
+  public boolean prefilter;
+
+  private AttributedSources sources;
+  private BetaChecker checker;
+  private BetaChecker singlePassChecker;
+
+  @Setup(Level.Trial)
+  public void attribute() throws IOException {
+    sources = AttributedSources.attribute(source);
+  }
+
+  @Setup(Level.Invocation)
+  public void newChecker() {
+    checker = MatcherBenchmark.newChecker(prefilter, false);
+    singlePassChecker = MatcherBenchmark.newChecker(prefilter, true);
+  }
+
+  @Benchmark
+  public void compilationUnit(Blackhole blackhole) {
+    MatcherBenchmark.runAllMatchers(checker, sources, blackhole);
+  }
+
+  @Benchmark
+  public void singlePassCompilationUnit(Blackhole blackhole) {
+    MatcherBenchmark.runAllMatchers(singlePassChecker, sources, blackhole);
+  }
+}
@@ -0,0 +1,387 @@
+/*
+ * Copyright (C) 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.annotations.checkers.benchmarks;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.annotations.checkers.BetaChecker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import com.google.errorprone.BaseErrorProneJavaCompiler;
+import com.google.errorprone.scanner.BuiltInCheckerSuppliers;
+import com.google.errorprone.scanner.ScannerSupplier;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Supplier;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/**
+ * Measures how much {@link BetaChecker} adds to the time it takes to compile a project. For each
+ * requested size, this generates a synthetic source tree with a controlled share of files that use
+ * Guava and of Guava files that use {@code @Beta} APIs, then compiles it repeatedly with plain
+ * javac, with Error Prone's default checks, and with Error Prone's default checks plus the Beta
+ * Checker, and reports wall-clock and CPU time percentiles for each.
+ *
+ * <p>Everything runs in this JVM against the current class path, so no network access is needed.
+ * The checker runs at WARNING severity so that reported usages don't stop javac before it has
+ * generated every file. Each compilation is checked to have reported exactly the generated
+ * {@code @Beta} usages, so a checker that silently stops reporting can't look fast. Warnings
+ * aren't turned off, since {@code -nowarn} and {@code -Xlint:none} drop Error Prone's warnings
+ * too. Verdicts aren't shared between compilations ({@code SharedCache=false}), so every repeat
+ * does the same work instead of reusing what the first compilation in the JVM found.
+ *
+ * <p>Options: {@code --sizes=1000,10000,100000 --guava-density=0.3 --beta-density=0.05
+ * --repeats=5 --warmups=1 --seed=0 --work-dir=<dir>}
+ */
+public final class CompileOverheadHarness {
+
+  /**
+   * The number of {@code @Beta} usages the checker reports in each generated file that uses them:
+   * the {@code BloomFilter} type, {@code BloomFilter.create}, {@code Funnels.unencodedCharsFunnel},
+   * {@code filter::put}, {@code filter.mightContain} and {@code Streams.stream}.
+   */
+  private static final int BETA_USAGES_PER_FILE = 6;
+
+  private enum Configuration {
+    JAVAC("javac"),
+    ERROR_PRONE("Error Prone"),
+    ERROR_PRONE_WITH_BETA_CHECKER("Error Prone + BetaApi");
+
+    final String description;
+
+    Configuration(String description) {
+      this.description = description;
+    }
+  }
+
+  private final int[] sizes;
+  private final double guavaDensity;
+  private final double betaDensity;
+  private final int repeats;
+  private final int warmups;
+  private final long seed;
+  private final Path workDir;
+
+  private CompileOverheadHarness(Map<String, String> options) throws IOException {
+    this.sizes =
+        Arrays.stream(options.getOrDefault("sizes", "1000,10000,100000").split(","))
+            .mapToInt(Integer::parseInt)
+            .toArray();
+    this.guavaDensity = Double.parseDouble(options.getOrDefault("guava-density", "0.3"));
+    this.betaDensity = Double.parseDouble(options.getOrDefault("beta-density", "0.05"));
+    this.repeats = Integer.parseInt(options.getOrDefault("repeats", "5"));
+    this.warmups = Integer.parseInt(options.getOrDefault("warmups", "1"));
+    this.seed = Long.parseLong(options.getOrDefault("seed", "0"));
+    this.workDir =
+        options.containsKey("work-dir")
+            ? Paths.get(options.get("work-dir"))
+            : Files.createTempDirectory("beta-checker-overhead");
+  }
+
+  public static void main(String[] args) throws IOException {
+    Map<String, String> options = new HashMap<>();
+    for (String arg : args) {
+      if (!arg.startsWith("--") || !arg.contains("=")) {
+        throw new IllegalArgumentException("Expected --name=value but got " + arg);
+      }
+      options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+    }
+    new CompileOverheadHarness(options).run();
+  }
+
+  private void run() throws IOException {
+    System.out.printf(
+        "Guava density %.2f, @Beta density %.2f, %d warmups, %d repeats, seed %d%n%n",
+        guavaDensity, betaDensity, warmups, repeats, seed);
+    for (int size : sizes) {
+      Path sourceRoot = workDir.resolve("src-" + size);
+      Set<String> betaSources = new HashSet<>();
+      List<Path> sources = generateSources(sourceRoot, size, betaSources);
+      for (int i = 0; i < warmups; i++) {
+        for (Configuration configuration : Configuration.values()) {
+          compile(configuration, sources, betaSources, workDir.resolve("classes"));
+        }
+      }
+      // Configurations take turns within each repeat so that JIT warmup and other drift over the
+      // run don't favor whichever one happens to go last.
+      Map<Configuration, long[][]> results = new HashMap<>();
+      for (Configuration configuration : Configuration.values()) {
+        results.put(configuration, new long[2][repeats]);
+      }
+      for (int i = 0; i < repeats; i++) {
+        for (Configuration configuration : Configuration.values()) {
+          long[] times =
+              compile(configuration, sources, betaSources, workDir.resolve("classes"));
+          results.get(configuration)[0][i] = times[0];
+          results.get(configuration)[1][i] = times[1];
+        }
+      }
+      report(size, results);
+      MoreFiles.deleteRecursively(sourceRoot, RecursiveDeleteOption.ALLOW_INSECURE);
+    }
+  }
+
+  /**
+   * Writes {@code count} source files under the given root and returns their paths, adding the
+   * URIs of the ones that use {@code @Beta} APIs to {@code betaSources}. Files are spread over
+   * packages of 100 and each calls into the previous file, so the compiler has cross-file
+   * references to resolve.
+   */
+  private List<Path> generateSources(Path root, int count, Set<String> betaSources)
+      throws IOException {
+    Random random = new Random(seed);
+    List<Path> sources = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      boolean usesGuava = random.nextDouble() < guavaDensity;
+      boolean usesBeta = usesGuava && random.nextDouble() < betaDensity;
+      Path file = root.resolve("gen/p" + (i / 100) + "/C" + i + ".java");
+      Files.createDirectories(file.getParent());
+      try (Writer out = Files.newBufferedWriter(file, UTF_8)) {
+        writeSource(out, i, usesGuava, usesBeta);
+      }
+      sources.add(file);
+      if (usesBeta) {
+        betaSources.add(file.toUri().toString());
+      }
+    }
+    return sources;
+  }
+
+  private static void writeSource(Writer out, int i, boolean usesGuava, boolean usesBeta)
+      throws IOException {
+    out.write("package gen.p" + (i / 100) + ";\n\n");
+    out.write("import java.util.ArrayList;\nimport java.util.List;\nimport java.util.Map;\n");
+    out.write("import java.util.HashMap;\n");
+    if (usesGuava) {
+      out.write("import com.google.common.base.Preconditions;\n");
+      out.write("import com.google.common.collect.ImmutableList;\n");
+      out.write("import com.google.common.collect.Maps;\n");
+    }
+    if (usesBeta) {
+      out.write("import com.google.common.collect.Streams;\n");
+      out.write("import com.google.common.hash.BloomFilter;\n");
+      out.write("import com.google.common.hash.Funnels;\n");
+    }
+    out.write("\npublic class C" + i + " {\n");
+    out.write("  private final Map<String, Integer> counts = new HashMap<>();\n\n");
+    out.write("  public List<String> names(int n) {\n");
+    out.write("    List<String> names = new ArrayList<>();\n");
+    out.write("    for (int j = 0; j < n; j++) {\n");
+    out.write("      names.add(\"name\" + j);\n");
+    out.write("      counts.merge(\"name\" + j, 1, Integer::sum);\n");
+    out.write("    }\n");
+    out.write("    return names;\n");
+    out.write("  }\n\n");
+    out.write("  public int total() {\n");
+    if (i > 0) {
+      String previous = "gen.p" + ((i - 1) / 100) + ".C" + (i - 1);
+      out.write("    int previous = new " + previous + "().names(2).size();\n");
+    } else {
+      out.write("    int previous = 0;\n");
+    }
+    out.write("    return previous + counts.values().stream().mapToInt(c -> c).sum();\n");
+    out.write("  }\n");
+    if (usesGuava) {
+      out.write("\n  public ImmutableList<String> copy(List<String> names) {\n");
+      out.write("    Preconditions.checkNotNull(names);\n");
+      out.write("    Map<String, Integer> sizes = Maps.newHashMap();\n");
+      out.write("    for (String name : names) {\n");
+      out.write("      sizes.put(name, name.length());\n");
+      out.write("    }\n");
+      out.write("    return ImmutableList.copyOf(sizes.keySet());\n");
+      out.write("  }\n");
+    }
+    if (usesBeta) {
+      out.write("\n  public boolean probablyContains(List<String> names, String name) {\n");
+      out.write("    BloomFilter<CharSequence> filter =\n");
+      out.write("        BloomFilter.create(Funnels.unencodedCharsFunnel(), names.size() + 1);\n");
+      out.write("    names.forEach(filter::put);\n");
+      out.write("    return filter.mightContain(name)\n");
+      out.write("        && Streams.stream(java.util.Optional.of(name)).count() == 1;\n");
+      out.write("  }\n");
+    }
+    out.write("}\n");
+  }
+
+  /**
+   * Compiles the given sources and returns the wall-clock and process CPU time it took, after
+   * checking that the Beta Checker reported the usages in {@code betaSources} if it ran.
+   */
+  private static long[] compile(
+      Configuration configuration, List<Path> sources, Set<String> betaSources, Path output)
+      throws IOException {
+    MoreFiles.createParentDirectories(output.resolve("x"));
+    JavaCompiler compiler = compiler(configuration);
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    List<String> options =
+        new ArrayList<>(
+            ImmutableList.of(
+                "-proc:none",
+                "-implicit:none",
+                "-Xmaxwarns",
+                String.valueOf(Integer.MAX_VALUE),
+                "-XDshould-stop.ifError=FLOW",
+                "-d",
+                output.toString(),
+                "-classpath",
+                System.getProperty("java.class.path")));
+    if (configuration == Configuration.ERROR_PRONE_WITH_BETA_CHECKER) {
+      options.add("-Xep:BetaApi:WARN");
+      options.add("-XepOpt:BetaApi:SharedCache=false");
+    }
+
+    com.sun.management.OperatingSystemMXBean os =
+        (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+    long cpuStart = os.getProcessCpuTime();
+    long wallStart = System.nanoTime();
+    try (StandardJavaFileManager fileManager =
+        compiler.getStandardFileManager(diagnostics, Locale.ROOT, UTF_8)) {
+      boolean success =
+          compiler
+              .getTask(
+                  null,
+                  fileManager,
+                  diagnostics,
+                  options,
+                  null,
+                  fileManager.getJavaFileObjectsFromPaths(sources))
+              .call();
+      if (!success) {
+        throw new IllegalStateException(
+            configuration.description + " failed: " + diagnostics.getDiagnostics());
+      }
+    }
+    long wall = System.nanoTime() - wallStart;
+    long cpu = os.getProcessCpuTime() - cpuStart;
+    MoreFiles.deleteDirectoryContents(output, RecursiveDeleteOption.ALLOW_INSECURE);
+    checkBetaUsages(configuration, diagnostics.getDiagnostics(), betaSources);
+    return new long[] {wall, cpu};
+  }
+
+  /**
+   * Checks that the Beta Checker reported {@link #BETA_USAGES_PER_FILE} warnings in each of the
+   * given sources and none elsewhere, or none at all if it didn't run.
+   */
+  private static void checkBetaUsages(
+      Configuration configuration,
+      List<Diagnostic<? extends JavaFileObject>> diagnostics,
+      Set<String> betaSources) {
+    Map<String, Integer> reported = new HashMap<>();
+    for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics) {
+      if (diagnostic.getMessage(Locale.ROOT).startsWith("[BetaApi]")) {
+        if (diagnostic.getKind() != Diagnostic.Kind.WARNING) {
+          throw new IllegalStateException(
+              configuration.description + " reported a BetaApi " + diagnostic.getKind());
+        }
+        reported.merge(diagnostic.getSource().toUri().toString(), 1, Integer::sum);
+      }
+    }
+    Map<String, Integer> expected = new HashMap<>();
+    if (configuration == Configuration.ERROR_PRONE_WITH_BETA_CHECKER) {
+      for (String source : betaSources) {
+        expected.put(source, BETA_USAGES_PER_FILE);
+      }
+    }
+    if (!reported.equals(expected)) {
+      throw new IllegalStateException(
+          String.format(
+              "%s reported %d BetaApi warnings in %d files, expected %d in %d files",
+              configuration.description,
+              reported.values().stream().mapToInt(Integer::intValue).sum(),
+              reported.size(),
+              expected.size() * BETA_USAGES_PER_FILE,
+              expected.size()));
+    }
+  }
+
+  private static JavaCompiler compiler(Configuration configuration) {
+    Supplier<ScannerSupplier> defaultChecks = BuiltInCheckerSuppliers::defaultChecks;
+    switch (configuration) {
+      case JAVAC:
+        return ToolProvider.getSystemJavaCompiler();
+      case ERROR_PRONE:
+        return new BaseErrorProneJavaCompiler(defaultChecks.get());
+      case ERROR_PRONE_WITH_BETA_CHECKER:
+        return new BaseErrorProneJavaCompiler(
+            defaultChecks.get().plus(ScannerSupplier.fromBugCheckerClasses(BetaChecker.class)));
+    }
+    throw new AssertionError(configuration);
+  }
+
+  private void report(int size, Map<Configuration, long[][]> results) {
+    System.out.printf("%,d files%n", size);
+    System.out.printf(
+        "  %-24s %10s %10s %10s %10s %10s %10s%n",
+        "", "wall p50", "wall p90", "wall max", "cpu p50", "cpu p90", "cpu max");
+    for (Configuration configuration : Configuration.values()) {
+      long[][] times = results.get(configuration);
+      System.out.printf(
+          "  %-24s %10s %10s %10s %10s %10s %10s%n",
+          configuration.description,
+          millis(percentile(times[0], 50)),
+          millis(percentile(times[0], 90)),
+          millis(percentile(times[0], 100)),
+          millis(percentile(times[1], 50)),
+          millis(percentile(times[1], 90)),
+          millis(percentile(times[1], 100)));
+    }
+    long[][] withoutChecker = results.get(Configuration.ERROR_PRONE);
+    long[][] withChecker = results.get(Configuration.ERROR_PRONE_WITH_BETA_CHECKER);
+    System.out.printf(
+        "  BetaApi overhead: wall p50 %s (%.1f%%), cpu p50 %s (%.1f%%)%n%n",
+        millis(percentile(withChecker[0], 50) - percentile(withoutChecker[0], 50)),
+        overheadPercent(withChecker[0], withoutChecker[0]),
+        millis(percentile(withChecker[1], 50) - percentile(withoutChecker[1], 50)),
+        overheadPercent(withChecker[1], withoutChecker[1]));
+  }
+
+  /** Returns the given percentile of the given samples, using the nearest-rank method. */
+  private static long percentile(long[] samples, int percentile) {
+    long[] sorted = samples.clone();
+    Arrays.sort(sorted);
+    int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+    return sorted[Math.max(0, rank - 1)];
+  }
+
+  private static double overheadPercent(long[] with, long[] without) {
+    long baseline = percentile(without, 50);
+    return baseline == 0 ? 0 : 100.0 * (percentile(with, 50) - baseline) / baseline;
+  }
+
+  private static String millis(long nanos) {
+    return String.format("%,dms", nanos / 1_000_000);
+  }
+}
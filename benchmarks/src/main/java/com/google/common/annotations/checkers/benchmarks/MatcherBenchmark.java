@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.annotations.checkers.benchmarks;
+
+import com.google.common.annotations.checkers.BetaChecker;
+import com.google.common.collect.ImmutableMap;
+import com.google.errorprone.ErrorProneFlags;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the cost of {@link BetaChecker}'s matchers on attributed trees. Each benchmark calls
+ * one matcher for every tree of its kind in the source, so the score divided by the tree count
+ * printed at setup is the per-node cost. {@link #compilationUnit} calls all of them, as Error
+ * Prone does when it scans a file, and {@link #singlePassCompilationUnit} runs the single-pass
+ * engine over the same file for comparison.
+ *
+ * <p>The checker's per-compilation caches are warm after the first invocation, so these measure
+ * steady state; {@link ColdCompilationUnitBenchmark} measures a first pass over a file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(
+    value = 2,
+    jvmArgsAppend = {
+      "--add-exports=jdk.compiler/com.sun.tools.javac.api=ALL-UNNAMED",
+      "--add-exports=jdk.compiler/com.sun.tools.javac.code=ALL-UNNAMED",
+      "--add-exports=jdk.compiler/com.sun.tools.javac.comp=ALL-UNNAMED",
+      "--add-exports=jdk.compiler/com.sun.tools.javac.file=ALL-UNNAMED",
+      "--add-exports=jdk.compiler/com.sun.tools.javac.main=ALL-UNNAMED",
+      "--add-exports=jdk.compiler/com.sun.tools.javac.model=ALL-UNNAMED",
+      "--add-exports=jdk.compiler/com.sun.tools.javac.parser=ALL-UNNAMED",
+      "--add-exports=jdk.compiler/com.sun.tools.javac.processing=ALL-UNNAMED",
+      "--add-exports=jdk.compiler/com.sun.tools.javac.tree=ALL-UNNAMED",
+      "--add-exports=jdk.compiler/com.sun.tools.javac.util=ALL-UNNAMED",
+      "--add-opens=jdk.compiler/com.sun.tools.javac.code=ALL-UNNAMED",
+      "--add-opens=jdk.compiler/com.sun.tools.javac.comp=ALL-UNNAMED",
+    })
+public class MatcherBenchmark {
+
+  @Param({"GuavaHeavy.java", "JdkOnly.java"})
+  public String source;
+
+  @Param({"true", "false"})
+  public boolean prefilter;
+
+  private AttributedSources sources;
+  private BetaChecker checker;
+  private BetaChecker singlePassChecker;
+
+  @Setup
+  public void setUp() throws IOException {
+    sources = AttributedSources.attribute(source);
+    checker = newChecker(prefilter, false);
+    singlePassChecker = newChecker(prefilter, true);
+    System.out.printf(
+        "%n%s: %d identifiers, %d member selects, %d member references%n",
+        source,
+        sources.identifiers.size(),
+        sources.memberSelects.size(),
+        sources.memberReferences.size());
+  }
+
+  static BetaChecker newChecker(boolean prefilter, boolean singlePass) {
+    return new BetaChecker(
+        ErrorProneFlags.fromMap(
+            ImmutableMap.of(
+                "BetaApi:CompilationUnitPrefilter", Boolean.toString(prefilter),
+                "BetaApi:SinglePass", Boolean.toString(singlePass))));
+  }
+
+  @Benchmark
+  public void matchIdentifier(Blackhole blackhole) {
+    for (int i = 0; i < sources.identifiers.size(); i++) {
+      blackhole.consume(
+          checker.matchIdentifier(sources.identifiers.get(i), sources.identifierStates.get(i)));
+    }
+  }
+
+  @Benchmark
+  public void matchMemberSelect(Blackhole blackhole) {
+    for (int i = 0; i < sources.memberSelects.size(); i++) {
+      blackhole.consume(
+          checker.matchMemberSelect(
+              sources.memberSelects.get(i), sources.memberSelectStates.get(i)));
+    }
+  }
+
+  @Benchmark
+  public void matchMemberReference(Blackhole blackhole) {
+    for (int i = 0; i < sources.memberReferences.size(); i++) {
+      blackhole.consume(
+          checker.matchMemberReference(
+              sources.memberReferences.get(i), sources.memberReferenceStates.get(i)));
+    }
+  }
+
+  @Benchmark
+  public void compilationUnit(Blackhole blackhole) {
+    runAllMatchers(checker, sources, blackhole);
+  }
+
+  @Benchmark
+  public void singlePassCompilationUnit(Blackhole blackhole) {
+    runAllMatchers(singlePassChecker, sources, blackhole);
+  }
+
+  /**
+   * Calls every matcher for every tree it applies to. With the single-pass engine, the compilation
+   * unit matcher does all the work and the others return right away, as they would in Error Prone.
+   */
+  static void runAllMatchers(
+      BetaChecker checker, AttributedSources sources, Blackhole blackhole) {
+    blackhole.consume(checker.matchCompilationUnit(sources.unit, sources.unitState));
+    for (int i = 0; i < sources.identifiers.size(); i++) {
+      blackhole.consume(
+          checker.matchIdentifier(sources.identifiers.get(i), sources.identifierStates.get(i)));
+    }
+    for (int i = 0; i < sources.memberSelects.size(); i++) {
+      blackhole.consume(
+          checker.matchMemberSelect(
+              sources.memberSelects.get(i), sources.memberSelectStates.get(i)));
+    }
+    for (int i = 0; i < sources.memberReferences.size(); i++) {
+      blackhole.consume(
+          checker.matchMemberReference(
+              sources.memberReferences.get(i), sources.memberReferenceStates.get(i)));
+    }
+  }
+}
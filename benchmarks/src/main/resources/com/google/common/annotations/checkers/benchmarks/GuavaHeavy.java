@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example.inventory;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.FluentIterable;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Ordering;
+import com.google.common.collect.Sets;
+import com.google.common.collect.Streams;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.RateLimiter;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/** A service with a realistic mix of Guava, @Beta Guava and JDK usages. */
+@SuppressWarnings("unused")
+public final class GuavaHeavy {
+
+  private static final Splitter COMMA = Splitter.on(',').trimResults().omitEmptyStrings();
+  private static final Joiner NEWLINE = Joiner.on('\n').skipNulls();
+  private static final ImmutableSet<String> RESERVED = ImmutableSet.of("admin", "root", "system");
+
+  private final LoadingCache<String, Item> items;
+  private final BloomFilter<CharSequence> seen =
+      BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), 10_000);
+  private final RateLimiter limiter = RateLimiter.create(100.0);
+  private final ListMultimap<String, Item> byCategory = ArrayListMultimap.create();
+  private final Map<String, Integer> counts = Maps.newHashMap();
+
+  public GuavaHeavy(Map<String, Item> backing) {
+    checkNotNull(backing);
+    this.items =
+        CacheBuilder.newBuilder()
+            .maximumSize(1_000)
+            .expireAfterWrite(10, TimeUnit.MINUTES)
+            .build(CacheLoader.from(key -> backing.getOrDefault(key, Item.missing(key))));
+  }
+
+  public ImmutableList<Item> lookup(String csv) {
+    ImmutableList.Builder<Item> result = ImmutableList.builder();
+    for (String key : COMMA.split(csv)) {
+      checkArgument(!RESERVED.contains(key), "reserved key: %s", key);
+      if (!limiter.tryAcquire()) {
+        break;
+      }
+      seen.put(key);
+      Item item = items.getUnchecked(key);
+      byCategory.put(item.category(), item);
+      counts.merge(item.category(), 1, Integer::sum);
+      result.add(item);
+    }
+    return result.build();
+  }
+
+  public boolean probablySeen(String key) {
+    return seen.mightContain(key);
+  }
+
+  public ImmutableMap<String, Integer> topCategories(int limit) {
+    List<Map.Entry<String, Integer>> entries = new ArrayList<>(counts.entrySet());
+    entries.sort(Map.Entry.<String, Integer>comparingByValue().reversed());
+    ImmutableMap.Builder<String, Integer> top = ImmutableMap.builder();
+    for (Map.Entry<String, Integer> entry : Iterables.limit(entries, limit)) {
+      top.put(entry.getKey(), entry.getValue());
+    }
+    return top.buildOrThrow();
+  }
+
+  public ImmutableList<String> sortedNames() {
+    return FluentIterable.from(byCategory.values())
+        .transform(Item::name)
+        .filter(name -> !Strings.isNullOrEmpty(name))
+        .toSortedList(Ordering.natural());
+  }
+
+  public List<String> names(Optional<Item> maybeItem) {
+    return Streams.stream(maybeItem).map(Item::name).collect(Collectors.toList());
+  }
+
+  public Set<String> categoriesIn(Set<String> wanted) {
+    return Sets.intersection(wanted, byCategory.keySet()).immutableCopy();
+  }
+
+  public HashCode fingerprint() {
+    return Hashing.sha256().hashString(NEWLINE.join(sortedNames()), StandardCharsets.UTF_8);
+  }
+
+  public File scratchDirectory() {
+    return Files.createTempDir();
+  }
+
+  public int[] quantities() {
+    return Ints.toArray(
+        byCategory.values().stream().map(Item::quantity).collect(toImmutableList()));
+  }
+
+  public Item heaviest() {
+    return byCategory.values().stream()
+        .max(Comparator.comparingInt(Item::quantity))
+        .orElseGet(() -> Item.missing("none"));
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("categories", byCategory.keySet().size())
+        .add("items", byCategory.size())
+        .toString();
+  }
+
+  /** An inventory item. */
+  public record Item(String name, String category, int quantity) {
+    static Item missing(String name) {
+      return new Item(name, "missing", 0);
+    }
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package example.inventory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/** A service that never touches Guava, which is what most files in a large build look like. */
+public final class JdkOnly {
+
+  private final Map<String, List<String>> index = new HashMap<>();
+  private int lookups;
+
+  public void add(String category, String name) {
+    Objects.requireNonNull(category);
+    Objects.requireNonNull(name);
+    index.computeIfAbsent(category, unused -> new ArrayList<>()).add(name);
+  }
+
+  public List<String> lookup(String category) {
+    lookups++;
+    List<String> names = index.get(category);
+    return names == null ? Collections.emptyList() : Collections.unmodifiableList(names);
+  }
+
+  public List<String> allSorted() {
+    return index.values().stream()
+        .flatMap(List::stream)
+        .sorted()
+        .collect(Collectors.toList());
+  }
+
+  public Map<String, Integer> sizes() {
+    Map<String, Integer> sizes = new HashMap<>();
+    for (Map.Entry<String, List<String>> entry : index.entrySet()) {
+      sizes.put(entry.getKey(), entry.getValue().size());
+    }
+    return sizes;
+  }
+
+  public String describe() {
+    StringBuilder description = new StringBuilder();
+    for (String category : index.keySet()) {
+      description.append(category).append(": ").append(String.join(", ", lookup(category)));
+      description.append('\n');
+    }
+    return description.append("lookups=").append(lookups).toString();
+  }
+}
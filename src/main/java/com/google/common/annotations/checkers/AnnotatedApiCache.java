@@ -0,0 +1,412 @@
+/*
+ * Copyright (C) 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.annotations.checkers;
+
+import com.google.common.collect.ImmutableMap;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskListener;
+import com.sun.tools.javac.api.MultiTaskListener;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Symbol.ClassSymbol;
+import com.sun.tools.javac.code.Symbol.PackageSymbol;
+import com.sun.tools.javac.util.Context;
+import com.sun.tools.javac.util.Log;
+import com.sun.tools.javac.util.Log.WriterKind;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import javax.tools.JavaFileObject;
+
+/**
+ * Per-compilation memo of the verdicts computed by an {@link AnnotatedApiUsageChecker}.
+ *
+ * <p>Instances are stored in the javac {@link Context}, one per checker, so they live exactly as
+ * long as the compilation they were created for. Symbols are unique within a compilation, so
+ * they're compared by identity; both positive and negative verdicts are stored, as masks of the
+ * checker's rules that the symbol is an annotated API for. Because the
+ * checker consults the cache again for each owner it walks to, class-level verdicts are memoized
+ * too and are shared by all members of the class. Package verdicts are kept separately, so the
+ * package filter runs at most once per {@link PackageSymbol}.
+ *
+ * <p>Verdicts for APIs read from class files can also be shared with other compilations in the
+ * same JVM through a {@link SharedVerdictCache}, in which case this cache memoizes the origin of
+ * each class file so the file system is consulted at most once per class file.
+ */
+final class AnnotatedApiCache {
+
+  private static final Context.Key<Map<AnnotatedApiUsageChecker, AnnotatedApiCache>> KEY =
+      new Context.Key<>();
+
+  /**
+   * Returns the cache for the given checker in the given compilation context, creating it if
+   * needed.
+   */
+  static AnnotatedApiCache instance(Context context, AnnotatedApiUsageChecker checker) {
+    Map<AnnotatedApiUsageChecker, AnnotatedApiCache> caches = context.get(KEY);
+    if (caches == null) {
+      caches = new IdentityHashMap<>();
+      context.put(KEY, caches);
+    }
+    AnnotatedApiCache cache = caches.get(checker);
+    if (cache == null) {
+      cache = new AnnotatedApiCache(context, checker);
+      caches.put(checker, cache);
+    }
+    return cache;
+  }
+
+  /** Output written when a compilation finishes. */
+  private interface Output {
+    void write() throws IOException;
+  }
+
+  /**
+   * Registers a listener that writes the given output when the compilation in the given context
+   * finishes. Failing to write it is reported as a warning, not an error.
+   */
+  private static void writeOnCompletion(Context context, String description, Output output) {
+    Log log = Log.instance(context);
+    MultiTaskListener.instance(context)
+        .add(
+            new TaskListener() {
+              @Override
+              public void finished(TaskEvent e) {
+                if (e.getKind() != TaskEvent.Kind.COMPILATION) {
+                  return;
+                }
+                try {
+                  output.write();
+                } catch (IOException ex) {
+                  log.printRawLines(
+                      WriterKind.WARNING, "Could not write " + description + ": " + ex);
+                }
+              }
+            });
+  }
+
+  private final Map<Symbol, Long> annotatedApiVerdicts = new IdentityHashMap<>();
+  private final Map<PackageSymbol, Long> packageVerdicts = new IdentityHashMap<>();
+
+  private ImmutableMap<Symbol, Long> annotationSymbols;
+  private AnnotatedApiIndex index;
+  private String indexJar;
+  private long indexRules;
+  private final Map<ClassSymbol, Boolean> indexedClasses = new IdentityHashMap<>();
+  private SimpleNameFilter nameFilter;
+  private SharedVerdictCache sharedVerdicts;
+  private final Map<JavaFileObject, String> classfileOrigins = new IdentityHashMap<>();
+  private PackageTrie packageTrie;
+
+  private CompilationUnitTree changedLinesCompilationUnit;
+  private ChangedLines.LineRanges changedLineRanges;
+
+  private CompilationUnitTree currentCompilationUnit;
+  private boolean currentCompilationUnitMayReferenceBasePackage;
+  private long compilationUnitsChecked;
+  private long compilationUnitsSkipped;
+
+  private long hits;
+  private long misses;
+
+  private final AnnotatedApiStats stats;
+  private final AnnotatedApiEvents events;
+  private final FindingsWriter findings;
+  private final BaselineFilter baselineFilter;
+
+  private AnnotatedApiCache(Context context, AnnotatedApiUsageChecker checker) {
+    Path statsFile = checker.statsFile();
+    if (statsFile == null) {
+      stats = null;
+    } else {
+      stats = new AnnotatedApiStats(checker.canonicalName());
+      writeOnCompletion(
+          context, checker.canonicalName() + " stats", () -> stats.write(statsFile, this));
+    }
+    Path findingsFile = checker.findingsFile();
+    if (findingsFile == null) {
+      findings = null;
+    } else {
+      findings = FindingsWriter.open(findingsFile, checker.findingsFormat(), checker);
+      writeOnCompletion(context, checker.canonicalName() + " findings", findings::close);
+    }
+    events = AnnotatedApiEvents.create(checker);
+    if (events != null) {
+      writeOnCompletion(
+          context, checker.canonicalName() + " events", events::compilationUnitFinished);
+    }
+    Baseline baseline = checker.baseline();
+    Path baselineOutput = checker.baselineOutput();
+    if (baseline == null && baselineOutput == null) {
+      baselineFilter = null;
+    } else {
+      baselineFilter = new BaselineFilter(baseline, baselineOutput != null);
+      if (baselineOutput != null) {
+        writeOnCompletion(
+            context,
+            checker.canonicalName() + " baseline",
+            () -> baselineFilter.update(baselineOutput));
+      }
+    }
+  }
+
+  /**
+   * Returns the instrumentation counters for this compilation, or {@code null} if the checker
+   * wasn't asked to keep them.
+   */
+  AnnotatedApiStats getStats() {
+    return stats;
+  }
+
+  /**
+   * Returns the writer for the usages reported in this compilation, or {@code null} if the checker
+   * wasn't asked to write them to a file.
+   */
+  FindingsWriter getFindings() {
+    return findings;
+  }
+
+  /**
+   * Returns the Flight Recorder events for this compilation, or {@code null} if they can't be
+   * recorded in this JVM.
+   */
+  AnnotatedApiEvents getEvents() {
+    return events;
+  }
+
+  /**
+   * Returns the filter that checks usages against the checker's baseline and collects them for the
+   * baseline being written, or {@code null} if the checker has neither.
+   */
+  BaselineFilter getBaselineFilter() {
+    return baselineFilter;
+  }
+
+  /**
+   * Returns the resolved symbols for the checker's annotation types, each mapped to the mask of
+   * rules it marks APIs for, or {@code null} if they haven't been resolved yet. An empty map means
+   * none of them exist in this compilation.
+   */
+  ImmutableMap<Symbol, Long> getAnnotationSymbols() {
+    return annotationSymbols;
+  }
+
+  /**
+   * Records the resolved annotation type symbols, along with the precomputed index to use for this
+   * compilation, or {@code null} if there is no index matching the compilation's classpath, and the
+   * jar on the classpath it matches, and the mask of rules the index answers for.
+   */
+  void setAnnotationSymbols(
+      ImmutableMap<Symbol, Long> annotationSymbols,
+      AnnotatedApiIndex index,
+      String indexJar,
+      long indexRules) {
+    this.annotationSymbols = annotationSymbols;
+    this.index = index;
+    this.indexJar = indexJar;
+    this.indexRules = indexRules;
+  }
+
+  /**
+   * Returns the precomputed index to use for this compilation, or {@code null} if there is none.
+   */
+  AnnotatedApiIndex getIndex() {
+    return index;
+  }
+
+  /** Returns the mask of rules that the precomputed index answers for. */
+  long getIndexRules() {
+    return indexRules;
+  }
+
+  /**
+   * Returns true if the precomputed index {@linkplain AnnotatedApiIndex#covers(ClassSymbol, String)
+   * covers} the given class in this compilation. The answer is computed once per class.
+   */
+  boolean indexCovers(ClassSymbol classSymbol) {
+    Boolean covered = indexedClasses.get(classSymbol);
+    if (covered == null) {
+      covered = index != null && index.covers(classSymbol, indexJar);
+      indexedClasses.put(classSymbol, covered);
+    }
+    return covered;
+  }
+
+  /**
+   * Returns the filter of simple names that can refer to an annotated API in this compilation, or
+   * {@code null} if names can't be filtered.
+   */
+  SimpleNameFilter getNameFilter() {
+    return nameFilter;
+  }
+
+  void setNameFilter(SimpleNameFilter nameFilter) {
+    this.nameFilter = nameFilter;
+  }
+
+  /**
+   * Returns the verdicts shared with other compilations in this JVM, or {@code null} if they
+   * aren't shared.
+   */
+  SharedVerdictCache getSharedVerdicts() {
+    return sharedVerdicts;
+  }
+
+  void setSharedVerdicts(SharedVerdictCache sharedVerdicts) {
+    this.sharedVerdicts = sharedVerdicts;
+  }
+
+  /**
+   * Returns the {@linkplain SharedVerdictCache#origin origin} of the class file the given class
+   * was read from, or {@code null} if it wasn't read from a class file whose verdicts can be
+   * shared.
+   */
+  String getOrigin(ClassSymbol classSymbol) {
+    JavaFileObject classfile = classSymbol.classfile;
+    if (classfile == null || classfile.getKind() != JavaFileObject.Kind.CLASS) {
+      return null;
+    }
+    if (classfileOrigins.containsKey(classfile)) {
+      return classfileOrigins.get(classfile);
+    }
+    String origin =
+        SharedVerdictCache.origin(
+            classfile.toUri(), classSymbol.flatName().toString(), classfile.getLastModified());
+    classfileOrigins.put(classfile, origin);
+    return origin;
+  }
+
+  /**
+   * Returns the package roots and ignored packages of the checker's rules compiled for this
+   * compilation, or {@code null} if they haven't been compiled yet.
+   */
+  PackageTrie getPackageTrie() {
+    return packageTrie;
+  }
+
+  void setPackageTrie(PackageTrie packageTrie) {
+    this.packageTrie = packageTrie;
+  }
+
+  /**
+   * Returns the changed lines of the given compilation unit, or {@code null} if they haven't been
+   * looked up since it became the current one.
+   */
+  ChangedLines.LineRanges getChangedLineRanges(CompilationUnitTree unit) {
+    return changedLinesCompilationUnit == unit ? changedLineRanges : null;
+  }
+
+  void setChangedLineRanges(CompilationUnitTree unit, ChangedLines.LineRanges ranges) {
+    changedLinesCompilationUnit = unit;
+    changedLineRanges = ranges;
+  }
+
+  /**
+   * Returns the compilation unit the prefilter verdict was last computed for, or {@code null}.
+   */
+  CompilationUnitTree getCurrentCompilationUnit() {
+    return currentCompilationUnit;
+  }
+
+  /**
+   * Records the prefilter verdict for the given compilation unit, which becomes the current one.
+   */
+  void setCurrentCompilationUnit(CompilationUnitTree unit, boolean mayReferenceBasePackage) {
+    currentCompilationUnit = unit;
+    currentCompilationUnitMayReferenceBasePackage = mayReferenceBasePackage;
+    if (mayReferenceBasePackage) {
+      compilationUnitsChecked++;
+    } else {
+      compilationUnitsSkipped++;
+    }
+  }
+
+  /**
+   * Returns the prefilter verdict for the current compilation unit.
+   */
+  boolean currentCompilationUnitMayReferenceBasePackage() {
+    return currentCompilationUnitMayReferenceBasePackage;
+  }
+
+  /**
+   * Returns the cached mask of rules the given symbol is an annotated API for, or {@code null} if
+   * there is none yet.
+   */
+  Long getAnnotatedApiVerdict(Symbol symbol) {
+    Long verdict = annotatedApiVerdicts.get(symbol);
+    if (verdict == null) {
+      misses++;
+    } else {
+      hits++;
+    }
+    return verdict;
+  }
+
+  /**
+   * Records the mask of rules the given symbol is an annotated API for and returns it.
+   */
+  long putAnnotatedApiVerdict(Symbol symbol, long verdict) {
+    annotatedApiVerdicts.put(symbol, verdict);
+    return verdict;
+  }
+
+  /**
+   * Returns the cached mask of rules the given package matches, or {@code null} if there is none
+   * yet.
+   */
+  Long getPackageVerdict(PackageSymbol packageSymbol) {
+    return packageVerdicts.get(packageSymbol);
+  }
+
+  /**
+   * Records the mask of rules the given package matches and returns it.
+   */
+  long putPackageVerdict(PackageSymbol packageSymbol, long verdict) {
+    packageVerdicts.put(packageSymbol, verdict);
+    return verdict;
+  }
+
+  /** Returns the number of API verdict lookups that were answered from the cache. */
+  long hitCount() {
+    return hits;
+  }
+
+  /** Returns the number of API verdict lookups that had to be computed. */
+  long missCount() {
+    return misses;
+  }
+
+  /** Returns the number of compilation units the prefilter let through. */
+  long compilationUnitsChecked() {
+    return compilationUnitsChecked;
+  }
+
+  /** Returns the number of compilation units the prefilter skipped. */
+  long compilationUnitsSkipped() {
+    return compilationUnitsSkipped;
+  }
+
+  @Override
+  public String toString() {
+    return "AnnotatedApiCache{size=" + annotatedApiVerdicts.size()
+        + ", packages=" + packageVerdicts.size()
+        + ", hits=" + hits + ", misses=" + misses
+        + ", unitsChecked=" + compilationUnitsChecked
+        + ", unitsSkipped=" + compilationUnitsSkipped + "}";
+  }
+}
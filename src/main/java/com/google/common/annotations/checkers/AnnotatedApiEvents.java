@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.annotations.checkers;
+
+import com.google.common.collect.ImmutableList;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.Tree;
+import com.sun.tools.javac.code.Symbol;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Java Flight Recorder events emitted by an {@link AnnotatedApiUsageChecker} during one
+ * compilation, so that a recording of a build shows how much of Error Prone's time the checker
+ * takes and where it goes:
+ *
+ * <ul>
+ *   <li>{@code CompilationUnitChecked}, for each compilation unit, with the number of trees the
+ *       checker inspected, the number that used an annotated API and the time it spent on them.
+ *   <li>{@code AnnotatedApiMatch}, for each tree found to use an annotated API, with the API and
+ *       the kind of tree.
+ *   <li>{@code OwnerChainWalk}, for one in {@value #OWNER_CHAIN_WALK_SAMPLE_INTERVAL} verdict
+ *       lookups, timing the lookup and giving the number of symbols along the owner chain whose
+ *       verdicts had to be computed.
+ * </ul>
+ *
+ * <p>Nothing is counted or timed for an event unless it's enabled in a running recording, so the
+ * cost when not recording is a check per compilation unit, per lookup and per match. If the {@code
+ * jdk.jfr} module isn't in the JVM, e.g. with a javac launcher that doesn't resolve it, there are
+ * no events at all.
+ */
+final class AnnotatedApiEvents {
+
+  /** One in this many verdict lookups is recorded as an {@code OwnerChainWalk} event. */
+  static final int OWNER_CHAIN_WALK_SAMPLE_INTERVAL = 64;
+
+  private static final boolean JFR_AVAILABLE =
+      ModuleLayer.boot().findModule("jdk.jfr").isPresent();
+
+  /**
+   * Returns the events for one compilation checked by the given checker, or {@code null} if
+   * events can't be recorded in this JVM.
+   */
+  static AnnotatedApiEvents create(AnnotatedApiUsageChecker checker) {
+    return JFR_AVAILABLE ? new AnnotatedApiEvents(checker) : null;
+  }
+
+  private final String check;
+  private final ImmutableList<AnnotatedApiRule> rules;
+
+  private CompilationUnitChecked compilationUnit; // null if not being recorded
+  private OwnerChainWalk ownerChainWalk; // null if the current lookup isn't being recorded
+  private long ownerChainLookups;
+
+  private AnnotatedApiEvents(AnnotatedApiUsageChecker checker) {
+    this.check = checker.canonicalName();
+    this.rules = checker.rules();
+  }
+
+  /** Finishes the event for the previous compilation unit, if any, and starts one for the next. */
+  void compilationUnitStarted(CompilationUnitTree unit) {
+    compilationUnitFinished();
+    CompilationUnitChecked event = new CompilationUnitChecked();
+    if (event.isEnabled()) {
+      event.check = check;
+      event.file = unit.getSourceFile() == null ? "" : unit.getSourceFile().getName();
+      compilationUnit = event;
+    }
+  }
+
+  /** Commits the event for the current compilation unit, if it's being recorded. */
+  void compilationUnitFinished() {
+    if (compilationUnit != null) {
+      compilationUnit.commit();
+      compilationUnit = null;
+    }
+  }
+
+  /** Returns true if the checker's work on the current compilation unit is being recorded. */
+  boolean isRecordingCompilationUnit() {
+    return compilationUnit != null;
+  }
+
+  /** Adds time the checker spent on the current compilation unit without inspecting a tree. */
+  void timeSpent(long nanos) {
+    if (compilationUnit != null) {
+      compilationUnit.timeSpent += nanos;
+    }
+  }
+
+  /** Records a tree inspected in the current compilation unit. */
+  void treeInspected(boolean matched, long nanos) {
+    if (compilationUnit != null) {
+      compilationUnit.treesInspected++;
+      if (matched) {
+        compilationUnit.matches++;
+      }
+      compilationUnit.timeSpent += nanos;
+    }
+  }
+
+  /** Records that the given tree uses the given API, which is annotated for the given rules. */
+  void matched(Tree tree, Symbol api, long rules) {
+    AnnotatedApiMatch event = new AnnotatedApiMatch();
+    if (event.isEnabled()) {
+      event.check = check;
+      event.api = BaselineFilter.baselineName(api);
+      event.treeKind = tree.getKind().toString();
+      event.rules = ruleNames(rules);
+      event.commit();
+    }
+  }
+
+  /**
+   * Starts timing a verdict lookup if it's one of the sampled lookups and the event is enabled.
+   * Must be followed by {@link #ownerChainWalkFinished}.
+   */
+  void ownerChainWalkStarted() {
+    if (++ownerChainLookups % OWNER_CHAIN_WALK_SAMPLE_INTERVAL != 0) {
+      return;
+    }
+    OwnerChainWalk event = new OwnerChainWalk();
+    if (event.isEnabled()) {
+      event.begin();
+      ownerChainWalk = event;
+    }
+  }
+
+  /**
+   * Commits the event for the current verdict lookup, for the given symbol, if it's being
+   * recorded. {@code depth} is the number of symbols whose verdicts had to be computed.
+   */
+  void ownerChainWalkFinished(Symbol symbol, long depth) {
+    if (ownerChainWalk != null) {
+      ownerChainWalk.end();
+      ownerChainWalk.check = check;
+      ownerChainWalk.symbol = BaselineFilter.baselineName(symbol);
+      ownerChainWalk.depth = depth;
+      ownerChainWalk.commit();
+      ownerChainWalk = null;
+    }
+  }
+
+  private String ruleNames(long ruleMask) {
+    StringBuilder names = new StringBuilder();
+    for (long mask = ruleMask; mask != 0; mask &= mask - 1) {
+      names
+          .append(names.length() == 0 ? "" : ",")
+          .append(rules.get(Long.numberOfTrailingZeros(mask)).name());
+    }
+    return names.toString();
+  }
+
+  @Name("com.google.common.annotations.checkers.CompilationUnitChecked")
+  @Label("Compilation Unit Checked")
+  @Category({"Java Compiler", "Annotated API Usage"})
+  @Description("The work an annotated API usage check did on one compilation unit")
+  @StackTrace(false)
+  static final class CompilationUnitChecked extends Event {
+    @Label("Check")
+    String check;
+
+    @Label("File")
+    String file;
+
+    @Label("Trees Inspected")
+    long treesInspected;
+
+    @Label("Matches")
+    long matches;
+
+    @Label("Time Spent")
+    @Description("Time the check spent on the compilation unit, not counting other checks")
+    @Timespan
+    long timeSpent;
+  }
+
+  @Name("com.google.common.annotations.checkers.AnnotatedApiMatch")
+  @Label("Annotated API Match")
+  @Category({"Java Compiler", "Annotated API Usage"})
+  @Description("A tree that uses an annotated API")
+  @StackTrace(false)
+  static final class AnnotatedApiMatch extends Event {
+    @Label("Check")
+    String check;
+
+    @Label("API")
+    String api;
+
+    @Label("Tree Kind")
+    String treeKind;
+
+    @Label("Rules")
+    String rules;
+  }
+
+  @Name("com.google.common.annotations.checkers.OwnerChainWalk")
+  @Label("Owner Chain Walk")
+  @Category({"Java Compiler", "Annotated API Usage"})
+  @Description("A sampled lookup of whether a symbol is an annotated API")
+  @StackTrace(false)
+  static final class OwnerChainWalk extends Event {
+    @Label("Check")
+    String check;
+
+    @Label("Symbol")
+    String symbol;
+
+    @Label("Depth")
+    @Description("Symbols along the owner chain whose verdicts weren't cached")
+    long depth;
+  }
+}
@@ -0,0 +1,487 @@
+/*
+ * Copyright (C) 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.annotations.checkers;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Symbol.ClassSymbol;
+import com.sun.tools.javac.code.Symbol.MethodSymbol;
+import com.sun.tools.javac.code.Type;
+import com.sun.tools.javac.code.Types;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
+import javax.tools.JavaFileObject;
+
+/**
+ * A precomputed index of the APIs in a library jar that are annotated with a specific annotation,
+ * so that checkers don't need to read annotation mirrors from the library's class files.
+ *
+ * <p>The index records the binary name of every class in the jar, which says which symbols it
+ * covers, and a key for every class, field and method that's directly annotated. Class keys are
+ * binary names ({@code com.google.common.foo.Outer$Inner}), field keys are {@code Owner#name} and
+ * method keys are {@code Owner#name(ParameterDescriptors)}, with parameters as they appear in
+ * source. Both lists are stored sorted and prefix-compressed, and are searched with a binary
+ * search. An index generated from a jar also lists the simple names by which its annotated APIs
+ * can be referenced, from which a {@link SimpleNameFilter} is built when the index is loaded.
+ *
+ * <p>An index is only valid for the exact library it was generated from, which is identified by a
+ * fingerprint made from the Maven coordinates in the jar's {@code pom.properties}. Checkers should
+ * only use it when {@link #matchingJar} finds the library on the compilation's classpath, and only
+ * for classes read from that jar, since a class with the same name may also be compiled from
+ * source or found in another jar, such as one that shades part of the library.
+ */
+final class AnnotatedApiIndex {
+
+  private static final int MAGIC = 0x41504958; // "APIX"
+  private static final int VERSION = 2;
+
+  /** Indexes loaded from resources, so that each is read at most once per JVM. */
+  private static final Map<String, Optional<AnnotatedApiIndex>> RESOURCE_INDEXES =
+      new ConcurrentHashMap<>();
+
+  /** Fingerprints of jars found on compilation classpaths, keyed by the jar's URI. */
+  private static final Map<String, Optional<String>> JAR_FINGERPRINTS = new ConcurrentHashMap<>();
+
+  private final String annotationType;
+  private final String fingerprint;
+  private final String[] classes;
+  private final String[] annotatedApis;
+  private final String[] simpleNames; // null if not known
+  private final SimpleNameFilter simpleNameFilter; // null if simpleNames is
+
+  private AnnotatedApiIndex(
+      String annotationType,
+      String fingerprint,
+      String[] classes,
+      String[] annotatedApis,
+      String[] simpleNames) {
+    this.annotationType = annotationType;
+    this.fingerprint = fingerprint;
+    this.classes = classes;
+    this.annotatedApis = annotatedApis;
+    this.simpleNames = simpleNames;
+    this.simpleNameFilter =
+        simpleNames == null ? null : SimpleNameFilter.create(Arrays.asList(simpleNames));
+  }
+
+  /**
+   * Creates an index from unsorted collections of class names and annotated API keys, without
+   * simple names.
+   */
+  static AnnotatedApiIndex create(
+      String annotationType,
+      String fingerprint,
+      Collection<String> classes,
+      Collection<String> annotatedApis) {
+    return create(annotationType, fingerprint, classes, annotatedApis, null);
+  }
+
+  /**
+   * Creates an index from unsorted collections of class names, annotated API keys and the simple
+   * names by which the annotated APIs can be referenced, which may be {@code null} if they aren't
+   * known.
+   */
+  static AnnotatedApiIndex create(
+      String annotationType,
+      String fingerprint,
+      Collection<String> classes,
+      Collection<String> annotatedApis,
+      Collection<String> simpleNames) {
+    return new AnnotatedApiIndex(
+        annotationType,
+        fingerprint,
+        sortedDistinct(classes),
+        sortedDistinct(annotatedApis),
+        simpleNames == null ? null : sortedDistinct(simpleNames));
+  }
+
+  private static String[] sortedDistinct(Collection<String> strings) {
+    return strings.stream().distinct().sorted().toArray(String[]::new);
+  }
+
+  /**
+   * Returns the index stored in the given class path resource, or empty if there is no such
+   * resource. The resource is only read the first time it's requested.
+   */
+  static Optional<AnnotatedApiIndex> fromResource(String resourceName) {
+    return RESOURCE_INDEXES.computeIfAbsent(
+        resourceName,
+        name -> {
+          ClassLoader classLoader = AnnotatedApiIndex.class.getClassLoader();
+          try (InputStream in = classLoader.getResourceAsStream(name)) {
+            return in == null ? Optional.empty() : Optional.of(read(in));
+          } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read API index " + name, e);
+          }
+        });
+  }
+
+  /** Returns the name of the annotation type this index was built for. */
+  String annotationType() {
+    return annotationType;
+  }
+
+  /** Returns the fingerprint of the library this index was built from. */
+  String fingerprint() {
+    return fingerprint;
+  }
+
+  /**
+   * Returns the simple names by which the annotated APIs in this index can be referenced, or
+   * {@code null} if the index doesn't have them.
+   */
+  List<String> simpleNames() {
+    return simpleNames == null ? null : Collections.unmodifiableList(Arrays.asList(simpleNames));
+  }
+
+  /**
+   * Returns a filter of the {@linkplain #simpleNames simple names} of this index's annotated APIs,
+   * or {@code null} if the index doesn't have them.
+   */
+  SimpleNameFilter simpleNameFilter() {
+    return simpleNameFilter;
+  }
+
+  /** Returns the number of directly annotated APIs in this index. */
+  int annotatedApiCount() {
+    return annotatedApis.length;
+  }
+
+  /**
+   * Returns the URI of the jar the given annotation type symbol was loaded from if it's the library
+   * this index was built from, or {@code null} otherwise. The index can then be used in place of
+   * annotation mirrors for the classes it {@linkplain #covers(ClassSymbol, String) covers}.
+   */
+  String matchingJar(Symbol annotationSymbol) {
+    if (!(annotationSymbol instanceof ClassSymbol)) {
+      return null;
+    }
+    JavaFileObject classfile = ((ClassSymbol) annotationSymbol).classfile;
+    if (classfile == null || classfile.getKind() != JavaFileObject.Kind.CLASS) {
+      // e.g. compiled from source in the same compilation
+      return null;
+    }
+    String jar = jarUri(classfile.toUri());
+    return jar != null && jarFingerprint(jar).map(fingerprint::equals).orElse(false) ? jar : null;
+  }
+
+  /**
+   * Returns true if this index has information about the given class, which it only does if the
+   * class was read from the given jar, as returned by {@link #matchingJar}.
+   */
+  boolean covers(ClassSymbol classSymbol, String jar) {
+    JavaFileObject classfile = classSymbol.classfile;
+    return classfile != null && covers(classSymbol.flatName().toString(), classfile, jar);
+  }
+
+  /**
+   * Returns true if this index has information about the class with the given binary name, read
+   * from the given class file, which it only does if the file is in the given jar.
+   */
+  boolean covers(String className, JavaFileObject classfile, String jar) {
+    return covers(className) && isInJar(classfile, jar);
+  }
+
+  /**
+   * Returns true if this index has information about the class with the given binary name, for
+   * callers that have checked themselves that the class comes from the indexed library.
+   */
+  boolean covers(String className) {
+    return Arrays.binarySearch(classes, className) >= 0;
+  }
+
+  /** Returns true if the given file is a class file read from the jar with the given URI. */
+  private static boolean isInJar(JavaFileObject file, String jar) {
+    return file.getKind() == JavaFileObject.Kind.CLASS && jar.equals(jarUri(file.toUri()));
+  }
+
+  /**
+   * Returns true if the given symbol, which must belong to a class this index {@linkplain #covers
+   * covers}, is directly annotated.
+   */
+  boolean isAnnotated(Symbol symbol, Types types) {
+    String key = key(symbol, types);
+    return key != null && isAnnotated(key);
+  }
+
+  /**
+   * Returns true if the API with the given key, which must belong to a class this index {@linkplain
+   * #covers covers}, is directly annotated. Keys are described in the class documentation.
+   */
+  boolean isAnnotated(String key) {
+    return Arrays.binarySearch(annotatedApis, key) >= 0;
+  }
+
+  /**
+   * Returns true if a field or any overload of a method or constructor with the given name, in the
+   * class with the given binary name, is directly annotated. For callers that only know the name a
+   * member was referenced by, such as the parse-only auditor.
+   */
+  boolean isAnnotatedMember(String owner, String name) {
+    String key = owner + "#" + name;
+    if (Arrays.binarySearch(annotatedApis, key) >= 0) {
+      return true;
+    }
+    String methodPrefix = key + "(";
+    int insertion = -Arrays.binarySearch(annotatedApis, methodPrefix) - 1;
+    return insertion < annotatedApis.length && annotatedApis[insertion].startsWith(methodPrefix);
+  }
+
+  /**
+   * Returns the index key for the given symbol, or null if symbols of its kind are never indexed.
+   */
+  static String key(Symbol symbol, Types types) {
+    switch (symbol.getKind()) {
+      case CLASS:
+      case INTERFACE:
+      case ENUM:
+      case ANNOTATION_TYPE:
+      case RECORD:
+        return ((ClassSymbol) symbol).flatName().toString();
+      case FIELD:
+      case ENUM_CONSTANT:
+        return symbol.owner.flatName() + "#" + symbol.name;
+      case METHOD:
+      case CONSTRUCTOR:
+        StringBuilder key = new StringBuilder();
+        key.append(symbol.owner.flatName()).append('#').append(symbol.name).append('(');
+        for (Type parameterType : types.erasure(((MethodSymbol) symbol).type).getParameterTypes()) {
+          appendDescriptor(key, parameterType, types);
+        }
+        return key.append(')').toString();
+      default:
+        return null;
+    }
+  }
+
+  private static void appendDescriptor(StringBuilder descriptor, Type type, Types types) {
+    switch (type.getTag()) {
+      case BOOLEAN:
+        descriptor.append('Z');
+        break;
+      case BYTE:
+        descriptor.append('B');
+        break;
+      case CHAR:
+        descriptor.append('C');
+        break;
+      case SHORT:
+        descriptor.append('S');
+        break;
+      case INT:
+        descriptor.append('I');
+        break;
+      case LONG:
+        descriptor.append('J');
+        break;
+      case FLOAT:
+        descriptor.append('F');
+        break;
+      case DOUBLE:
+        descriptor.append('D');
+        break;
+      case ARRAY:
+        descriptor.append('[');
+        appendDescriptor(descriptor, types.elemtype(type), types);
+        break;
+      case CLASS:
+        descriptor
+            .append('L')
+            .append(type.tsym.flatName().toString().replace('.', '/'))
+            .append(';');
+        break;
+      default:
+        appendDescriptor(descriptor, types.erasure(type), types);
+        break;
+    }
+  }
+
+  /**
+   * Returns the parameter part of the given method descriptor as it would appear in source, i.e.
+   * without the leading enclosing instance parameter javac adds to inner class constructors.
+   */
+  static String sourceParameterDescriptor(String descriptor, boolean dropFirstParameter) {
+    int end = descriptor.indexOf(')');
+    int start = 1;
+    if (dropFirstParameter && start < end) {
+      start = endOfFieldDescriptor(descriptor, start);
+    }
+    return "(" + descriptor.substring(start, end) + ")";
+  }
+
+  private static int endOfFieldDescriptor(String descriptor, int start) {
+    int i = start;
+    while (descriptor.charAt(i) == '[') {
+      i++;
+    }
+    return descriptor.charAt(i) == 'L' ? descriptor.indexOf(';', i) + 1 : i + 1;
+  }
+
+  /**
+   * Returns the fingerprint of the library in the jar at the given location, read from the first
+   * {@code pom.properties} file under {@code META-INF/maven}, or empty if there is none.
+   */
+  static Optional<String> fingerprint(JarFile jar) throws IOException {
+    ZipEntry pomProperties =
+        jar.stream()
+            .filter(
+                entry ->
+                    entry.getName().startsWith("META-INF/maven/")
+                        && entry.getName().endsWith("/pom.properties"))
+            .findFirst()
+            .orElse(null);
+    if (pomProperties == null) {
+      return Optional.empty();
+    }
+    Properties properties = new Properties();
+    try (InputStream in = jar.getInputStream(pomProperties)) {
+      properties.load(in);
+    }
+    return Optional.of(
+        properties.getProperty("groupId")
+            + ":"
+            + properties.getProperty("artifactId")
+            + ":"
+            + properties.getProperty("version"));
+  }
+
+  /**
+   * Returns the URI of the jar containing the class file at the given URI (of the form {@code
+   * jar:file:/path/to/lib.jar!/path/to/Class.class}), or {@code null} if it isn't in a jar.
+   */
+  private static String jarUri(URI classfileUri) {
+    String uri = classfileUri.toString();
+    int separator = uri.indexOf("!/");
+    if (!uri.startsWith("jar:") || separator < 0) {
+      return null;
+    }
+    return uri.substring("jar:".length(), separator);
+  }
+
+  /**
+   * Returns the fingerprint of the jar with the given URI, or empty if it can't be read or has no
+   * fingerprint.
+   */
+  private static Optional<String> jarFingerprint(String jarUri) {
+    return JAR_FINGERPRINTS.computeIfAbsent(
+        jarUri,
+        u -> {
+          try (JarFile jar = new JarFile(new File(URI.create(u)))) {
+            return fingerprint(jar);
+          } catch (IOException | IllegalArgumentException e) {
+            return Optional.empty();
+          }
+        });
+  }
+
+  /** Writes this index in its binary format. */
+  void write(OutputStream out) throws IOException {
+    DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+    data.writeInt(MAGIC);
+    data.writeShort(VERSION);
+    data.writeUTF(annotationType);
+    data.writeUTF(fingerprint);
+    writeSortedStrings(data, classes);
+    writeSortedStrings(data, annotatedApis);
+    data.writeBoolean(simpleNames != null);
+    if (simpleNames != null) {
+      writeSortedStrings(data, simpleNames);
+    }
+    data.flush();
+  }
+
+  /** Reads an index written by {@link #write}. */
+  static AnnotatedApiIndex read(InputStream in) throws IOException {
+    DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+    if (data.readInt() != MAGIC) {
+      throw new IOException("not an API index");
+    }
+    int version = data.readUnsignedShort();
+    if (version != VERSION) {
+      throw new IOException("unsupported API index version " + version);
+    }
+    String annotationType = data.readUTF();
+    String fingerprint = data.readUTF();
+    String[] classes = readSortedStrings(data);
+    String[] annotatedApis = readSortedStrings(data);
+    String[] simpleNames = data.readBoolean() ? readSortedStrings(data) : null;
+    return new AnnotatedApiIndex(annotationType, fingerprint, classes, annotatedApis, simpleNames);
+  }
+
+  /**
+   * Writes sorted strings with front coding: each string is stored as the length of the prefix it
+   * shares with the previous string followed by the rest of it.
+   */
+  private static void writeSortedStrings(DataOutputStream out, String[] strings)
+      throws IOException {
+    out.writeInt(strings.length);
+    String previous = "";
+    for (String string : strings) {
+      int shared = sharedPrefixLength(previous, string);
+      out.writeShort(shared);
+      byte[] suffix = string.substring(shared).getBytes(UTF_8);
+      out.writeShort(suffix.length);
+      out.write(suffix);
+      previous = string;
+    }
+  }
+
+  private static String[] readSortedStrings(DataInputStream in) throws IOException {
+    String[] strings = new String[in.readInt()];
+    String previous = "";
+    for (int i = 0; i < strings.length; i++) {
+      int shared = in.readUnsignedShort();
+      byte[] suffix = new byte[in.readUnsignedShort()];
+      in.readFully(suffix);
+      strings[i] = previous.substring(0, shared) + new String(suffix, UTF_8);
+      previous = strings[i];
+    }
+    return strings;
+  }
+
+  private static int sharedPrefixLength(String a, String b) {
+    int max = Math.min(a.length(), b.length());
+    int i = 0;
+    while (i < max && a.charAt(i) == b.charAt(i)) {
+      i++;
+    }
+    // Don't split a surrogate pair between the prefix and the suffix
+    if (i > 0 && Character.isHighSurrogate(a.charAt(i - 1))) {
+      i--;
+    }
+    return i;
+  }
+}
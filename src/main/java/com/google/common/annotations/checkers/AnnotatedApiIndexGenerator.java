@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.annotations.checkers;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Generates an {@link AnnotatedApiIndex} for a library jar. This runs as part of the build to
+ * produce the index of Guava's {@code @Beta} APIs that {@link BetaChecker} ships with.
+ *
+ * <p>Usage: {@code AnnotatedApiIndexGenerator <library.jar> <annotation type> <output file>}
+ */
+public final class AnnotatedApiIndexGenerator {
+
+  private AnnotatedApiIndexGenerator() {}
+
+  public static void main(String[] args) throws IOException {
+    if (args.length != 3) {
+      System.err.println(
+          "Usage: AnnotatedApiIndexGenerator <library.jar> <annotation type> <output file>");
+      System.exit(1);
+    }
+    AnnotatedApiIndex index = generate(new File(args[0]), args[1]);
+    Path output = Paths.get(args[2]);
+    Files.createDirectories(output.toAbsolutePath().getParent());
+    try (OutputStream out = Files.newOutputStream(output)) {
+      index.write(out);
+    }
+    System.out.println(
+        "Indexed " + index.annotatedApiCount() + " APIs annotated with " + args[1]
+            + " in " + index.fingerprint());
+  }
+
+  /**
+   * Returns an index of the APIs in the given jar that are annotated with the given annotation
+   * type.
+   *
+   * @throws IOException if the jar can't be read or has no {@code pom.properties} to fingerprint
+   */
+  static AnnotatedApiIndex generate(File jarFile, String annotationType) throws IOException {
+    String annotationDescriptor = "L" + annotationType.replace('.', '/') + ";";
+    List<String> classes = new ArrayList<>();
+    List<String> annotatedApis = new ArrayList<>();
+    List<ClassFile> classFiles = new ArrayList<>();
+    try (JarFile jar = new JarFile(jarFile)) {
+      String fingerprint =
+          AnnotatedApiIndex.fingerprint(jar)
+              .orElseThrow(() -> new IOException("No pom.properties in " + jarFile));
+      for (Enumeration<JarEntry> entries = jar.entries(); entries.hasMoreElements(); ) {
+        JarEntry entry = entries.nextElement();
+        String name = entry.getName();
+        if (!name.endsWith(".class")
+            || name.startsWith("META-INF/")
+            || name.endsWith("module-info.class")
+            || name.endsWith("package-info.class")) {
+          continue;
+        }
+        ClassFile classFile;
+        try (InputStream in = jar.getInputStream(entry)) {
+          classFile = ClassFile.parse(in.readAllBytes());
+        }
+        addClass(classFile, annotationDescriptor, classes, annotatedApis);
+        classFiles.add(classFile);
+      }
+      return AnnotatedApiIndex.create(
+          annotationType,
+          fingerprint,
+          classes,
+          annotatedApis,
+          SimpleNameFilter.annotatedSimpleNames(
+              classFiles, Collections.singleton(annotationDescriptor)));
+    }
+  }
+
+  private static void addClass(
+      ClassFile classFile,
+      String annotationDescriptor,
+      List<String> classes,
+      List<String> annotatedApis) {
+    classes.add(classFile.name);
+    if (classFile.annotations.contains(annotationDescriptor)) {
+      annotatedApis.add(classFile.name);
+    }
+    for (ClassFile.Member field : classFile.fields) {
+      if (field.annotations.contains(annotationDescriptor)) {
+        annotatedApis.add(classFile.name + "#" + field.name);
+      }
+    }
+    for (ClassFile.Member method : classFile.methods) {
+      if (method.annotations.contains(annotationDescriptor)) {
+        boolean hasEnclosingInstanceParameter = method.isConstructor() && classFile.isInnerClass;
+        annotatedApis.add(
+            classFile.name
+                + "#"
+                + method.name
+                + AnnotatedApiIndex.sourceParameterDescriptor(
+                    method.descriptor, hasEnclosingInstanceParameter));
+      }
+    }
+  }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.annotations.checkers;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import java.util.Arrays;
+
+/**
+ * One rule checked by an {@link AnnotatedApiUsageChecker}: usages of APIs in or under the rule's
+ * base packages that are annotated with one of its annotation types, or are members of a type that
+ * is, are reported under the rule's name.
+ *
+ * <p>A checker can check several rules at once, resolving each tree's symbol and walking its owners
+ * only once for all of them. Each usage is reported once for each rule it breaks.
+ */
+public final class AnnotatedApiRule {
+
+  /** Returns a builder for a rule whose usages are reported under the given name. */
+  public static Builder builder(String name) {
+    return new Builder(name);
+  }
+
+  private final String name;
+  private final ImmutableSet<String> annotationTypes;
+  private final ImmutableList<String> basePackages;
+  private final ImmutableList<String> ignoredPackages;
+  private final ImmutableSet<String> ignoredTypes;
+  private final String message;
+  private final String link;
+
+  private AnnotatedApiRule(Builder builder) {
+    this.name = builder.name;
+    this.annotationTypes = builder.annotationTypes.build();
+    this.basePackages = builder.basePackages.build();
+    this.ignoredPackages = builder.ignoredPackages.build();
+    this.ignoredTypes = builder.ignoredTypes.build();
+    this.message = builder.message;
+    this.link = builder.link;
+  }
+
+  /**
+   * Returns the name usages are reported under, which is also the name that suppresses them in
+   * {@code @SuppressWarnings}.
+   */
+  public String name() {
+    return name;
+  }
+
+  /** Returns the fully qualified names of the annotations that mark APIs for this rule. */
+  public ImmutableSet<String> annotationTypes() {
+    return annotationTypes;
+  }
+
+  /** Returns the packages whose APIs, along with those of packages under them, are checked. */
+  public ImmutableList<String> basePackages() {
+    return basePackages;
+  }
+
+  /** Returns the packages under the base packages whose APIs aren't checked. */
+  public ImmutableList<String> ignoredPackages() {
+    return ignoredPackages;
+  }
+
+  /** Returns the fully qualified names of types that, along with their members, aren't checked. */
+  public ImmutableSet<String> ignoredTypes() {
+    return ignoredTypes;
+  }
+
+  /**
+   * Returns the message to report usages with, or {@code null} to use the checker's message.
+   */
+  String message() {
+    return message;
+  }
+
+  /** Returns the link to report usages with, or {@code null} to use the checker's link. */
+  String link() {
+    return link;
+  }
+
+  /** Returns a copy of this rule with the given base and ignored packages. */
+  AnnotatedApiRule withPackages(Iterable<String> basePackages, Iterable<String> ignoredPackages) {
+    Builder builder =
+        builder(name)
+            .addAnnotationTypes(annotationTypes)
+            .addBasePackages(basePackages)
+            .addIgnoredPackages(ignoredPackages)
+            .addIgnoredTypes(ignoredTypes);
+    builder.message = message;
+    builder.link = link;
+    return builder.build();
+  }
+
+  @Override
+  public String toString() {
+    return "AnnotatedApiRule{name=" + name
+        + ", annotationTypes=" + annotationTypes
+        + ", basePackages=" + basePackages
+        + ", ignoredPackages=" + ignoredPackages
+        + ", ignoredTypes=" + ignoredTypes + "}";
+  }
+
+  /** Builder for {@link AnnotatedApiRule}. */
+  public static final class Builder {
+    private final String name;
+    private final ImmutableSet.Builder<String> annotationTypes = ImmutableSet.builder();
+    private final ImmutableList.Builder<String> basePackages = ImmutableList.builder();
+    private final ImmutableList.Builder<String> ignoredPackages = ImmutableList.builder();
+    private final ImmutableSet.Builder<String> ignoredTypes = ImmutableSet.builder();
+    private String message;
+    private String link;
+
+    private Builder(String name) {
+      checkArgument(!name.isEmpty(), "rule name is empty");
+      this.name = name;
+    }
+
+    public Builder addAnnotationTypes(String... annotationTypes) {
+      return addAnnotationTypes(Arrays.asList(annotationTypes));
+    }
+
+    public Builder addAnnotationTypes(Iterable<String> annotationTypes) {
+      this.annotationTypes.addAll(annotationTypes);
+      return this;
+    }
+
+    public Builder addBasePackages(String... basePackages) {
+      return addBasePackages(Arrays.asList(basePackages));
+    }
+
+    public Builder addBasePackages(Iterable<String> basePackages) {
+      for (String basePackage : basePackages) {
+        checkArgument(!basePackage.isEmpty(), "base package is empty");
+        this.basePackages.add(basePackage);
+      }
+      return this;
+    }
+
+    public Builder addIgnoredPackages(String... ignoredPackages) {
+      return addIgnoredPackages(Arrays.asList(ignoredPackages));
+    }
+
+    public Builder addIgnoredPackages(Iterable<String> ignoredPackages) {
+      this.ignoredPackages.addAll(ignoredPackages);
+      return this;
+    }
+
+    public Builder addIgnoredTypes(String... ignoredTypes) {
+      return addIgnoredTypes(Arrays.asList(ignoredTypes));
+    }
+
+    public Builder addIgnoredTypes(Iterable<String> ignoredTypes) {
+      this.ignoredTypes.addAll(ignoredTypes);
+      return this;
+    }
+
+    /** Sets the message to report usages with. Defaults to the checker's message. */
+    public Builder setMessage(String message) {
+      this.message = checkNotNull(message);
+      return this;
+    }
+
+    /** Sets the link to report usages with. Defaults to the checker's link. */
+    public Builder setLink(String link) {
+      this.link = checkNotNull(link);
+      return this;
+    }
+
+    public AnnotatedApiRule build() {
+      AnnotatedApiRule rule = new AnnotatedApiRule(this);
+      checkState(!rule.annotationTypes.isEmpty(), "rule %s has no annotation types", name);
+      checkState(!rule.basePackages.isEmpty(), "rule %s has no base packages", name);
+      return rule;
+    }
+  }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.annotations.checkers;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.sun.source.tree.Tree;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Instrumentation counters for one {@link AnnotatedApiUsageChecker} in one compilation, written as
+ * a JSON document to the checker's {@code StatsFile} when the compilation finishes.
+ *
+ * <p>Counters are only kept when that flag is set; otherwise the checker has no stats object and
+ * doesn't pay for timing its matchers.
+ */
+final class AnnotatedApiStats {
+
+  /** Owner chains this deep or deeper share the last histogram bucket. */
+  private static final int MAX_OWNER_CHAIN_DEPTH = 8;
+
+  private final String checkName;
+
+  private final long[] treesInspected = new long[Tree.Kind.values().length];
+  private long nameFilterRejections;
+  private long changedLinesRejections;
+  private long symbolsResolved;
+  private long symbolsUnresolved;
+  private long packageRejections;
+  private final long[] ownerChainDepths = new long[MAX_OWNER_CHAIN_DEPTH + 1];
+  private long annotationMirrorLookups;
+  private long indexLookups;
+  private long sharedVerdictLookups;
+  private long matches;
+  private long nanos;
+
+  AnnotatedApiStats(String checkName) {
+    this.checkName = checkName;
+  }
+
+  void treeInspected(Tree.Kind kind) {
+    treesInspected[kind.ordinal()]++;
+  }
+
+  /** Records a tree none of whose names can refer to an annotated API, so it wasn't inspected. */
+  void nameFilterRejected() {
+    nameFilterRejections++;
+  }
+
+  /** Records a tree that isn't on a changed line, so it wasn't inspected. */
+  void changedLinesRejected() {
+    changedLinesRejections++;
+  }
+
+  void symbolResolved(boolean resolved) {
+    if (resolved) {
+      symbolsResolved++;
+    } else {
+      symbolsUnresolved++;
+    }
+  }
+
+  void packageRejected() {
+    packageRejections++;
+  }
+
+  /**
+   * Records the number of symbols whose verdicts had to be computed, walking outward through their
+   * owners, to answer one lookup. Zero means the verdict was already cached.
+   */
+  void ownerChainWalked(long depth) {
+    ownerChainDepths[(int) Math.min(depth, MAX_OWNER_CHAIN_DEPTH)]++;
+  }
+
+  void annotationMirrorsRead() {
+    annotationMirrorLookups++;
+  }
+
+  void indexConsulted() {
+    indexLookups++;
+  }
+
+  /** Records a verdict that was found in the cache shared with other compilations. */
+  void sharedVerdictFound() {
+    sharedVerdictLookups++;
+  }
+
+  void matched() {
+    matches++;
+  }
+
+  void timeSpent(long nanos) {
+    this.nanos += nanos;
+  }
+
+  /** Writes these stats, along with the given cache's counters, to the given file. */
+  void write(Path file, AnnotatedApiCache cache) throws IOException {
+    Path parent = file.toAbsolutePath().getParent();
+    if (parent != null) {
+      Files.createDirectories(parent);
+    }
+    try (Writer out = Files.newBufferedWriter(file, UTF_8)) {
+      out.write(toJson(cache));
+    }
+  }
+
+  private String toJson(AnnotatedApiCache cache) {
+    StringBuilder json = new StringBuilder();
+    json.append("{\n");
+    json.append("  \"check\": ");
+    appendString(json, checkName);
+    json.append(",\n");
+    json.append("  \"treesInspected\": {");
+    String separator = "";
+    for (Tree.Kind kind : Tree.Kind.values()) {
+      if (treesInspected[kind.ordinal()] > 0) {
+        json.append(separator)
+            .append('"')
+            .append(kind)
+            .append("\": ")
+            .append(treesInspected[kind.ordinal()]);
+        separator = ", ";
+      }
+    }
+    json.append("},\n");
+    json.append("  \"nameFilterRejections\": ").append(nameFilterRejections).append(",\n");
+    json.append("  \"changedLinesRejections\": ").append(changedLinesRejections).append(",\n");
+    json.append("  \"compilationUnits\": {\"checked\": ")
+        .append(cache.compilationUnitsChecked())
+        .append(", \"skipped\": ")
+        .append(cache.compilationUnitsSkipped())
+        .append("},\n");
+    json.append("  \"symbolsResolved\": ").append(symbolsResolved).append(",\n");
+    json.append("  \"symbolsUnresolved\": ").append(symbolsUnresolved).append(",\n");
+    json.append("  \"packageRejections\": ").append(packageRejections).append(",\n");
+    json.append("  \"verdictCache\": {\"hits\": ")
+        .append(cache.hitCount())
+        .append(", \"misses\": ")
+        .append(cache.missCount())
+        .append("},\n");
+    json.append("  \"ownerChainDepth\": {");
+    for (int depth = 0; depth <= MAX_OWNER_CHAIN_DEPTH; depth++) {
+      json.append(depth == 0 ? "" : ", ")
+          .append('"')
+          .append(depth)
+          .append(depth == MAX_OWNER_CHAIN_DEPTH ? "+" : "")
+          .append("\": ")
+          .append(ownerChainDepths[depth]);
+    }
+    json.append("},\n");
+    json.append("  \"annotationMirrorLookups\": ").append(annotationMirrorLookups).append(",\n");
+    json.append("  \"indexLookups\": ").append(indexLookups).append(",\n");
+    json.append("  \"sharedVerdictLookups\": ").append(sharedVerdictLookups).append(",\n");
+    json.append("  \"matches\": ").append(matches).append(",\n");
+    json.append("  \"timeNanos\": ").append(nanos).append("\n");
+    json.append("}\n");
+    return json.toString();
+  }
+
+  /** Appends the given value to the given JSON as a string literal, escaping it as needed. */
+  static void appendString(StringBuilder json, String value) {
+    json.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"':
+          json.append("\\\"");
+          break;
+        case '\\':
+          json.append("\\\\");
+          break;
+        case '\n':
+          json.append("\\n");
+          break;
+        case '\r':
+          json.append("\\r");
+          break;
+        case '\t':
+          json.append("\\t");
+          break;
+        default:
+          if (c < 0x20) {
+            json.append(String.format("\\u%04x", (int) c));
+          } else {
+            json.append(c);
+          }
+      }
+    }
+    json.append('"');
+  }
+}
@@ -16,8 +16,9 @@
 
 package com.google.common.annotations.checkers;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.errorprone.matchers.Description.NO_MATCH;
-import static com.google.errorprone.util.ASTHelpers.enclosingPackage;
 import static javax.lang.model.element.ElementKind.ANNOTATION_TYPE;
 import static javax.lang.model.element.ElementKind.CLASS;
 import static javax.lang.model.element.ElementKind.CONSTRUCTOR;
@@ -27,54 +28,378 @@ import static javax.lang.model.element.ElementKind.FIELD;
 import static javax.lang.model.element.ElementKind.INTERFACE;
 import static javax.lang.model.element.ElementKind.METHOD;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.errorprone.BugPattern.SeverityLevel;
+import com.google.errorprone.ErrorProneFlags;
 import com.google.errorprone.VisitorState;
 import com.google.errorprone.bugpatterns.BugChecker;
+import com.google.errorprone.bugpatterns.BugChecker.CompilationUnitTreeMatcher;
 import com.google.errorprone.bugpatterns.BugChecker.IdentifierTreeMatcher;
 import com.google.errorprone.bugpatterns.BugChecker.MemberReferenceTreeMatcher;
 import com.google.errorprone.bugpatterns.BugChecker.MemberSelectTreeMatcher;
+import com.google.errorprone.fixes.ErrorPronePosition;
 import com.google.errorprone.matchers.Description;
 import com.google.errorprone.util.ASTHelpers;
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
 import com.sun.source.tree.IdentifierTree;
 import com.sun.source.tree.ImportTree;
 import com.sun.source.tree.MemberReferenceTree;
 import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.MethodTree;
 import com.sun.source.tree.Tree;
+import com.sun.source.tree.VariableTree;
+import com.sun.source.util.TreePath;
+import com.sun.tools.javac.code.Attribute;
+import com.sun.tools.javac.code.Kinds.Kind;
 import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Symbol.ClassSymbol;
 import com.sun.tools.javac.code.Symbol.PackageSymbol;
+import com.sun.tools.javac.code.Type;
+import com.sun.tools.javac.code.Type.ArrayType;
+import com.sun.tools.javac.code.Type.WildcardType;
+import com.sun.tools.javac.comp.AttrContext;
+import com.sun.tools.javac.comp.Enter;
+import com.sun.tools.javac.comp.Env;
 import com.sun.tools.javac.util.Name;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.ElementKind;
+import javax.tools.JavaFileManager;
 
 /**
- * Abstract check for usages of APIs that are annotated with a specific annotation.
+ * Abstract check for usages of APIs that are annotated with specific annotations.
+ *
+ * <p>A checker checks one or more {@linkplain AnnotatedApiRule rules}, each with its own annotation
+ * types and packages, in a single pass: each tree's symbol is resolved once and its verdicts for
+ * all rules are computed as a bit mask. Only APIs in a rule's base packages or packages under them
+ * are checked, except for its ignored packages; these are compiled into a {@link PackageTrie} once
+ * per compilation. Flags, passed as {@code -XepOpt:<CheckName>:<Name>=<value>} and listed in the
+ * README, also turn on the {@linkplain CompilationUnitPrefilter prefilter}, {@linkplain
+ * AnnotatedApiStats counters}, a {@linkplain UsageSummary summary} of each file's usages in place
+ * of one diagnostic per usage, a {@linkplain CompilationUnitScan single-pass engine} that also
+ * finds usages with no name in the source and a {@linkplain Baseline baseline} of known usages not
+ * to report. With the precomputed index, a {@link SimpleNameFilter} rejects names that can't refer
+ * to an annotated API before their symbols are resolved. Verdicts for APIs read from class files
+ * are shared with other compilations in the same JVM through a {@link SharedVerdictCache}. While a
+ * Flight Recorder recording is running, the checker emits {@link AnnotatedApiEvents}, and a
+ * {@link FindingsWriter} can stream every usage reported to a file for code scanning tools. Given
+ * the {@link ChangedLines} of a change, only trees on those lines are checked.
  *
  * @author Colin Decker
  */
 public abstract class AnnotatedApiUsageChecker extends BugChecker
-    implements MemberSelectTreeMatcher, IdentifierTreeMatcher, MemberReferenceTreeMatcher {
+    implements CompilationUnitTreeMatcher,
+        MemberSelectTreeMatcher,
+        IdentifierTreeMatcher,
+        MemberReferenceTreeMatcher {
+
+  /** The most rules one checker can check, one per bit of a {@code long} mask. */
+  private static final int MAX_RULES = Long.SIZE;
 
-  private final String basePackage;
-  private final String basePackagePlusDot; // Just to avoid creating this string repeatedly
+  private final ImmutableList<AnnotatedApiRule> rules;
+  private final ImmutableMap<String, Integer> ruleIndexes;
+  /** The severity each rule other than the primary one is reported with. */
+  private final ImmutableList<SeverityLevel> ruleSeverities;
+  private final long allRules;
+  private final int primaryRule; // the rule reported under this checker's own name, or -1
 
-  private final ImmutableSet<String> annotationTypes;
+  /** For each type some rule ignores, the mask of rules that ignore it. */
+  private final ImmutableMap<String, Long> ignoredTypeRules;
+
+  private final CompilationUnitPrefilter prefilter; // null if every unit is checked
+  private final Path statsFile;
+  private final boolean summary;
+  private final boolean singlePass;
+  private final boolean sharedCache;
+  private final Path findingsFile;
+  private final FindingsWriter.Format findingsFormat;
+  /** The annotation types of each rule, in order, identifying the rules' verdicts. */
+  private final String annotationConfiguration;
+  private final Baseline baseline;
+  private final Path baselineOutput;
+  private final ChangedLines changedLines;
 
   protected AnnotatedApiUsageChecker(String basePackage, String... annotationTypes) {
-    this.basePackage = basePackage;
-    this.basePackagePlusDot = basePackage + ".";
-    this.annotationTypes = ImmutableSet.copyOf(annotationTypes);
+    this(ErrorProneFlags.empty(), basePackage, annotationTypes);
+  }
+
+  /**
+   * Creates a checker configured by the given flags. Flag names are prefixed with the checker's
+   * canonical name, e.g. {@code -XepOpt:BetaApi:CompilationUnitPrefilter=true}.
+   */
+  @SuppressWarnings("this-escape") // canonicalName() and defaultSeverity() read @BugPattern only
+  protected AnnotatedApiUsageChecker(
+      ErrorProneFlags flags, String basePackage, String... annotationTypes) {
+    this(flags, null, basePackage, annotationTypes);
+  }
+
+  /**
+   * Creates a checker for the given rules, configured by the given flags. A rule named after the
+   * checker is reported like the checker's own findings; the others are reported under their own
+   * names. Each rule takes flags prefixed with its name, e.g. {@code
+   * -XepOpt:<RuleName>:BasePackages=...}.
+   */
+  @SuppressWarnings("this-escape") // canonicalName() and defaultSeverity() read @BugPattern only
+  protected AnnotatedApiUsageChecker(ErrorProneFlags flags, List<AnnotatedApiRule> rules) {
+    this(flags, checkNotNull(rules), null);
+  }
+
+  private AnnotatedApiUsageChecker(
+      ErrorProneFlags flags,
+      List<AnnotatedApiRule> rules,
+      String basePackage,
+      String... annotationTypes) {
+    if (rules == null) {
+      rules =
+          ImmutableList.of(
+              AnnotatedApiRule.builder(canonicalName())
+                  .addBasePackages(basePackage)
+                  .addAnnotationTypes(annotationTypes)
+                  .build());
+    }
+    checkArgument(
+        !rules.isEmpty() && rules.size() <= MAX_RULES,
+        "A checker must have between 1 and %s rules: %s",
+        MAX_RULES,
+        rules);
+    ImmutableList.Builder<AnnotatedApiRule> configuredRules = ImmutableList.builder();
+    ImmutableList.Builder<SeverityLevel> ruleSeverities = ImmutableList.builder();
+    Map<String, Integer> ruleIndexes = new LinkedHashMap<>();
+    Set<String> ruleNames = new LinkedHashSet<>();
+    Set<String> basePackages = new LinkedHashSet<>();
+    Map<String, Long> ignoredTypeRules = new LinkedHashMap<>();
+    for (AnnotatedApiRule unconfiguredRule : rules) {
+      AnnotatedApiRule rule = configure(unconfiguredRule, flags);
+      checkArgument(ruleNames.add(rule.name()), "Duplicate rule name: %s", rule.name());
+      SeverityLevel severity = severity(rule, flags);
+      if (severity == null) {
+        continue; // turned off
+      }
+      int i = ruleIndexes.size();
+      ruleIndexes.put(rule.name(), i);
+      configuredRules.add(rule);
+      ruleSeverities.add(severity);
+      basePackages.addAll(rule.basePackages());
+      for (String ignoredType : rule.ignoredTypes()) {
+        ignoredTypeRules.merge(ignoredType, ruleBit(i), (a, b) -> a | b);
+      }
+    }
+    this.rules = configuredRules.build();
+    this.ruleIndexes = ImmutableMap.copyOf(ruleIndexes);
+    this.ruleSeverities = ruleSeverities.build();
+    this.allRules = this.rules.size() == MAX_RULES ? -1L : ruleBit(this.rules.size()) - 1;
+    this.primaryRule = this.ruleIndexes.getOrDefault(canonicalName(), -1);
+    this.ignoredTypeRules = ImmutableMap.copyOf(ignoredTypeRules);
+    this.prefilter =
+        flags.getBoolean(flagName("CompilationUnitPrefilter")).orElse(false)
+            ? new CompilationUnitPrefilter(ImmutableList.copyOf(basePackages))
+            : null;
+    this.statsFile = flags.get(flagName("StatsFile")).map(Paths::get).orElse(null);
+    this.summary = flags.getBoolean(flagName("Summary")).orElse(false);
+    this.singlePass = flags.getBoolean(flagName("SinglePass")).orElse(false);
+    this.sharedCache = flags.getBoolean(flagName("SharedCache")).orElse(true);
+    this.findingsFile = flags.get(flagName("FindingsFile")).map(Paths::get).orElse(null);
+    this.findingsFormat =
+        flags
+            .get(flagName("FindingsFormat"))
+            .map(format -> FindingsWriter.Format.valueOf(format.toUpperCase(Locale.ROOT)))
+            .orElse(findingsFile == null ? null : FindingsWriter.Format.forFile(findingsFile));
+    StringBuilder annotationConfiguration = new StringBuilder();
+    for (AnnotatedApiRule rule : this.rules) {
+      annotationConfiguration.append(String.join(",", rule.annotationTypes())).append(';');
+    }
+    this.annotationConfiguration = annotationConfiguration.toString();
+    this.baseline =
+        flags.get(flagName("Baseline")).map(file -> Baseline.load(Paths.get(file))).orElse(null);
+    this.baselineOutput = flags.get(flagName("BaselineOutput")).map(Paths::get).orElse(null);
+    this.changedLines =
+        flags
+            .get(flagName("ChangedLines"))
+            .map(file -> ChangedLines.load(Paths.get(file)))
+            .orElse(null);
+    checkArgument(
+        changedLines == null || baselineOutput == null,
+        "%s can't be combined with %s, which would miss usages on unchanged lines",
+        flagName("ChangedLines"),
+        flagName("BaselineOutput"));
+  }
+
+  /**
+   * Returns the full name of the flag with the given name for this checker.
+   */
+  final String flagName(String name) {
+    return canonicalName() + ":" + name;
+  }
+
+  /**
+   * Returns the given rule configured by the flags prefixed with its name: {@code BasePackages}
+   * replaces the rule's base packages, and {@code IgnoredPackages} adds to its ignored packages.
+   */
+  private static AnnotatedApiRule configure(AnnotatedApiRule rule, ErrorProneFlags flags) {
+    List<String> basePackages = flags.getListOrEmpty(rule.name() + ":BasePackages");
+    List<String> ignoredPackages = flags.getListOrEmpty(rule.name() + ":IgnoredPackages");
+    if (basePackages.isEmpty() && ignoredPackages.isEmpty()) {
+      return rule;
+    }
+    return rule.withPackages(
+        basePackages.isEmpty() ? rule.basePackages() : basePackages,
+        Iterables.concat(rule.ignoredPackages(), ignoredPackages));
+  }
+
+  /**
+   * Returns the severity to report the given rule with, or {@code null} if it's turned off. Error
+   * Prone only knows the checker's own name, so the other rules can't be configured with {@code
+   * -Xep:<RuleName>:<severity>}; they're configured with {@code
+   * -XepOpt:<RuleName>:Severity=OFF|WARN|ERROR|SUGGESTION} instead, and are reported with the
+   * checker's default severity otherwise. The checker's own rule is configured with {@code -Xep}
+   * like any other check.
+   */
+  private SeverityLevel severity(AnnotatedApiRule rule, ErrorProneFlags flags) {
+    Optional<String> severity = flags.get(rule.name() + ":Severity");
+    if (severity.isEmpty()) {
+      return defaultSeverity();
+    }
+    checkArgument(
+        !rule.name().equals(canonicalName()),
+        "%s:Severity isn't supported; use -Xep:%s:<severity> for the checker's own rule",
+        rule.name(),
+        rule.name());
+    switch (severity.get().toUpperCase(Locale.ROOT)) {
+      case "OFF":
+        return null;
+      case "WARN":
+      case "WARNING":
+        return SeverityLevel.WARNING;
+      case "ERROR":
+        return SeverityLevel.ERROR;
+      case "SUGGESTION":
+        return SeverityLevel.SUGGESTION;
+      default:
+        throw new IllegalArgumentException(
+            "Expected OFF, WARN, ERROR or SUGGESTION for "
+                + rule.name()
+                + ":Severity, got: "
+                + severity.get());
+    }
+  }
+
+  private static long ruleBit(int rule) {
+    return 1L << rule;
+  }
+
+  /** Returns the rules this checker checks, in the order of their bits in rule masks. */
+  final ImmutableList<AnnotatedApiRule> rules() {
+    return rules;
+  }
+
+  /** Returns the rule reported under this checker's own name, or -1 if there is none. */
+  final int primaryRule() {
+    return primaryRule;
+  }
+
+  /**
+   * Returns the file to write instrumentation counters to, or {@code null} if they shouldn't be
+   * kept.
+   */
+  final Path statsFile() {
+    return statsFile;
+  }
+
+  /** Returns the baseline of usages not to report, or {@code null} if there is none. */
+  final Baseline baseline() {
+    return baseline;
+  }
+
+  /**
+   * Returns the file to stream the usages reported in the compilation to, or {@code null} if they
+   * shouldn't be written to a file.
+   */
+  final Path findingsFile() {
+    return findingsFile;
+  }
+
+  /** Returns the format of the {@linkplain #findingsFile findings file}. */
+  final FindingsWriter.Format findingsFormat() {
+    return findingsFormat;
+  }
+
+  /**
+   * Returns the baseline file to update with the usages found in the compilation, or {@code null}
+   * if none should be written.
+   */
+  final Path baselineOutput() {
+    return baselineOutput;
+  }
+
+  @Override
+  public final Description matchCompilationUnit(CompilationUnitTree tree, VisitorState state) {
+    AnnotatedApiCache cache = AnnotatedApiCache.instance(state.context, this);
+    BaselineFilter baselineFilter = cache.getBaselineFilter();
+    if (baselineFilter != null) {
+      baselineFilter.startCompilationUnit(tree);
+    }
+    AnnotatedApiEvents events = cache.getEvents();
+    if (events != null) {
+      events.compilationUnitStarted(tree);
+    }
+    FindingsWriter findings = cache.getFindings();
+    if (findings != null) {
+      // Everything found in the previous compilation unit has been written
+      findings.flush();
+    }
+    if (changedLines != null && changedLines.forCompilationUnit(tree, cache).isEmpty()) {
+      return NO_MATCH;
+    }
+    // Decide up front; the per-tree matchers will just read the verdict
+    AnnotatedApiStats stats = cache.getStats();
+    boolean timed = stats != null || (events != null && events.isRecordingCompilationUnit());
+    long start = timed ? System.nanoTime() : 0;
+    boolean mayReference = mayReferenceBasePackage(tree, state, cache);
+    if (timed) {
+      long nanos = System.nanoTime() - start;
+      if (stats != null) {
+        stats.timeSpent(nanos);
+      }
+      if (events != null) {
+        events.timeSpent(nanos);
+      }
+    }
+    if (!mayReference) {
+      return NO_MATCH;
+    }
+    if (summary) {
+      return new CompilationUnitScan(this, state, cache, singlePass).summarize();
+    }
+    return singlePass
+        ? new CompilationUnitScan(this, state, cache, true).reportUsages()
+        : NO_MATCH;
   }
 
   @Override
   public final Description matchMemberSelect(MemberSelectTree tree, VisitorState state) {
-    if (ASTHelpers.findEnclosingNode(state.getPath(), ImportTree.class) != null) {
+    if (summary
+        || singlePass
+        || isQualifierInChain(state.getPath())
+        || ASTHelpers.findEnclosingNode(state.getPath(), ImportTree.class) != null) {
       return Description.NO_MATCH;
     }
-    return matchTree(tree);
+    return matchChain(tree, state);
   }
 
   @Override
@@ -86,75 +411,690 @@ public abstract class AnnotatedApiUsageChecker extends BugChecker
     // super() calls would be matched anyway. This isn't likely to matter much in practice unless
     // a class is subclassing a non-annotated class that has an annotated no-arg constructor.
     // TODO(cgdecker): Revisit this if/when we have a way of detecting generated super() calls.
-    return isSuperCall(tree) ? NO_MATCH : matchTree(tree);
+    if (summary || singlePass || isSuperCall(tree) || isQualifierInChain(state.getPath())) {
+      return NO_MATCH;
+    }
+    return matchChain(tree, state);
   }
 
   @Override
   public final Description matchMemberReference(MemberReferenceTree tree, VisitorState state) {
-    return matchTree(tree);
+    return summary || singlePass ? NO_MATCH : matchChain(tree, state);
+  }
+
+  private Description matchChain(Tree tree, VisitorState state) {
+    AnnotatedApiCache cache = AnnotatedApiCache.instance(state.context, this);
+    List<Usage> usages = annotatedApiUsagesInChain(tree, state, cache);
+    Description description = NO_MATCH;
+    FindingsWriter findings = cache.getFindings();
+    // Every usage in the chain has the same enclosing declarations, so the rules suppressed on
+    // them are looked up once, and only if something other than the primary rule is reported.
+    // Error Prone doesn't match trees the checker itself is suppressed on.
+    boolean suppressedKnown = false;
+    long suppressed = 0;
+    for (Usage usage : usages) {
+      long usageRules = usage.rules;
+      if (primaryRule < 0 || usageRules != ruleBit(primaryRule)) {
+        if (!suppressedKnown) {
+          suppressed = suppressedRules(state.getPath());
+          suppressedKnown = true;
+        }
+        usageRules &= ~suppressed;
+      }
+      if (usageRules == 0 || isBaselined(usage, state, cache)) {
+        continue;
+      }
+      for (long rules = usageRules; rules != 0; rules &= rules - 1) {
+        int rule = Long.numberOfTrailingZeros(rules);
+        if (rule == primaryRule) {
+          description = describe(rule, usage.tree, null);
+        } else {
+          state.reportMatch(describe(rule, usage.tree, null));
+        }
+        if (findings != null) {
+          findings.write(usage, rule, state);
+        }
+      }
+    }
+    return description;
+  }
+
+  /**
+   * Returns a description of a usage that breaks the given rule, with the given message or, if
+   * it's {@code null}, the rule's.
+   */
+  final Description describe(int rule, Tree tree, String message) {
+    AnnotatedApiRule annotatedApiRule = rules.get(rule);
+    if (message == null) {
+      message = annotatedApiRule.message();
+    }
+    if (rule == primaryRule) {
+      return message == null
+          ? describeMatch(tree)
+          : buildDescription(tree).setMessage(message).build();
+    }
+    return Description.builder(
+            ErrorPronePosition.from(tree),
+            annotatedApiRule.name(),
+            annotatedApiRule.link() == null ? linkUrl() : annotatedApiRule.link(),
+            message == null ? message() : message)
+        .overrideSeverity(ruleSeverities.get(rule))
+        .build();
   }
 
-  private Description matchTree(Tree tree) {
+  /**
+   * Returns the severity the given rule is reported with in the current compilation. For the
+   * checker's own rule, this is the severity Error Prone was configured with, e.g. by {@code
+   * -Xep:<CheckName>:WARN}.
+   */
+  final SeverityLevel reportedSeverity(int rule, VisitorState state) {
+    return rule == primaryRule
+        ? state.severityMap().getOrDefault(canonicalName(), defaultSeverity())
+        : ruleSeverities.get(rule);
+  }
+
+  /**
+   * Returns the mask of rules suppressed, by name, on the declarations enclosing the given path.
+   * Error Prone only handles suppressions of the checker's own name.
+   */
+  private long suppressedRules(TreePath path) {
+    long suppressed = 0;
+    for (TreePath current = path; current != null; current = current.getParentPath()) {
+      suppressed |= rulesSuppressedBy(current.getLeaf());
+    }
+    return suppressed;
+  }
+
+  /** Returns the mask of rules named in {@code @SuppressWarnings} on the given declaration. */
+  final long rulesSuppressedBy(Tree tree) {
+    if (!(tree instanceof ClassTree
+        || tree instanceof MethodTree
+        || tree instanceof VariableTree)) {
+      return 0;
+    }
     Symbol symbol = ASTHelpers.getSymbol(tree);
-    if (symbol != null && isInMatchingPackage(symbol) && isAnnotatedApi(symbol)) {
-      return describeMatch(tree);
+    SuppressWarnings suppressWarnings =
+        symbol == null ? null : symbol.getAnnotation(SuppressWarnings.class);
+    if (suppressWarnings == null) {
+      return 0;
     }
-    return NO_MATCH;
+    long suppressed = 0;
+    for (String name : suppressWarnings.value()) {
+      Integer rule = ruleIndexes.get(name);
+      if (rule != null) {
+        suppressed |= ruleBit(rule);
+      }
+    }
+    return suppressed;
+  }
+
+  /**
+   * Returns true if the given usage of an annotated API is accepted by the baseline, collecting it
+   * if a new baseline is being written.
+   */
+  static boolean isBaselined(Usage usage, VisitorState state, AnnotatedApiCache cache) {
+    BaselineFilter baselineFilter = cache.getBaselineFilter();
+    return baselineFilter != null && baselineFilter.isBaselined(usage.api, state.getPath());
+  }
+
+  /**
+   * Returns true if the tree at the given path is the qualifier of a member select or member
+   * reference, e.g. {@code com.google.common.io.Files} in {@code com.google.common.io.Files.copy}.
+   * Qualifiers are checked along with the outermost tree of their chain, by {@link
+   * #annotatedApiUsagesInChain}, rather than on their own.
+   */
+  static boolean isQualifierInChain(TreePath path) {
+    Tree leaf = path.getLeaf();
+    Tree parent = path.getParentPath().getLeaf();
+    return (parent instanceof MemberSelectTree
+            && ((MemberSelectTree) parent).getExpression() == leaf)
+        || (parent instanceof MemberReferenceTree
+            && ((MemberReferenceTree) parent).getQualifierExpression() == leaf);
+  }
+
+  /**
+   * A tree that uses an annotated API, the API, and the mask of rules it's reported for. The API is
+   * the tree's own symbol unless the tree uses a type without naming it.
+   */
+  static final class Usage {
+    final Tree tree;
+    final Symbol api;
+    final long rules;
+
+    Usage(Tree tree, Symbol api, long rules) {
+      this.tree = tree;
+      this.api = api;
+      this.rules = rules;
+    }
+  }
+
+  /**
+   * Returns, for each rule, the outermost tree in the chain of qualified names ending at the given
+   * tree that uses an annotated API, grouped by tree. A chain has one usage per rule at most,
+   * however many of its segments are annotated: if {@code Files} is annotated, {@code Files.copy}
+   * is one usage, not two. The walk inward stops at the first package, since a package can only be
+   * annotated if the classes in it are too, or once every rule has a usage.
+   */
+  List<Usage> annotatedApiUsagesInChain(Tree tree, VisitorState state, AnnotatedApiCache cache) {
+    List<Usage> usages = Collections.emptyList();
+    if (resolveAnnotationTypes(cache, state).isEmpty()
+        || (changedLines != null && !changedLines.includes(tree, state, cache))) {
+      return usages;
+    }
+    if (ASTHelpers.getStartPosition(tree) < 0) {
+      // A type tree javac made up, such as the type of a variable declared with var, isn't in the
+      // source and has nowhere to be reported
+      return usages;
+    }
+    SimpleNameFilter nameFilter = cache.getNameFilter();
+    if (nameFilter != null && !mayNameAnnotatedApi(tree, nameFilter)) {
+      AnnotatedApiStats stats = cache.getStats();
+      if (stats != null) {
+        stats.nameFilterRejected();
+      }
+      return usages;
+    }
+    long found = 0;
+    for (Tree segment = tree;
+        segment != null && found != allRules;
+        segment = qualifierOf(segment)) {
+      if (nameFilter != null && !nameFilter.mightContain(simpleName(segment))) {
+        continue;
+      }
+      if (segment != tree) {
+        Symbol symbol = ASTHelpers.getSymbol(segment);
+        if (symbol == null || symbol.kind == Kind.PCK) {
+          break;
+        }
+      }
+      long rules = annotatedApiRulesUsedBy(segment, state, cache) & ~found;
+      if (rules != 0) {
+        if (usages.isEmpty()) {
+          usages = new ArrayList<>(1);
+        }
+        usages.add(new Usage(segment, ASTHelpers.getSymbol(segment), rules));
+        found |= rules;
+      }
+    }
+    return usages;
+  }
+
+  /**
+   * Returns true if the name of any segment of the chain of qualified names ending at the given
+   * tree might be the name of an annotated API.
+   */
+  private static boolean mayNameAnnotatedApi(Tree tree, SimpleNameFilter nameFilter) {
+    for (Tree segment = tree; segment != null; segment = qualifierOf(segment)) {
+      if (nameFilter.mightContain(simpleName(segment))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the simple name the given identifier, member select or member reference refers to
+   * something by, which is {@code <init>} for a constructor reference.
+   */
+  private static CharSequence simpleName(Tree tree) {
+    if (tree instanceof IdentifierTree) {
+      return ((IdentifierTree) tree).getName();
+    }
+    if (tree instanceof MemberSelectTree) {
+      return ((MemberSelectTree) tree).getIdentifier();
+    }
+    return ((MemberReferenceTree) tree).getName();
+  }
+
+  /**
+   * Returns the qualifying name of the given member select or member reference, or {@code null} if
+   * it has none or it's some other kind of expression (which is checked on its own).
+   */
+  private static Tree qualifierOf(Tree tree) {
+    Tree qualifier;
+    if (tree instanceof MemberSelectTree) {
+      qualifier = ((MemberSelectTree) tree).getExpression();
+    } else if (tree instanceof MemberReferenceTree) {
+      qualifier = ((MemberReferenceTree) tree).getQualifierExpression();
+    } else {
+      return null;
+    }
+    if (qualifier instanceof MemberSelectTree) {
+      return qualifier;
+    }
+    if (qualifier instanceof IdentifierTree && !isSuperCall((IdentifierTree) qualifier)) {
+      return qualifier;
+    }
+    return null;
+  }
+
+  /**
+   * Returns the mask of rules for which the given tree refers to an annotated API, which is 0 if it
+   * doesn't refer to one.
+   */
+  private long annotatedApiRulesUsedBy(Tree tree, VisitorState state, AnnotatedApiCache cache) {
+    return annotatedApiRulesUsedBy(tree, null, state, cache);
+  }
+
+  /**
+   * Returns the mask of rules for which the given symbol, used by the given tree without being
+   * named, or the tree's own symbol if {@code symbol} is {@code null}, is an annotated API.
+   */
+  private long annotatedApiRulesUsedBy(
+      Tree tree, Symbol symbol, VisitorState state, AnnotatedApiCache cache) {
+    AnnotatedApiStats stats = cache.getStats();
+    AnnotatedApiEvents events = cache.getEvents();
+    boolean recording = events != null && events.isRecordingCompilationUnit();
+    if (stats == null && !recording) {
+      return annotatedApiRulesUsedBy(tree, symbol, state, cache, null);
+    }
+    long start = System.nanoTime();
+    long rules = 0;
+    try {
+      if (stats != null) {
+        stats.treeInspected(tree.getKind());
+      }
+      rules = annotatedApiRulesUsedBy(tree, symbol, state, cache, stats);
+      if (rules != 0 && stats != null) {
+        stats.matched();
+      }
+      return rules;
+    } finally {
+      long nanos = System.nanoTime() - start;
+      if (stats != null) {
+        stats.timeSpent(nanos);
+      }
+      if (recording) {
+        events.treeInspected(rules != 0, nanos);
+      }
+    }
+  }
+
+  private long annotatedApiRulesUsedBy(
+      Tree tree,
+      Symbol symbol,
+      VisitorState state,
+      AnnotatedApiCache cache,
+      AnnotatedApiStats stats) {
+    if (resolveAnnotationTypes(cache, state).isEmpty()) {
+      // None of the annotations exist in this compilation, so nothing can be annotated with them
+      return 0;
+    }
+    if (prefilter != null
+        && !mayReferenceBasePackage(state.getPath().getCompilationUnit(), state, cache)) {
+      return 0;
+    }
+    if (symbol == null) {
+      symbol = ASTHelpers.getSymbol(tree);
+      if (stats != null) {
+        stats.symbolResolved(symbol != null);
+      }
+      if (symbol == null) {
+        return 0;
+      }
+    }
+    long packageRules = matchingRules(symbol, cache, state);
+    if (packageRules == 0) {
+      if (stats != null) {
+        stats.packageRejected();
+      }
+      return 0;
+    }
+    AnnotatedApiEvents events = cache.getEvents();
+    if (events != null) {
+      events.ownerChainWalkStarted();
+    }
+    long missesBefore = cache.missCount();
+    long rules = annotatedApiRules(symbol, cache, state) & packageRules;
+    // Each cache miss computes the verdict for one more symbol along the owner chain
+    if (stats != null) {
+      stats.ownerChainWalked(cache.missCount() - missesBefore);
+    }
+    if (events != null) {
+      events.ownerChainWalkFinished(symbol, cache.missCount() - missesBefore);
+      if (rules != 0) {
+        events.matched(tree, symbol, rules);
+      }
+    }
+    return rules;
+  }
+
+  /**
+   * Returns, for each rule, a usage at the given tree of the first annotated type found in the
+   * given type or, if {@code includeTypeArguments}, in its type arguments and array component
+   * types, grouped by type. Like a chain of qualified names, one tree has one usage per rule at
+   * most.
+   */
+  List<Usage> annotatedTypeUsages(
+      Tree tree,
+      Type type,
+      boolean includeTypeArguments,
+      VisitorState state,
+      AnnotatedApiCache cache) {
+    List<Usage> usages = new ArrayList<>(0);
+    if (changedLines != null && !changedLines.includes(tree, state, cache)) {
+      return usages;
+    }
+    addAnnotatedTypeUsages(tree, type, includeTypeArguments, 0, state, cache, usages);
+    return usages;
+  }
+
+  /**
+   * Adds the usages of annotated types in the given type that aren't for a rule in {@code found}
+   * to {@code usages}, and returns {@code found} with their rules added.
+   */
+  private long addAnnotatedTypeUsages(
+      Tree tree,
+      Type type,
+      boolean includeTypeArguments,
+      long found,
+      VisitorState state,
+      AnnotatedApiCache cache,
+      List<Usage> usages) {
+    if (type == null || found == allRules) {
+      return found;
+    }
+    switch (type.getKind()) {
+      case DECLARED:
+        break;
+      case ARRAY:
+        return includeTypeArguments
+            ? addAnnotatedTypeUsages(
+                tree, ((ArrayType) type).elemtype, true, found, state, cache, usages)
+            : found;
+      case WILDCARD:
+        return includeTypeArguments
+            ? addAnnotatedTypeUsages(
+                tree, ((WildcardType) type).type, true, found, state, cache, usages)
+            : found;
+      default:
+        return found;
+    }
+    long rules = annotatedApiRulesUsedBy(tree, type.tsym, state, cache) & ~found;
+    if (rules != 0) {
+      usages.add(new Usage(tree, type.tsym, rules));
+      found |= rules;
+    }
+    if (includeTypeArguments) {
+      for (Type typeArgument : type.getTypeArguments()) {
+        found = addAnnotatedTypeUsages(tree, typeArgument, true, found, state, cache, usages);
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Returns the symbols for the annotation types of this checker's rules in the current
+   * compilation, each mapped to the mask of rules it marks APIs for, resolving them through the
+   * symbol table the first time they're needed. Annotation types that can't be resolved are left
+   * out. This also decides whether the {@linkplain #precomputedIndex precomputed index} can be used
+   * for this compilation, which it can only be if it answers for every rule whose annotations
+   * exist in it.
+   */
+  private ImmutableMap<Symbol, Long> resolveAnnotationTypes(
+      AnnotatedApiCache cache, VisitorState state) {
+    ImmutableMap<Symbol, Long> annotationSymbols = cache.getAnnotationSymbols();
+    if (annotationSymbols == null) {
+      AnnotatedApiIndex index = precomputedIndex().orElse(null);
+      String indexJar = null;
+      Map<Symbol, Long> rulesByAnnotation = new LinkedHashMap<>();
+      long resolvedRules = 0;
+      long indexRules = 0;
+      for (int i = 0; i < rules.size(); i++) {
+        ImmutableSet<String> annotationTypes = rules.get(i).annotationTypes();
+        for (String annotationType : annotationTypes) {
+          Symbol annotationSymbol = state.getSymbolFromString(annotationType);
+          if (annotationSymbol != null) {
+            rulesByAnnotation.merge(annotationSymbol, ruleBit(i), (a, b) -> a | b);
+            resolvedRules |= ruleBit(i);
+            if (index != null
+                && annotationTypes.size() == 1
+                && index.annotationType().equals(annotationType)) {
+              String jar = index.matchingJar(annotationSymbol);
+              if (jar != null) {
+                indexJar = jar;
+                indexRules |= ruleBit(i);
+              }
+            }
+          }
+        }
+      }
+      annotationSymbols = ImmutableMap.copyOf(rulesByAnnotation);
+      boolean useIndex = resolvedRules != 0 && indexRules == resolvedRules;
+      cache.setAnnotationSymbols(
+          annotationSymbols, useIndex ? index : null, useIndex ? indexJar : null, indexRules);
+      cache.setNameFilter(useIndex ? nameFilter(index, indexJar, state, cache) : null);
+      if (sharedCache) {
+        // Rules whose annotations don't exist in a compilation never match in it, so compilations
+        // only share verdicts if the same rules' annotations exist in them
+        cache.setSharedVerdicts(
+            SharedVerdictCache.forConfiguration(
+                annotationConfiguration + Long.toHexString(resolvedRules)));
+      }
+    }
+    return annotationSymbols;
+  }
+
+  /**
+   * Returns a filter of the simple names that can refer to an annotated API in this compilation,
+   * or {@code null} if names can't be filtered. They can't be if a class in the base packages is
+   * being compiled from source; see {@link SimpleNameFilter#forClassPath} for the other cases.
+   */
+  private SimpleNameFilter nameFilter(
+      AnnotatedApiIndex index, String indexJar, VisitorState state, AnnotatedApiCache cache) {
+    if (index.simpleNameFilter() == null) {
+      return null;
+    }
+    PackageTrie packageTrie = packageTrie(cache, state);
+    // Every class entered from source so far, which is every class in the compilation's own files
+    for (Env<AttrContext> env : Enter.instance(state.context).getEnvs()) {
+      ClassSymbol classSymbol = env.enclClass.sym;
+      if (classSymbol != null && packageTrie.rulesUnderRoot(classSymbol.packge()) != 0) {
+        return null;
+      }
+    }
+    JavaFileManager fileManager = state.context.get(JavaFileManager.class);
+    if (fileManager == null) {
+      return null;
+    }
+    Set<String> basePackages = new LinkedHashSet<>();
+    Set<String> annotationDescriptors = new HashSet<>();
+    for (AnnotatedApiRule rule : rules) {
+      basePackages.addAll(rule.basePackages());
+      for (String annotationType : rule.annotationTypes()) {
+        annotationDescriptors.add("L" + annotationType.replace('.', '/') + ";");
+      }
+    }
+    try {
+      return SimpleNameFilter.forClassPath(
+          index, indexJar, basePackages, annotationDescriptors, fileManager);
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Returns an index of the annotated APIs in the library this checker is for, if there is one.
+   * The index is only used when the library on the classpath is the one it was built from, and
+   * only for the classes it covers; annotation mirrors are read for everything else. Returns empty
+   * by default.
+   */
+  Optional<AnnotatedApiIndex> precomputedIndex() {
+    return Optional.empty();
+  }
+
+  /**
+   * Returns true if the given compilation unit might contain a reference to something in the base
+   * package, which is always the case without the prefilter. The verdict is computed once per
+   * compilation unit.
+   */
+  private boolean mayReferenceBasePackage(
+      CompilationUnitTree unit, VisitorState state, AnnotatedApiCache cache) {
+    if (cache.getCurrentCompilationUnit() != unit) {
+      boolean verdict =
+          prefilter == null
+              || prefilter.mayReferenceBasePackage(unit, state, packageTrie(cache, state));
+      cache.setCurrentCompilationUnit(unit, verdict);
+      state.incrementCounter(
+          this, verdict ? "compilation-units-checked" : "compilation-units-skipped");
+    }
+    return cache.currentCompilationUnitMayReferenceBasePackage();
   }
 
   /**
    * Returns true if the given tree is a call to {@code super} in a constructor.
    */
-  private static boolean isSuperCall(IdentifierTree tree) {
+  static boolean isSuperCall(IdentifierTree tree) {
     return tree.getName().contentEquals("super");
   }
 
   /**
-   * Returns true if the given symbol belongs to the base package for this checker or a package
-   * under it.
+   * Returns the mask of rules whose base packages the given symbol belongs to, or a package under
+   * one, and not to one of the rule's ignored packages. Verdicts are computed once per package and
+   * memoized in the given cache.
    */
-  private boolean isInMatchingPackage(Symbol symbol) {
-    Optional<PackageSymbol> packageSymbol = enclosingPackage(symbol);
-    if (packageSymbol.isEmpty()) {
+  private long matchingRules(Symbol symbol, AnnotatedApiCache cache, VisitorState state) {
+    PackageSymbol packageSymbol = enclosingPackage(symbol);
+    if (packageSymbol == null) {
       // Modules don't have an enclosing package
-      return false;
+      return 0;
+    }
+    Long verdict = cache.getPackageVerdict(packageSymbol);
+    if (verdict != null) {
+      return verdict;
     }
-    String packageName = packageSymbol.get().fullname.toString();
-    return !isIgnoredPackage(packageName)
-        && (packageName.equals(basePackage) || packageName.startsWith(basePackagePlusDot));
+    long rules = packageTrie(cache, state).matchingRules(packageSymbol);
+    if (rules != 0 && isIgnoredPackage(packageSymbol.fullname.toString())) {
+      rules = 0;
+    }
+    return cache.putPackageVerdict(packageSymbol, rules);
+  }
+
+  /**
+   * Returns the base packages and ignored packages of this checker's rules compiled for the current
+   * compilation's name table, compiling them the first time they're needed.
+   */
+  private PackageTrie packageTrie(AnnotatedApiCache cache, VisitorState state) {
+    PackageTrie packageTrie = cache.getPackageTrie();
+    if (packageTrie == null) {
+      packageTrie = PackageTrie.compile(rules, state.getNames());
+      cache.setPackageTrie(packageTrie);
+    }
+    return packageTrie;
   }
 
   /**
-   * May be overridden to ignore APIs under specific packages. Returns false by default.
+   * Returns the package the given symbol is declared in, or null if it has none. Unlike
+   * {@link ASTHelpers#enclosingPackage}, this doesn't allocate.
+   */
+  static PackageSymbol enclosingPackage(Symbol symbol) {
+    for (Symbol current = symbol; current != null; current = current.owner) {
+      if (current.kind == Kind.PCK) {
+        return (PackageSymbol) current;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * May be overridden to ignore APIs under specific packages, in addition to those given with the
+   * {@code IgnoredPackages} flag. Applies to every rule. Called at most once per package in a
+   * compilation. Returns false by default.
    */
   protected boolean isIgnoredPackage(String packageName) {
     return false;
   }
 
   /**
-   * May be overridden to ignore specific types and their members. Returns false by default.
+   * May be overridden to ignore specific types and their members, in addition to each rule's
+   * ignored types. Applies to every rule. Returns false by default.
    */
   protected boolean isIgnoredType(String fullyQualifiedTypeName) {
     return false;
   }
 
   /**
-   * Returns true if the given symbol is annotated with the annotation or if it's a member of a type
-   * annotated with the annotation.
+   * Returns the mask of rules for which the given symbol is annotated with one of the rule's
+   * annotations or is a member of a type that is. Verdicts for all rules are computed in one walk
+   * outward through the symbol's owners and memoized in the given cache.
    */
-  private boolean isAnnotatedApi(Symbol symbol) {
+  private long annotatedApiRules(Symbol symbol, AnnotatedApiCache cache, VisitorState state) {
+    Long verdict = cache.getAnnotatedApiVerdict(symbol);
+    if (verdict != null) {
+      return verdict;
+    }
+    return cache.putAnnotatedApiVerdict(symbol, computeAnnotatedApiRules(symbol, cache, state));
+  }
+
+  private long computeAnnotatedApiRules(
+      Symbol symbol, AnnotatedApiCache cache, VisitorState state) {
+    long ignored = 0;
     Name name = symbol.getQualifiedName();
-    if (name != null && isIgnoredType(name.toString())) {
-      return false;
+    if (name != null) {
+      String typeName = name.toString();
+      ignored = isIgnoredType(typeName) ? allRules : ignoredTypeRules.getOrDefault(typeName, 0L);
+      if (ignored == allRules) {
+        return 0;
+      }
     }
 
-    for (AnnotationMirror annotation : symbol.getAnnotationMirrors()) {
-      if (annotationTypes.contains(annotation.getAnnotationType().toString())) {
-        return true;
+    return (directlyAnnotatedRules(symbol, cache, state)
+            | rulesInheritedFromOwner(symbol, cache, state))
+        & ~ignored;
+  }
+
+  /**
+   * Returns the mask of rules whose annotations the given symbol itself is annotated with, using
+   * the precomputed index if it covers the symbol's class, verdicts shared with other compilations
+   * if the symbol was read from a class file, and annotation mirrors otherwise.
+   */
+  private static long directlyAnnotatedRules(
+      Symbol symbol, AnnotatedApiCache cache, VisitorState state) {
+    AnnotatedApiStats stats = cache.getStats();
+    AnnotatedApiIndex index = cache.getIndex();
+    if (index != null) {
+      ClassSymbol enclosingClass = symbol.enclClass();
+      if (enclosingClass != null && cache.indexCovers(enclosingClass)) {
+        if (stats != null) {
+          stats.indexConsulted();
+        }
+        return index.isAnnotated(symbol, state.getTypes()) ? cache.getIndexRules() : 0;
+      }
+    }
+
+    SharedVerdictCache sharedVerdicts = cache.getSharedVerdicts();
+    String origin = null;
+    String api = null;
+    if (sharedVerdicts != null) {
+      ClassSymbol enclosingClass = symbol.enclClass();
+      origin = enclosingClass == null ? null : cache.getOrigin(enclosingClass);
+      api = origin == null ? null : AnnotatedApiIndex.key(symbol, state.getTypes());
+      if (api != null) {
+        Long verdict = sharedVerdicts.get(origin, api);
+        if (verdict != null) {
+          if (stats != null) {
+            stats.sharedVerdictFound();
+          }
+          return verdict;
+        }
       }
     }
 
-    return isMemberOfAnnotatedApi(symbol);
+    if (stats != null) {
+      stats.annotationMirrorsRead();
+    }
+    ImmutableMap<Symbol, Long> annotationSymbols = cache.getAnnotationSymbols();
+    long rules = 0;
+    for (Attribute.Compound annotation : symbol.getAnnotationMirrors()) {
+      Long annotationRules = annotationSymbols.get(annotation.type.tsym);
+      if (annotationRules != null) {
+        rules |= annotationRules;
+      }
+    }
+    if (api != null) {
+      sharedVerdicts.put(origin, api, rules);
+    }
+    return rules;
   }
 
   /**
@@ -168,11 +1108,16 @@ public abstract class AnnotatedApiUsageChecker extends BugChecker
               FIELD, METHOD, CONSTRUCTOR, ENUM_CONSTANT, CLASS, INTERFACE, ENUM, ANNOTATION_TYPE));
 
   /**
-   * Returns true if the given element is a member of an annotated class or interface.
+   * Returns the mask of rules for which the given element is a member of an annotated class or
+   * interface.
    */
-  private boolean isMemberOfAnnotatedApi(Symbol symbol) {
-    return symbol != null
+  private long rulesInheritedFromOwner(
+      Symbol symbol, AnnotatedApiCache cache, VisitorState state) {
+    if (symbol != null
         && INHERITS_ANNOTATION_FROM_OWNER.contains(symbol.getKind())
-        && isAnnotatedApi(symbol.owner);
+        && symbol.owner != null) {
+      return annotatedApiRules(symbol.owner, cache, state);
+    }
+    return 0;
   }
 }
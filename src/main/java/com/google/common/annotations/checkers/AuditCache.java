@@ -0,0 +1,340 @@
+/*
+ * Copyright (C) 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.annotations.checkers;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.Comparator.comparing;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.MoreFiles;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * A persistent cache of the findings of a {@link ClassFileAuditor} for each jar, so that jars that
+ * haven't changed aren't read again.
+ *
+ * <p>Entries are files in the cache directory named by a SHA-256 hash of the jar's content and of
+ * a fingerprint of the rules it was audited with, so a jar is audited again if either changes,
+ * wherever it's found. Each entry stores the jar's findings in a small binary format, with each
+ * distinct string written once. Hashing a large jar costs about as much as reading it, so a second
+ * kind of file, a ref, maps the jar's absolute path, size and modification time to the content
+ * hash it had when they were last seen. A jar whose ref is still valid isn't read at all; a jar
+ * that was touched, moved or rewritten is hashed, and is only audited again if its content
+ * changed.
+ *
+ * <p>Several processes can share a cache directory. Entries are written to a temporary file and
+ * then moved into place atomically, so readers never see a partial entry, and two writers of the
+ * same entry write the same content. Entries and refs that can't be read are treated as missing.
+ * Reading an entry updates its modification time, and {@link #evict} deletes the least recently
+ * used entries until the cache fits in its size limit, along with the refs to them.
+ */
+final class AuditCache {
+
+  private static final int MAGIC = 0x41504941; // "APIA"
+  private static final int VERSION = 1;
+
+  private static final String ENTRY_SUFFIX = ".audit";
+  private static final String REF_SUFFIX = ".ref";
+  private static final String TEMP_SUFFIX = ".tmp";
+
+  private static final Pattern KEY_PATTERN = Pattern.compile("[0-9a-f]{64}");
+
+  /** Temporary files older than this were left by writers that died. */
+  private static final long STALE_TEMP_FILE_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+  /** Audits one jar. */
+  interface JarAudit {
+    List<ClassFileAuditor.Finding> audit(Path jar) throws IOException;
+  }
+
+  private final Path directory;
+  private final long maxBytes;
+  private final String rulesFingerprint;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  /**
+   * Creates a cache in the given directory, creating it if needed, for findings made with rules
+   * that have the given fingerprint.
+   */
+  AuditCache(Path directory, long maxBytes, String rulesFingerprint) throws IOException {
+    this.directory = Files.createDirectories(directory);
+    this.maxBytes = maxBytes;
+    this.rulesFingerprint = rulesFingerprint;
+  }
+
+  /**
+   * Returns the findings for the given jar from the cache, or audits it with the given audit and
+   * caches the findings if it isn't cached.
+   */
+  List<ClassFileAuditor.Finding> findings(Path jar, JarAudit audit) throws IOException {
+    String locationPrefix = jar + "!/";
+    Path ref = directory.resolve(statKey(jar) + REF_SUFFIX);
+    String key = readRef(ref);
+    if (key != null) {
+      List<ClassFileAuditor.Finding> findings = read(entry(key), locationPrefix);
+      if (findings != null) {
+        touch(ref);
+        hits.incrementAndGet();
+        return findings;
+      }
+    }
+
+    // The jar is new, was touched or moved, or its entry was evicted
+    key = contentKey(jar);
+    Path entry = entry(key);
+    List<ClassFileAuditor.Finding> findings = read(entry, locationPrefix);
+    if (findings != null) {
+      hits.incrementAndGet();
+    } else {
+      misses.incrementAndGet();
+      findings = audit.audit(jar);
+      write(entry, findings, locationPrefix);
+    }
+    writeRef(ref, key);
+    return findings;
+  }
+
+  /** Returns the number of jars whose findings were read from the cache. */
+  long hitCount() {
+    return hits.get();
+  }
+
+  /** Returns the number of jars that had to be audited. */
+  long missCount() {
+    return misses.get();
+  }
+
+  private Path entry(String key) {
+    return directory.resolve(key + ENTRY_SUFFIX);
+  }
+
+  /**
+   * Returns the key of the ref for the given jar, which changes if the jar is moved or its size or
+   * modification time changes.
+   */
+  private String statKey(Path jar) throws IOException {
+    BasicFileAttributes attributes = Files.readAttributes(jar, BasicFileAttributes.class);
+    Object fileKey = attributes.fileKey();
+    return Hashing.sha256()
+        .newHasher()
+        .putUnencodedChars(jar.toAbsolutePath().toString())
+        .putLong(attributes.size())
+        .putLong(attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS))
+        .putUnencodedChars(fileKey == null ? "" : fileKey.toString())
+        .putUnencodedChars(rulesFingerprint)
+        .hash()
+        .toString();
+  }
+
+  /** Returns the key of the entry for the given jar, which changes if its content changes. */
+  private String contentKey(Path jar) throws IOException {
+    return Hashing.sha256()
+        .newHasher()
+        .putBytes(MoreFiles.asByteSource(jar).hash(Hashing.sha256()).asBytes())
+        .putUnencodedChars(rulesFingerprint)
+        .hash()
+        .toString();
+  }
+
+  /**
+   * Returns the entry key stored in the given ref, or {@code null} if there is no such ref or it
+   * can't be read.
+   */
+  private static String readRef(Path ref) {
+    try {
+      String key = new String(Files.readAllBytes(ref), US_ASCII);
+      return KEY_PATTERN.matcher(key).matches() ? key : null;
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  private void writeRef(Path ref, String key) throws IOException {
+    Path temp = Files.createTempFile(directory, ref.getFileName().toString(), TEMP_SUFFIX);
+    try {
+      Files.write(temp, key.getBytes(US_ASCII));
+      moveIntoPlace(temp, ref);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  /**
+   * Reads the findings in the given entry, prefixing their locations with the given prefix, or
+   * returns {@code null} if there is no such entry or it can't be read.
+   */
+  private static List<ClassFileAuditor.Finding> read(Path entry, String locationPrefix) {
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(entry)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        return null;
+      }
+      String[] strings = new String[in.readInt()];
+      for (int i = 0; i < strings.length; i++) {
+        strings[i] = in.readUTF();
+      }
+      int count = in.readInt();
+      List<ClassFileAuditor.Finding> findings = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        findings.add(
+            new ClassFileAuditor.Finding(
+                locationPrefix + strings[in.readInt()],
+                strings[in.readInt()],
+                strings[in.readInt()]));
+      }
+      touch(entry);
+      return findings;
+    } catch (IOException | RuntimeException e) {
+      // Missing, or written by another version or a writer that didn't finish
+      return null;
+    }
+  }
+
+  private static void touch(Path entry) {
+    try {
+      Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+    } catch (IOException e) {
+      // Only affects which entries are evicted first
+    }
+  }
+
+  /**
+   * Writes the given findings to the given entry, storing their locations without the given
+   * prefix.
+   */
+  private void write(Path entry, List<ClassFileAuditor.Finding> findings, String locationPrefix)
+      throws IOException {
+    Map<String, Integer> stringIndexes = new HashMap<>();
+    List<String> strings = new ArrayList<>();
+    int[] indexes = new int[findings.size() * 3];
+    int i = 0;
+    for (ClassFileAuditor.Finding finding : findings) {
+      String location =
+          finding.location.startsWith(locationPrefix)
+              ? finding.location.substring(locationPrefix.length())
+              : finding.location;
+      for (String string : new String[] {location, finding.className, finding.api}) {
+        Integer index = stringIndexes.get(string);
+        if (index == null) {
+          index = strings.size();
+          stringIndexes.put(string, index);
+          strings.add(string);
+        }
+        indexes[i++] = index;
+      }
+    }
+
+    Path temp = Files.createTempFile(directory, entry.getFileName().toString(), TEMP_SUFFIX);
+    try {
+      try (OutputStream fileOut = Files.newOutputStream(temp);
+          DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(strings.size());
+        for (String string : strings) {
+          out.writeUTF(string);
+        }
+        out.writeInt(findings.size());
+        for (int index : indexes) {
+          out.writeInt(index);
+        }
+      }
+      moveIntoPlace(temp, entry);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  private static void moveIntoPlace(Path temp, Path target) throws IOException {
+    try {
+      Files.move(temp, target, ATOMIC_MOVE, REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(temp, target, REPLACE_EXISTING);
+    }
+  }
+
+  /**
+   * Deletes the least recently used entries until the cache is no bigger than its size limit, then
+   * the refs to entries that no longer exist, and any temporary files left by writers that died.
+   * Refs are small and don't count towards the size limit. Files deleted by another process at the
+   * same time are skipped.
+   */
+  void evict() throws IOException {
+    List<Path> entries = new ArrayList<>();
+    List<Path> refs = new ArrayList<>();
+    Map<Path, BasicFileAttributes> attributes = new HashMap<>();
+    long totalBytes = 0;
+    long now = System.currentTimeMillis();
+    try (Stream<Path> files = Files.list(directory)) {
+      for (Path file : (Iterable<Path>) files::iterator) {
+        String name = file.getFileName().toString();
+        BasicFileAttributes fileAttributes;
+        try {
+          fileAttributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+          continue;
+        }
+        if (name.endsWith(TEMP_SUFFIX)) {
+          if (now - fileAttributes.lastModifiedTime().toMillis() > STALE_TEMP_FILE_MILLIS) {
+            Files.deleteIfExists(file);
+          }
+        } else if (name.endsWith(ENTRY_SUFFIX)) {
+          entries.add(file);
+          attributes.put(file, fileAttributes);
+          totalBytes += fileAttributes.size();
+        } else if (name.endsWith(REF_SUFFIX)) {
+          refs.add(file);
+        }
+      }
+    }
+    entries.sort(comparing(entry -> attributes.get(entry).lastModifiedTime()));
+    for (int i = 0; i < entries.size() && totalBytes > maxBytes; i++) {
+      Path entry = entries.get(i);
+      Files.deleteIfExists(entry);
+      totalBytes -= attributes.get(entry).size();
+    }
+    for (Path ref : refs) {
+      String key = readRef(ref);
+      if (key == null || !Files.exists(entry(key))) {
+        Files.deleteIfExists(ref);
+      }
+    }
+  }
+}
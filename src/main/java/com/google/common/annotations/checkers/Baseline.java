@@ -0,0 +1,237 @@
+/*
+ * Copyright (C) 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.annotations.checkers;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A set of known usages of annotated APIs that a checker should accept without reporting. Each
+ * entry is a line with three tab-separated fields:
+ *
+ * <ol>
+ *   <li>the source file, as its package directory and file name, e.g. {@code example/Test.java};
+ *   <li>the member the usage is in, e.g. {@code example.Test#foo(java.lang.String)}, or the class
+ *       for usages outside any method or field;
+ *   <li>the API used, e.g. {@code com.google.common.io.Files#createTempDir()}.
+ * </ol>
+ *
+ * <p>Class names in members and APIs are binary names. Blank lines and lines starting with {@code
+ * #} are ignored.
+ *
+ * <p>Entries are kept only as 64-bit hashes in an open-addressed table, so a baseline of tens of
+ * thousands of entries takes a few hundred kilobytes, and a lookup hashes the three fields without
+ * joining them into a line. A baseline file is read once per JVM and read again only if it
+ * changes.
+ */
+final class Baseline {
+
+  private static final ConcurrentMap<Path, Baseline> LOADED = new ConcurrentHashMap<>();
+
+  /**
+   * Held while updating a baseline file. File locks are held on behalf of the whole JVM, so they
+   * only keep other processes out; compilations running on other threads wait here.
+   */
+  private static final Object UPDATE_LOCK = new Object();
+
+  private final FileTime lastModified;
+  private final long[] table; // 0 marks an empty slot
+  private final int size;
+
+  private Baseline(FileTime lastModified, Collection<String> entries) {
+    this.lastModified = lastModified;
+    int capacity = Integer.highestOneBit(Math.max(entries.size(), 1) * 2 - 1) << 1;
+    this.table = new long[capacity];
+    int size = 0;
+    for (String entry : entries) {
+      String[] fields = entry.split("\t", -1);
+      if (fields.length != 3) {
+        throw new IllegalArgumentException("Expected 3 tab-separated fields: " + entry);
+      }
+      if (insert(hash(fields[0], fields[1], fields[2]))) {
+        size++;
+      }
+    }
+    this.size = size;
+  }
+
+  /**
+   * Returns the baseline in the given file, reading it only if it hasn't been read by this JVM yet
+   * or has changed since.
+   *
+   * @throws UncheckedIOException if the file can't be read
+   */
+  static Baseline load(Path file) {
+    Path key = file.toAbsolutePath().normalize();
+    return LOADED.compute(
+        key,
+        (path, loaded) -> {
+          try {
+            FileTime lastModified = Files.getLastModifiedTime(path);
+            if (loaded != null && loaded.lastModified.equals(lastModified)) {
+              return loaded;
+            }
+            return new Baseline(lastModified, readEntries(path));
+          } catch (IOException e) {
+            throw new UncheckedIOException("Can't read baseline " + path, e);
+          }
+        });
+  }
+
+  private static List<String> readEntries(Path file) throws IOException {
+    List<String> entries = new ArrayList<>();
+    try (BufferedReader reader = Files.newBufferedReader(file, UTF_8)) {
+      for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+        if (!line.isEmpty() && !line.startsWith("#")) {
+          entries.add(line);
+        }
+      }
+    }
+    return entries;
+  }
+
+  /** Returns the baseline line for the given usage. */
+  static String entry(String file, String member, String api) {
+    return file + "\t" + member + "\t" + api;
+  }
+
+  /**
+   * Updates the baseline in the given file with the usages found by a compilation: the entries for
+   * the source files it compiled are replaced by the given entries, and the entries for all other
+   * files are kept, so an incremental or per-module compilation doesn't drop them. The file is
+   * created if it doesn't exist.
+   *
+   * <p>Compilations that update the same file at the same time, in this JVM or in other processes,
+   * take turns: each holds a lock on a {@code .lock} file next to it while it reads, merges and
+   * writes. The new contents are written to a temporary file and moved into place, so readers
+   * never see a partly written baseline.
+   */
+  static void update(Path file, Set<String> compiledFiles, Collection<String> entries)
+      throws IOException {
+    Path target = file.toAbsolutePath();
+    Files.createDirectories(target.getParent());
+    Path lockFile = target.resolveSibling(target.getFileName() + ".lock");
+    synchronized (UPDATE_LOCK) {
+      try (FileChannel channel = FileChannel.open(lockFile, CREATE, WRITE);
+          FileLock lock = channel.lock()) {
+        Set<String> updated = new TreeSet<>(entries);
+        if (Files.exists(target)) {
+          for (String entry : readEntries(target)) {
+            int tab = entry.indexOf('\t');
+            if (tab < 0 || !compiledFiles.contains(entry.substring(0, tab))) {
+              updated.add(entry);
+            }
+          }
+        }
+        write(target, updated);
+      }
+    }
+  }
+
+  private static void write(Path file, Collection<String> entries) throws IOException {
+    Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+    try {
+      try (Writer out = Files.newBufferedWriter(temp, UTF_8)) {
+        out.write("# file\tmember\tAPI\n");
+        for (String entry : entries) {
+          out.write(entry);
+          out.write('\n');
+        }
+      }
+      try {
+        Files.move(temp, file, ATOMIC_MOVE, REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp, file, REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  /** Returns true if the given usage is in this baseline. */
+  boolean contains(String file, String member, String api) {
+    long hash = hash(file, member, api);
+    int mask = table.length - 1;
+    for (int i = (int) hash & mask; table[i] != 0; i = (i + 1) & mask) {
+      if (table[i] == hash) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Returns the number of distinct entries in this baseline. */
+  int size() {
+    return size;
+  }
+
+  private boolean insert(long hash) {
+    int mask = table.length - 1;
+    int i = (int) hash & mask;
+    for (; table[i] != 0; i = (i + 1) & mask) {
+      if (table[i] == hash) {
+        return false;
+      }
+    }
+    table[i] = hash;
+    return true;
+  }
+
+  /**
+   * Returns a 64-bit FNV-1a hash of the entry with the given fields, never 0. This is the same as
+   * hashing the entry's line, without building it.
+   */
+  private static long hash(String file, String member, String api) {
+    long hash = 0xcbf29ce484222325L;
+    hash = hash(hash, file);
+    hash = (hash ^ '\t') * 0x100000001b3L;
+    hash = hash(hash, member);
+    hash = (hash ^ '\t') * 0x100000001b3L;
+    hash = hash(hash, api);
+    // Spread the high bits into the low ones used to pick a slot
+    hash ^= hash >>> 32;
+    return hash == 0 ? 1 : hash;
+  }
+
+  private static long hash(long hash, String s) {
+    for (int i = 0; i < s.length(); i++) {
+      hash = (hash ^ s.charAt(i)) * 0x100000001b3L;
+    }
+    return hash;
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.annotations.checkers;
+
+import com.google.errorprone.util.ASTHelpers;
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.tree.VariableTree;
+import com.sun.source.util.TreePath;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Symbol.ClassSymbol;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Checks the usages a checker finds in one compilation against its {@link Baseline}, and collects
+ * them if it was asked to write a new baseline. Names are computed once per compilation unit and
+ * once per symbol, however many usages refer to them.
+ */
+final class BaselineFilter {
+
+  private final Baseline baseline; // null if no usages are accepted
+  private final Set<String> observedUsages; // null if no baseline is written
+  private final Set<String> compiledFiles;
+  private final Map<Symbol, String> names = new IdentityHashMap<>();
+
+  private CompilationUnitTree currentUnit;
+  private String currentFileName;
+
+  /**
+   * Creates a filter for one compilation that accepts the usages in the given baseline, or none if
+   * it's {@code null}, and collects the usages it sees if {@code collect} is true.
+   */
+  BaselineFilter(Baseline baseline, boolean collect) {
+    this.baseline = baseline;
+    this.observedUsages = collect ? new TreeSet<>() : null;
+    this.compiledFiles = collect ? new HashSet<>() : null;
+  }
+
+  /** Records that the given compilation unit is being checked. */
+  void startCompilationUnit(CompilationUnitTree unit) {
+    currentUnit = unit;
+    currentFileName = fileName(unit);
+    if (compiledFiles != null) {
+      compiledFiles.add(currentFileName);
+    }
+  }
+
+  /**
+   * Returns true if the usage of the given API at the given path in the current compilation unit
+   * is accepted by the baseline. Also collects the usage if a new baseline is being written, so
+   * this should only be called for usages that would otherwise be reported.
+   */
+  boolean isBaselined(Symbol api, TreePath path) {
+    CompilationUnitTree unit = path.getCompilationUnit();
+    if (unit != currentUnit) {
+      startCompilationUnit(unit);
+    }
+    String member = name(enclosingMember(path));
+    String apiName = name(api);
+    if (observedUsages != null) {
+      observedUsages.add(Baseline.entry(currentFileName, member, apiName));
+    }
+    return baseline != null && baseline.contains(currentFileName, member, apiName);
+  }
+
+  /**
+   * Updates the given baseline file with the usages collected in this compilation. See {@link
+   * Baseline#update}.
+   */
+  void update(Path file) throws IOException {
+    Baseline.update(file, compiledFiles, observedUsages);
+  }
+
+  private String name(Symbol symbol) {
+    if (symbol == null) {
+      return "";
+    }
+    String name = names.get(symbol);
+    if (name == null) {
+      name = baselineName(symbol);
+      names.put(symbol, name);
+    }
+    return name;
+  }
+
+  /**
+   * Returns the name of the given compilation unit's file in a baseline, which is its package's
+   * directory followed by its file name, e.g. {@code example/Test.java}.
+   */
+  private static String fileName(CompilationUnitTree unit) {
+    String path = unit.getSourceFile().getName();
+    String fileName = path.substring(Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\')) + 1);
+    ExpressionTree packageName = unit.getPackageName();
+    return packageName == null
+        ? fileName
+        : packageName.toString().replace('.', '/') + "/" + fileName;
+  }
+
+  /**
+   * Returns the method, field or class that the tree at the given path is part of, or {@code null}
+   * if it's outside of any class.
+   */
+  private static Symbol enclosingMember(TreePath path) {
+    for (TreePath current = path; current != null; current = current.getParentPath()) {
+      Tree leaf = current.getLeaf();
+      boolean isField =
+          leaf instanceof VariableTree
+              && current.getParentPath().getLeaf() instanceof ClassTree;
+      if (leaf instanceof MethodTree || leaf instanceof ClassTree || isField) {
+        Symbol symbol = ASTHelpers.getSymbol(leaf);
+        if (symbol != null) {
+          return symbol;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the name of the given class or member in a baseline, e.g. {@code example.Test$Inner} or
+   * {@code example.Test#foo(java.lang.String)}.
+   */
+  static String baselineName(Symbol symbol) {
+    if (symbol instanceof ClassSymbol) {
+      return ((ClassSymbol) symbol).flatName().toString();
+    }
+    return symbol.enclClass().flatName() + "#" + symbol;
+  }
+}
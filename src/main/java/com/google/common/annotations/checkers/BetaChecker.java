@@ -21,11 +21,14 @@ import static com.google.errorprone.BugPattern.SeverityLevel.ERROR;
 
 import com.google.auto.service.AutoService;
 import com.google.errorprone.BugPattern;
+import com.google.errorprone.ErrorProneFlags;
 import com.google.errorprone.bugpatterns.BugChecker;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Optional;
 import java.util.Set;
+import javax.inject.Inject;
 
 /**
  * Checks for usages of Guava {@code @Beta} APIs, which should never be used in library code.
@@ -49,8 +52,23 @@ public final class BetaChecker extends AnnotatedApiUsageChecker {
               Arrays.asList(
                   "com.google.common.cache.Cache", "com.google.common.cache.LoadingCache")));
 
+  /**
+   * Index of Guava's @Beta APIs, generated from the Guava version this checker is built against.
+   */
+  private static final String INDEX_RESOURCE = "META-INF/guava-beta-checker/beta-index.bin";
+
   public BetaChecker() {
-    super("com.google.common", "com.google.common.annotations.Beta");
+    this(ErrorProneFlags.empty());
+  }
+
+  @Inject
+  public BetaChecker(ErrorProneFlags flags) {
+    super(flags, "com.google.common", "com.google.common.annotations.Beta");
+  }
+
+  @Override
+  Optional<AnnotatedApiIndex> precomputedIndex() {
+    return AnnotatedApiIndex.fromResource(INDEX_RESOURCE);
   }
 
   @Override
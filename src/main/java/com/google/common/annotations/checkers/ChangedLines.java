@@ -0,0 +1,320 @@
+/*
+ * Copyright (C) 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.annotations.checkers;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.errorprone.VisitorState;
+import com.google.errorprone.util.ASTHelpers;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.LineMap;
+import com.sun.source.tree.Tree;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.tools.JavaFileObject;
+
+/**
+ * The lines changed in each file of a change, so that a checker only looks at usages of annotated
+ * APIs that the change adds. Read from a file in either of two formats:
+ *
+ * <ul>
+ *   <li>a unified diff, such as the output of {@code git diff}, in which the lines added to each
+ *       new file are the changed lines; removed lines and files don't count;
+ *   <li>one line per file with its path, a colon and a comma-separated list of line numbers and
+ *       inclusive ranges of them, e.g. {@code src/main/java/example/Test.java:12,30-41}. Blank
+ *       lines and lines starting with {@code #} are ignored.
+ * </ul>
+ *
+ * <p>Paths are matched against the end of a source file's path, a whole segment at a time, so
+ * they can be relative to any directory above the sources, such as the repository root. The
+ * {@code b/} prefix {@code git diff} adds is ignored. A source file that isn't listed has no
+ * changed lines.
+ *
+ * <p>The ranges of each file are merged and kept as sorted arrays, so whether a tree overlaps a
+ * changed line is a binary search. A file is read once per JVM and read again only if it changes.
+ */
+final class ChangedLines {
+
+  private static final ConcurrentMap<Path, ChangedLines> LOADED = new ConcurrentHashMap<>();
+
+  private static final Pattern HUNK_HEADER =
+      Pattern.compile("^@@ -\\d+(?:,(\\d+))? \\+(\\d+)(?:,(\\d+))? @@");
+
+  /** The changed lines of a file, as sorted, disjoint, inclusive ranges. */
+  static final class LineRanges {
+    static final LineRanges NONE = new LineRanges(new int[0], new int[0]);
+
+    private final int[] starts;
+    private final int[] ends;
+
+    private LineRanges(int[] starts, int[] ends) {
+      this.starts = starts;
+      this.ends = ends;
+    }
+
+    /** Creates ranges from unsorted and possibly overlapping {@code {start, end}} pairs. */
+    static LineRanges of(List<int[]> ranges) {
+      int[][] sorted = ranges.toArray(new int[0][]);
+      Arrays.sort(sorted, (a, b) -> Integer.compare(a[0], b[0]));
+      int[] starts = new int[sorted.length];
+      int[] ends = new int[sorted.length];
+      int size = 0;
+      for (int[] range : sorted) {
+        if (size > 0 && range[0] <= ends[size - 1] + 1) {
+          ends[size - 1] = Math.max(ends[size - 1], range[1]);
+        } else {
+          starts[size] = range[0];
+          ends[size] = range[1];
+          size++;
+        }
+      }
+      return new LineRanges(Arrays.copyOf(starts, size), Arrays.copyOf(ends, size));
+    }
+
+    /** Returns true if no lines are changed. */
+    boolean isEmpty() {
+      return starts.length == 0;
+    }
+
+    /** Returns true if any line from {@code first} to {@code last}, inclusive, is changed. */
+    boolean intersects(long first, long last) {
+      // Find the first range that ends at or after the first line
+      int low = 0;
+      int high = ends.length;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (ends[mid] < first) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low < starts.length && starts[low] <= last;
+    }
+  }
+
+  /** The changed lines of each file, grouped by file name. */
+  private final Map<String, List<Map.Entry<String, LineRanges>>> filesByName = new HashMap<>();
+
+  private final FileTime lastModified;
+
+  private ChangedLines(FileTime lastModified, Map<String, List<int[]>> rangesByPath) {
+    this.lastModified = lastModified;
+    for (Map.Entry<String, List<int[]>> file : rangesByPath.entrySet()) {
+      String path = file.getKey();
+      filesByName
+          .computeIfAbsent(path.substring(path.lastIndexOf('/') + 1), name -> new ArrayList<>())
+          .add(Map.entry(path, LineRanges.of(file.getValue())));
+    }
+  }
+
+  /**
+   * Returns the changed lines in the given file, reading it only if it hasn't been read by this
+   * JVM yet or has changed since.
+   *
+   * @throws UncheckedIOException if the file can't be read
+   * @throws IllegalArgumentException if the file is in neither format
+   */
+  static ChangedLines load(Path file) {
+    Path key = file.toAbsolutePath().normalize();
+    return LOADED.compute(
+        key,
+        (path, loaded) -> {
+          try {
+            FileTime lastModified = Files.getLastModifiedTime(path);
+            if (loaded != null && loaded.lastModified.equals(lastModified)) {
+              return loaded;
+            }
+            return new ChangedLines(lastModified, parseRanges(Files.readAllLines(path, UTF_8)));
+          } catch (IOException e) {
+            throw new UncheckedIOException("Can't read changed lines " + path, e);
+          }
+        });
+  }
+
+  /** Returns the changed lines given by the given lines of a diff or list of ranges. */
+  static ChangedLines parse(List<String> lines) {
+    return new ChangedLines(null, parseRanges(lines));
+  }
+
+  private static Map<String, List<int[]>> parseRanges(List<String> lines) {
+    for (String line : lines) {
+      if (line.startsWith("+++ ") || line.startsWith("@@ ")) {
+        return parseDiff(lines);
+      }
+    }
+    Map<String, List<int[]>> rangesByPath = new LinkedHashMap<>();
+    for (String line : lines) {
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+      int colon = line.lastIndexOf(':');
+      if (colon <= 0) {
+        throw new IllegalArgumentException("Expected <path>:<line ranges>: " + line);
+      }
+      String path = normalize(line.substring(0, colon));
+      List<int[]> ranges = rangesByPath.computeIfAbsent(path, p -> new ArrayList<>());
+      for (String range : line.substring(colon + 1).split(",")) {
+        range = range.trim();
+        if (range.isEmpty()) {
+          continue;
+        }
+        int dash = range.indexOf('-');
+        try {
+          int start = Integer.parseInt(dash < 0 ? range : range.substring(0, dash).trim());
+          int end = dash < 0 ? start : Integer.parseInt(range.substring(dash + 1).trim());
+          ranges.add(new int[] {start, end});
+        } catch (NumberFormatException e) {
+          throw new IllegalArgumentException("Bad line range '" + range + "' in: " + line, e);
+        }
+      }
+    }
+    return rangesByPath;
+  }
+
+  /**
+   * Returns the lines added to each file by the given unified diff. Hunks are read by their line
+   * counts, so removed lines that look like file headers aren't mistaken for them.
+   */
+  private static Map<String, List<int[]>> parseDiff(List<String> lines) {
+    Map<String, List<int[]>> rangesByPath = new LinkedHashMap<>();
+    List<int[]> ranges = null; // null if the current file was deleted
+    int oldRemaining = 0;
+    int newRemaining = 0;
+    int newLine = 0;
+    for (String line : lines) {
+      if (oldRemaining > 0 || newRemaining > 0) {
+        if (line.startsWith("+")) {
+          if (ranges != null) {
+            ranges.add(new int[] {newLine, newLine});
+          }
+          newLine++;
+          newRemaining--;
+        } else if (line.startsWith("-")) {
+          oldRemaining--;
+        } else if (!line.startsWith("\\")) { // not "\ No newline at end of file"
+          newLine++;
+          oldRemaining--;
+          newRemaining--;
+        }
+        continue;
+      }
+      if (line.startsWith("+++ ")) {
+        String path = line.substring(4);
+        int tab = path.indexOf('\t'); // a timestamp may follow
+        path = tab < 0 ? path : path.substring(0, tab);
+        if (path.equals("/dev/null")) {
+          ranges = null;
+        } else {
+          path = normalize(path.startsWith("b/") ? path.substring(2) : path);
+          ranges = rangesByPath.computeIfAbsent(path, p -> new ArrayList<>());
+        }
+      } else if (line.startsWith("@@ ")) {
+        Matcher hunk = HUNK_HEADER.matcher(line);
+        if (!hunk.find()) {
+          throw new IllegalArgumentException("Bad hunk header: " + line);
+        }
+        oldRemaining = hunk.group(1) == null ? 1 : Integer.parseInt(hunk.group(1));
+        newLine = Integer.parseInt(hunk.group(2));
+        newRemaining = hunk.group(3) == null ? 1 : Integer.parseInt(hunk.group(3));
+      }
+    }
+    return rangesByPath;
+  }
+
+  private static String normalize(String path) {
+    path = path.trim().replace('\\', '/');
+    return path.startsWith("./") ? path.substring(2) : path;
+  }
+
+  /**
+   * Returns the changed lines of the source file with the given path, which is {@link
+   * LineRanges#NONE} if it isn't listed. If several listed paths match, the longest wins.
+   */
+  LineRanges forFile(String sourcePath) {
+    String path = sourcePath.replace('\\', '/');
+    List<Map.Entry<String, LineRanges>> candidates =
+        filesByName.get(path.substring(path.lastIndexOf('/') + 1));
+    if (candidates == null) {
+      return LineRanges.NONE;
+    }
+    Map.Entry<String, LineRanges> match = null;
+    for (Map.Entry<String, LineRanges> candidate : candidates) {
+      String listed = candidate.getKey();
+      boolean matches =
+          path.equals(listed)
+              || (path.endsWith(listed)
+                  && path.charAt(path.length() - listed.length() - 1) == '/');
+      if (matches && (match == null || listed.length() > match.getKey().length())) {
+        match = candidate;
+      }
+    }
+    return match == null ? LineRanges.NONE : match.getValue();
+  }
+
+  /**
+   * Returns the changed lines of the given compilation unit, looking them up only once while it's
+   * the current compilation unit of the given cache.
+   */
+  LineRanges forCompilationUnit(CompilationUnitTree unit, AnnotatedApiCache cache) {
+    LineRanges ranges = cache.getChangedLineRanges(unit);
+    if (ranges == null) {
+      JavaFileObject sourceFile = unit.getSourceFile();
+      String path = sourceFile.toUri().getPath();
+      ranges = forFile(path == null ? sourceFile.getName() : path);
+      cache.setChangedLineRanges(unit, ranges);
+    }
+    return ranges;
+  }
+
+  /**
+   * Returns true if any line of the given tree, in the compilation unit at the given state's path,
+   * is changed. This only needs the tree's position, so it's checked before any symbol is resolved.
+   */
+  boolean includes(Tree tree, VisitorState state, AnnotatedApiCache cache) {
+    int start = ASTHelpers.getStartPosition(tree);
+    if (start < 0) {
+      return true; // no position to go by
+    }
+    CompilationUnitTree unit = state.getPath().getCompilationUnit();
+    LineMap lineMap = unit.getLineMap();
+    long firstLine = lineMap.getLineNumber(start);
+    int end = state.getEndPosition(tree);
+    long lastLine = end < 0 ? firstLine : lineMap.getLineNumber(end);
+    if (forCompilationUnit(unit, cache).intersects(firstLine, lastLine)) {
+      return true;
+    }
+    AnnotatedApiStats stats = cache.getStats();
+    if (stats != null) {
+      stats.changedLinesRejected();
+    }
+    return false;
+  }
+}
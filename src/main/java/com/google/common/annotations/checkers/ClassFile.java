@@ -0,0 +1,402 @@
+/*
+ * Copyright (C) 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.annotations.checkers;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+
+/**
+ * The parts of a class file that the checkers care about, read directly from its bytes without
+ * loading the class. Only the class's name, whether it's an inner class, the annotations on it and
+ * on its fields and methods, the descriptors of its fields and methods, and the classes, fields and
+ * methods its constant pool refers to are kept.
+ */
+final class ClassFile {
+
+  private static final int MAGIC = 0xCAFEBABE;
+
+  private static final int ACC_STATIC = 0x0008;
+
+  // Constant pool tags
+  private static final int CONSTANT_UTF8 = 1;
+  private static final int CONSTANT_INTEGER = 3;
+  private static final int CONSTANT_FLOAT = 4;
+  private static final int CONSTANT_LONG = 5;
+  private static final int CONSTANT_DOUBLE = 6;
+  private static final int CONSTANT_CLASS = 7;
+  private static final int CONSTANT_STRING = 8;
+  private static final int CONSTANT_FIELDREF = 9;
+  private static final int CONSTANT_METHODREF = 10;
+  private static final int CONSTANT_INTERFACE_METHODREF = 11;
+  private static final int CONSTANT_NAME_AND_TYPE = 12;
+  private static final int CONSTANT_METHOD_HANDLE = 15;
+  private static final int CONSTANT_METHOD_TYPE = 16;
+  private static final int CONSTANT_DYNAMIC = 17;
+  private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+  private static final int CONSTANT_MODULE = 19;
+  private static final int CONSTANT_PACKAGE = 20;
+
+  /** A field or method declared in a class file. */
+  static final class Member {
+    final String name;
+    final String descriptor;
+    final ImmutableSet<String> annotations;
+
+    private Member(String name, String descriptor, ImmutableSet<String> annotations) {
+      this.name = name;
+      this.descriptor = descriptor;
+      this.annotations = annotations;
+    }
+
+    boolean isConstructor() {
+      return name.equals("<init>");
+    }
+  }
+
+  /**
+   * A class, field or method that a class file refers to from its constant pool, i.e. one that its
+   * code uses.
+   */
+  static final class Reference {
+    /** The binary name of the class, or of the class the member was referenced through. */
+    final String owner;
+    /** The name of the field or method, or {@code null} for a class. */
+    final String name;
+    /** The descriptor of the field or method, or {@code null} for a class. */
+    final String descriptor;
+
+    private Reference(String owner, String name, String descriptor) {
+      this.owner = owner;
+      this.name = name;
+      this.descriptor = descriptor;
+    }
+
+    boolean isClass() {
+      return name == null;
+    }
+
+    boolean isMethod() {
+      return descriptor != null && descriptor.startsWith("(");
+    }
+
+    @Override
+    public String toString() {
+      return isClass() ? owner : owner + "#" + name + descriptor;
+    }
+  }
+
+  /** The binary name of the class, e.g. {@code com.google.common.collect.Multiset$Entry}. */
+  final String name;
+
+  /**
+   * True if the class is a non-static member class, whose constructors take an instance of the
+   * enclosing class as an extra leading parameter that doesn't appear in source.
+   */
+  final boolean isInnerClass;
+
+  /**
+   * Descriptors of the annotations on the class, e.g. {@code Lcom/google/common/annotations/Beta;}.
+   */
+  final ImmutableSet<String> annotations;
+
+  final ImmutableList<Member> fields;
+  final ImmutableList<Member> methods;
+
+  /** The other classes, and the fields and methods, that the class refers to. */
+  final ImmutableList<Reference> references;
+
+  /**
+   * The binary names of the non-static member classes, this one included, that the class's
+   * InnerClasses attribute lists. Every member class the class refers to is listed there.
+   */
+  final ImmutableSet<String> innerClasses;
+
+  private ClassFile(
+      String name,
+      boolean isInnerClass,
+      ImmutableSet<String> annotations,
+      ImmutableList<Member> fields,
+      ImmutableList<Member> methods,
+      ImmutableList<Reference> references,
+      ImmutableSet<String> innerClasses) {
+    this.name = name;
+    this.isInnerClass = isInnerClass;
+    this.annotations = annotations;
+    this.fields = fields;
+    this.methods = methods;
+    this.references = references;
+    this.innerClasses = innerClasses;
+  }
+
+  /**
+   * Parses the given class file bytes.
+   *
+   * @throws IOException if the bytes aren't a well-formed class file
+   */
+  static ClassFile parse(byte[] bytes) throws IOException {
+    return new Parser(bytes).parse();
+  }
+
+  private static final class Parser {
+    private final DataInputStream in;
+    private Object[] constants; // Strings for UTF8 entries, int[] {tag, index...} for the rest
+
+    Parser(byte[] bytes) {
+      this.in = new DataInputStream(new ByteArrayInputStream(bytes));
+    }
+
+    ClassFile parse() throws IOException {
+      if (in.readInt() != MAGIC) {
+        throw new IOException("not a class file");
+      }
+      in.readUnsignedShort(); // minor_version
+      in.readUnsignedShort(); // major_version
+      readConstantPool();
+
+      in.readUnsignedShort(); // access_flags
+      int thisClass = in.readUnsignedShort();
+      String internalName = className(thisClass);
+      ImmutableList<Reference> references = readReferences(thisClass);
+      in.readUnsignedShort(); // super_class
+      int interfaces = in.readUnsignedShort();
+      in.skipBytes(2 * interfaces);
+
+      ImmutableList<Member> fields = readMembers();
+      ImmutableList<Member> methods = readMembers();
+
+      ImmutableSet.Builder<String> annotations = ImmutableSet.builder();
+      ImmutableSet<String> innerClasses = ImmutableSet.of();
+      int attributes = in.readUnsignedShort();
+      for (int i = 0; i < attributes; i++) {
+        String attributeName = utf8(in.readUnsignedShort());
+        int length = in.readInt();
+        if (isAnnotationsAttribute(attributeName)) {
+          readAnnotations(annotations);
+        } else if (attributeName.equals("InnerClasses")) {
+          innerClasses = readInnerClasses();
+        } else {
+          in.skipBytes(length);
+        }
+      }
+
+      String name = internalName.replace('/', '.');
+      return new ClassFile(
+          name,
+          innerClasses.contains(name),
+          annotations.build(),
+          fields,
+          methods,
+          references,
+          innerClasses);
+    }
+
+    private void readConstantPool() throws IOException {
+      int count = in.readUnsignedShort();
+      constants = new Object[count];
+      for (int i = 1; i < count; i++) {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+          case CONSTANT_UTF8:
+            constants[i] = in.readUTF();
+            break;
+          case CONSTANT_CLASS:
+          case CONSTANT_STRING:
+          case CONSTANT_METHOD_TYPE:
+          case CONSTANT_MODULE:
+          case CONSTANT_PACKAGE:
+            constants[i] = new int[] {tag, in.readUnsignedShort()};
+            break;
+          case CONSTANT_FIELDREF:
+          case CONSTANT_METHODREF:
+          case CONSTANT_INTERFACE_METHODREF:
+          case CONSTANT_NAME_AND_TYPE:
+          case CONSTANT_DYNAMIC:
+          case CONSTANT_INVOKE_DYNAMIC:
+            constants[i] = new int[] {tag, in.readUnsignedShort(), in.readUnsignedShort()};
+            break;
+          case CONSTANT_INTEGER:
+          case CONSTANT_FLOAT:
+            in.skipBytes(4);
+            break;
+          case CONSTANT_LONG:
+          case CONSTANT_DOUBLE:
+            in.skipBytes(8);
+            i++; // These take up two entries
+            break;
+          case CONSTANT_METHOD_HANDLE:
+            in.skipBytes(3);
+            break;
+          default:
+            throw new IOException("unknown constant pool tag " + tag);
+        }
+      }
+    }
+
+    private String utf8(int index) throws IOException {
+      Object constant = constants[index];
+      if (!(constant instanceof String)) {
+        throw new IOException("constant " + index + " is not a UTF8 entry");
+      }
+      return (String) constant;
+    }
+
+    private String className(int index) throws IOException {
+      Object constant = constants[index];
+      if (!(constant instanceof int[]) || ((int[]) constant)[0] != CONSTANT_CLASS) {
+        throw new IOException("constant " + index + " is not a class entry");
+      }
+      return utf8(((int[]) constant)[1]);
+    }
+
+    /**
+     * Returns the classes other than this one, and the fields and methods, in the constant pool.
+     * Array classes are reduced to their element class, or dropped if it's primitive.
+     */
+    private ImmutableList<Reference> readReferences(int thisClass) throws IOException {
+      ImmutableList.Builder<Reference> references = ImmutableList.builder();
+      for (int i = 1; i < constants.length; i++) {
+        if (!(constants[i] instanceof int[]) || i == thisClass) {
+          continue;
+        }
+        int[] constant = (int[]) constants[i];
+        switch (constant[0]) {
+          case CONSTANT_CLASS:
+            String className = elementClassName(utf8(constant[1]));
+            if (className != null) {
+              references.add(new Reference(className.replace('/', '.'), null, null));
+            }
+            break;
+          case CONSTANT_FIELDREF:
+          case CONSTANT_METHODREF:
+          case CONSTANT_INTERFACE_METHODREF:
+            String owner = elementClassName(className(constant[1]));
+            int[] nameAndType = (int[]) constants[constant[2]];
+            if (owner != null) {
+              references.add(
+                  new Reference(
+                      owner.replace('/', '.'), utf8(nameAndType[1]), utf8(nameAndType[2])));
+            }
+            break;
+          default:
+            break;
+        }
+      }
+      return references.build();
+    }
+
+    /**
+     * Returns the internal name of the given class entry's class, or of its element class if it's
+     * an array, or {@code null} if it's an array of primitives.
+     */
+    private static String elementClassName(String name) {
+      if (!name.startsWith("[")) {
+        return name;
+      }
+      int start = name.lastIndexOf('[') + 1;
+      return name.charAt(start) == 'L' ? name.substring(start + 1, name.length() - 1) : null;
+    }
+
+    private ImmutableList<Member> readMembers() throws IOException {
+      int count = in.readUnsignedShort();
+      ImmutableList.Builder<Member> members = ImmutableList.builderWithExpectedSize(count);
+      for (int i = 0; i < count; i++) {
+        in.readUnsignedShort(); // access_flags
+        String name = utf8(in.readUnsignedShort());
+        String descriptor = utf8(in.readUnsignedShort());
+        ImmutableSet.Builder<String> annotations = ImmutableSet.builder();
+        int attributes = in.readUnsignedShort();
+        for (int j = 0; j < attributes; j++) {
+          String attributeName = utf8(in.readUnsignedShort());
+          int length = in.readInt();
+          if (isAnnotationsAttribute(attributeName)) {
+            readAnnotations(annotations);
+          } else {
+            in.skipBytes(length);
+          }
+        }
+        members.add(new Member(name, descriptor, annotations.build()));
+      }
+      return members.build();
+    }
+
+    private static boolean isAnnotationsAttribute(String attributeName) {
+      return attributeName.equals("RuntimeInvisibleAnnotations")
+          || attributeName.equals("RuntimeVisibleAnnotations");
+    }
+
+    private void readAnnotations(ImmutableSet.Builder<String> annotations) throws IOException {
+      int count = in.readUnsignedShort();
+      for (int i = 0; i < count; i++) {
+        annotations.add(readAnnotation());
+      }
+    }
+
+    /** Reads an annotation structure, returning the descriptor of its type. */
+    private String readAnnotation() throws IOException {
+      String type = utf8(in.readUnsignedShort());
+      int elementValuePairs = in.readUnsignedShort();
+      for (int i = 0; i < elementValuePairs; i++) {
+        in.readUnsignedShort(); // element_name_index
+        skipElementValue();
+      }
+      return type;
+    }
+
+    private void skipElementValue() throws IOException {
+      int tag = in.readUnsignedByte();
+      switch (tag) {
+        case 'e':
+          in.skipBytes(4);
+          break;
+        case '@':
+          readAnnotation();
+          break;
+        case '[':
+          int values = in.readUnsignedShort();
+          for (int i = 0; i < values; i++) {
+            skipElementValue();
+          }
+          break;
+        default: // constants and class literals
+          in.skipBytes(2);
+          break;
+      }
+    }
+
+    /**
+     * Returns the binary names of the classes that the InnerClasses attribute says are non-static
+     * members of another class.
+     */
+    private ImmutableSet<String> readInnerClasses() throws IOException {
+      ImmutableSet.Builder<String> innerClasses = ImmutableSet.builder();
+      int count = in.readUnsignedShort();
+      for (int i = 0; i < count; i++) {
+        int innerClass = in.readUnsignedShort();
+        int outerClass = in.readUnsignedShort();
+        in.readUnsignedShort(); // inner_name_index
+        int innerClassAccessFlags = in.readUnsignedShort();
+        if (outerClass != 0 && (innerClassAccessFlags & ACC_STATIC) == 0) {
+          innerClasses.add(className(innerClass).replace('/', '.'));
+        }
+      }
+      return innerClasses.build();
+    }
+  }
+}
@@ -0,0 +1,440 @@
+/*
+ * Copyright (C) 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.annotations.checkers;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingOutputStream;
+import com.google.common.io.ByteStreams;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+
+/**
+ * Finds usages of annotated APIs in compiled code, for auditing jars whose sources aren't
+ * available. Class files are read directly, and the classes, fields and methods in their constant
+ * pools are checked against an {@link AnnotatedApiIndex} of the library, using the base packages,
+ * ignored packages and ignored types of a checker's rule for the index's annotation.
+ *
+ * <p>Usage: {@code ClassFileAuditor [--threads <n>] [--library <guava.jar>] <jar or directory>...}
+ *
+ * <p>Each usage of a Guava {@code @Beta} API is printed as a line with the class file's location,
+ * the class using the API and the API, separated by tabs. Directories are searched for class files
+ * and jars. Jars, and the class files directly in each directory, are audited in parallel on a
+ * fork-join pool. By default the index shipped with {@link BetaChecker} is used; {@code --library}
+ * indexes the given Guava jar instead, for auditing against a different Guava version. With {@code
+ * --cache <dir>}, each jar's findings are kept in an {@link AuditCache} in that directory, limited
+ * to {@code --cache-size <megabytes>} (512 by default), so jars audited before aren't read again.
+ * Exits with status 1 if any usages are found.
+ *
+ * <p>Usages are found by the class a member was referenced through, which is the class it's
+ * declared in unless the code calls an inherited member through a subclass. Those usages are
+ * missed, as are usages of annotated types that only appear in descriptors and signatures.
+ */
+public final class ClassFileAuditor {
+
+  /** A usage of an annotated API by a class file. */
+  static final class Finding {
+    /** The class file, e.g. {@code lib.jar!/com/example/Foo.class}. */
+    final String location;
+    /** The binary name of the class using the API. */
+    final String className;
+    /** The API used, keyed as in an {@link AnnotatedApiIndex}. */
+    final String api;
+
+    Finding(String location, String className, String api) {
+      this.location = location;
+      this.className = className;
+      this.api = api;
+    }
+
+    @Override
+    public String toString() {
+      return location + "\t" + className + "\t" + api;
+    }
+  }
+
+  private final AnnotatedApiUsageChecker checker;
+  private final AnnotatedApiRule rule;
+  private final AnnotatedApiIndex index;
+  private final AuditCache cache; // null if findings aren't cached
+
+  /** Verdicts for classes in the library, keyed by binary name. */
+  private final ConcurrentMap<String, Boolean> classVerdicts = new ConcurrentHashMap<>();
+
+  /**
+   * Creates an auditor for the given checker's rule for the annotation the given index was built
+   * for.
+   *
+   * @throws IllegalArgumentException if the checker has no rule for just that annotation
+   */
+  ClassFileAuditor(AnnotatedApiUsageChecker checker, AnnotatedApiIndex index) {
+    this(checker, index, null);
+  }
+
+  private ClassFileAuditor(
+      AnnotatedApiUsageChecker checker, AnnotatedApiIndex index, AuditCache cache) {
+    this.checker = checker;
+    this.index = index;
+    this.cache = cache;
+    this.rule =
+        checker.rules().stream()
+            .filter(rule -> rule.annotationTypes().equals(Set.of(index.annotationType())))
+            .findFirst()
+            .orElseThrow(
+                () ->
+                    new IllegalArgumentException(
+                        checker.canonicalName() + " has no rule for " + index.annotationType()));
+  }
+
+  /**
+   * Returns an auditor like this one that reads and writes the findings for each jar in the given
+   * cache, which must have been created with this auditor's {@linkplain #rulesFingerprint rules
+   * fingerprint}.
+   */
+  ClassFileAuditor withCache(AuditCache cache) {
+    return new ClassFileAuditor(checker, index, cache);
+  }
+
+  /** Returns the checker's rule this auditor applies. */
+  AnnotatedApiRule rule() {
+    return rule;
+  }
+
+  /**
+   * Returns a fingerprint of what this auditor reports: the checker, its rule, and every API in
+   * the index.
+   */
+  String rulesFingerprint() throws IOException {
+    HashingOutputStream out =
+        new HashingOutputStream(Hashing.sha256(), ByteStreams.nullOutputStream());
+    index.write(out);
+    return Hashing.sha256()
+        .newHasher()
+        .putBytes(out.hash().asBytes())
+        .putUnencodedChars(checker.getClass().getName())
+        .putUnencodedChars(rule.toString())
+        .hash()
+        .toString();
+  }
+
+  public static void main(String[] args) throws IOException {
+    int threads = Runtime.getRuntime().availableProcessors();
+    File library = null;
+    Path cacheDirectory = null;
+    long cacheMegabytes = 512;
+    List<Path> inputs = new ArrayList<>();
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("--threads") && i + 1 < args.length) {
+        threads = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("--library") && i + 1 < args.length) {
+        library = new File(args[++i]);
+      } else if (args[i].equals("--cache") && i + 1 < args.length) {
+        cacheDirectory = Paths.get(args[++i]);
+      } else if (args[i].equals("--cache-size") && i + 1 < args.length) {
+        cacheMegabytes = Long.parseLong(args[++i]);
+      } else if (args[i].startsWith("--")) {
+        inputs.clear();
+        break;
+      } else {
+        inputs.add(Paths.get(args[i]));
+      }
+    }
+    if (inputs.isEmpty()) {
+      System.err.println(
+          "Usage: ClassFileAuditor [--threads <n>] [--library <guava.jar>] [--cache <dir>]"
+              + " [--cache-size <megabytes>] <jar or directory>...");
+      System.exit(2);
+    }
+
+    BetaChecker checker = new BetaChecker();
+    AnnotatedApiIndex index =
+        library != null
+            ? AnnotatedApiIndexGenerator.generate(library, "com.google.common.annotations.Beta")
+            : checker
+                .precomputedIndex()
+                .orElseThrow(() -> new IOException("No @Beta index; pass --library"));
+    ClassFileAuditor auditor = new ClassFileAuditor(checker, index);
+    AuditCache cache = null;
+    if (cacheDirectory != null) {
+      cache = new AuditCache(cacheDirectory, cacheMegabytes << 20, auditor.rulesFingerprint());
+      auditor = auditor.withCache(cache);
+    }
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    List<Finding> findings;
+    try {
+      findings = auditor.audit(inputs, pool);
+    } finally {
+      pool.shutdown();
+    }
+    for (Finding finding : findings) {
+      System.out.println(finding);
+    }
+    if (cache != null) {
+      cache.evict();
+      System.err.println(
+          "Read " + cache.hitCount() + " jars from the cache and audited " + cache.missCount());
+    }
+    System.err.println(
+        "Found " + findings.size() + " usages of @Beta APIs from " + index.fingerprint());
+    System.exit(findings.isEmpty() ? 0 : 1);
+  }
+
+  /**
+   * Audits the given jars and directories, running a task on the given pool for each jar and for
+   * the class files directly in each directory, including those found under the given directories.
+   * Findings are returned in the order of the inputs, and of the paths under each directory.
+   */
+  List<Finding> audit(List<Path> inputs, ForkJoinPool pool) throws IOException {
+    List<ForkJoinTask<List<Finding>>> tasks = new ArrayList<>();
+    for (Path input : inputs) {
+      if (Files.isDirectory(input)) {
+        List<Path> paths;
+        try (Stream<Path> walk = Files.walk(input)) {
+          paths = walk.sorted().collect(toImmutableList());
+        }
+        for (Path path : paths) {
+          if (Files.isDirectory(path)) {
+            tasks.add(pool.submit(() -> auditDirectory(path)));
+          } else if (path.getFileName().toString().endsWith(".jar")) {
+            tasks.add(pool.submit(() -> auditJar(path)));
+          }
+        }
+      } else {
+        tasks.add(pool.submit(() -> auditJar(input)));
+      }
+    }
+    List<Finding> findings = new ArrayList<>();
+    for (ForkJoinTask<List<Finding>> task : tasks) {
+      try {
+        findings.addAll(task.get());
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof IOException) {
+          throw (IOException) e.getCause();
+        }
+        throw new IllegalStateException(e.getCause());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted", e);
+      }
+    }
+    return findings;
+  }
+
+  /** Audits the class files in the given directory, not including its subdirectories. */
+  private List<Finding> auditDirectory(Path directory) throws IOException {
+    List<Path> files;
+    try (Stream<Path> list = Files.list(directory)) {
+      files = list.filter(Files::isRegularFile).sorted().collect(toImmutableList());
+    }
+    List<Finding> findings = new ArrayList<>();
+    for (Path file : files) {
+      if (isAuditedClassFile(file.getFileName().toString())) {
+        findings.addAll(audit(file.toString(), ClassFile.parse(Files.readAllBytes(file))));
+      }
+    }
+    return findings;
+  }
+
+  /** Audits the class files in the given jar, or reads its findings from the cache. */
+  List<Finding> auditJar(Path jarFile) throws IOException {
+    return cache == null
+        ? auditJarContents(jarFile)
+        : cache.findings(jarFile, this::auditJarContents);
+  }
+
+  private List<Finding> auditJarContents(Path jarFile) throws IOException {
+    List<Finding> findings = new ArrayList<>();
+    try (JarFile jar = new JarFile(jarFile.toFile())) {
+      for (Enumeration<JarEntry> entries = jar.entries(); entries.hasMoreElements(); ) {
+        JarEntry entry = entries.nextElement();
+        String name = entry.getName();
+        if (name.startsWith("META-INF/") || !isAuditedClassFile(name)) {
+          continue;
+        }
+        byte[] bytes;
+        try (InputStream in = jar.getInputStream(entry)) {
+          bytes = in.readAllBytes();
+        }
+        findings.addAll(audit(jarFile + "!/" + name, ClassFile.parse(bytes)));
+      }
+    }
+    return findings;
+  }
+
+  private static boolean isAuditedClassFile(String name) {
+    return name.endsWith(".class")
+        && !name.endsWith("module-info.class")
+        && !name.endsWith("package-info.class");
+  }
+
+  /**
+   * Returns the usages of annotated APIs by the given class file. A class is only reported if
+   * none of its members is, so that using a member of an annotated class is one usage, not two.
+   * Classes that are part of the library itself aren't audited.
+   */
+  List<Finding> audit(String location, ClassFile classFile) {
+    if (index.covers(classFile.name)) {
+      return ImmutableList.of();
+    }
+    List<Finding> findings = new ArrayList<>();
+    Set<String> ownersReported = new HashSet<>();
+    for (ClassFile.Reference reference : classFile.references) {
+      if (!reference.isClass()) {
+        String api = annotatedMember(reference, classFile.innerClasses.contains(reference.owner));
+        if (api != null) {
+          findings.add(new Finding(location, classFile.name, api));
+          ownersReported.add(reference.owner);
+        }
+      }
+    }
+    for (ClassFile.Reference reference : classFile.references) {
+      if (reference.isClass()
+          && !ownersReported.contains(reference.owner)
+          && isInMatchingPackage(reference.owner)
+          && isAnnotatedClass(reference.owner)) {
+        findings.add(new Finding(location, classFile.name, reference.owner));
+      }
+    }
+    return findings;
+  }
+
+  /**
+   * Returns the index key of the given field or method if it's an annotated API, or {@code null}
+   * if it isn't. {@code ownerIsInnerClass} is true if the referencing class file says the member's
+   * owner is a non-static member class.
+   */
+  private String annotatedMember(ClassFile.Reference reference, boolean ownerIsInnerClass) {
+    if (!isInMatchingPackage(reference.owner)) {
+      return null;
+    }
+    String key =
+        reference.owner
+            + "#"
+            + reference.name
+            + (reference.isMethod()
+                ? AnnotatedApiIndex.sourceParameterDescriptor(reference.descriptor, false)
+                : "");
+    if (index.isAnnotated(key) || isAnnotatedClass(reference.owner)) {
+      return key;
+    }
+    if (ownerIsInnerClass && reference.name.equals("<init>")) {
+      // Constructors of inner classes take the enclosing instance as an extra first parameter
+      String innerClassKey =
+          reference.owner
+              + "#<init>"
+              + AnnotatedApiIndex.sourceParameterDescriptor(reference.descriptor, true);
+      if (index.isAnnotated(innerClassKey)) {
+        return innerClassKey;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns true if a usage of the class with the given binary name is reported: it's in a matching
+   * package, and it or a class it's nested in is annotated and not ignored.
+   */
+  boolean isAnnotatedType(String className) {
+    return isInMatchingPackage(className) && isAnnotatedClass(className);
+  }
+
+  /**
+   * Returns true if a usage of a member with the given name, referenced through the class with the
+   * given binary name, is reported because the class is annotated or some member with that name
+   * is. Overloads can't be told apart by name alone.
+   */
+  boolean isAnnotatedMember(String owner, String name) {
+    return isInMatchingPackage(owner)
+        && (index.isAnnotatedMember(owner, name) || isAnnotatedClass(owner));
+  }
+
+  /**
+   * Returns true if the class with the given binary name is in the library and is annotated or
+   * nested in an annotated class, and isn't ignored. Verdicts are memoized.
+   */
+  private boolean isAnnotatedClass(String className) {
+    Boolean verdict = classVerdicts.get(className);
+    if (verdict == null) {
+      int outerClassEnd = className.lastIndexOf('$');
+      String outerClass = outerClassEnd > 0 ? className.substring(0, outerClassEnd) : null;
+      verdict =
+          index.covers(className)
+              && !isIgnoredType(className)
+              && (index.isAnnotated(className)
+                  || (outerClass != null && isAnnotatedClass(outerClass)));
+      classVerdicts.put(className, verdict);
+    }
+    return verdict;
+  }
+
+  private boolean isIgnoredType(String className) {
+    String qualifiedName = className.replace('$', '.');
+    return rule.ignoredTypes().contains(qualifiedName) || checker.isIgnoredType(qualifiedName);
+  }
+
+  /**
+   * Returns true if the class with the given binary name is in one of the rule's base packages or a
+   * package under one, and not in an ignored package. As in a {@link PackageTrie}, the most
+   * specific package wins.
+   */
+  private boolean isInMatchingPackage(String className) {
+    int packageEnd = className.lastIndexOf('.');
+    if (packageEnd < 0) {
+      return false;
+    }
+    String packageName = className.substring(0, packageEnd);
+    int root = longestMatch(packageName, rule.basePackages());
+    return root >= 0
+        && longestMatch(packageName, rule.ignoredPackages()) <= root
+        && !checker.isIgnoredPackage(packageName);
+  }
+
+  /**
+   * Returns the length of the longest of the given packages that the given package is or is under,
+   * or -1 if there is none.
+   */
+  private static int longestMatch(String packageName, List<String> packages) {
+    int longest = -1;
+    for (String candidate : packages) {
+      if (packageName.startsWith(candidate)
+          && (packageName.length() == candidate.length()
+              || packageName.charAt(candidate.length()) == '.')) {
+        longest = Math.max(longest, candidate.length());
+      }
+    }
+    return longest;
+  }
+}
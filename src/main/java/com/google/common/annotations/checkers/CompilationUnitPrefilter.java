@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2014 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.annotations.checkers;
+
+import static com.google.common.annotations.checkers.AnnotatedApiUsageChecker.enclosingPackage;
+
+import com.google.common.collect.ImmutableList;
+import com.google.errorprone.VisitorState;
+import com.google.errorprone.util.ASTHelpers;
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.ImportTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.Tree;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Symbol.ClassSymbol;
+import com.sun.tools.javac.code.Symbol.PackageSymbol;
+import com.sun.tools.javac.code.Type;
+import com.sun.tools.javac.code.Types;
+import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
+
+/**
+ * Decides whether a compilation unit can reference anything in the base packages, without looking
+ * at its expressions. It can if it's in or under a base package, imports something from one,
+ * declares a class that inherits from a type in one, or mentions a base package by name (e.g. in a
+ * fully qualified reference).
+ *
+ * <p>This is unsound: annotated members of base package types that are only reached through values
+ * returned by other APIs, e.g. {@code IndirectAccess.get().annotatedMethod()}, are missed. Telling
+ * for sure would mean looking at the type of every expression in the unit, which is the check
+ * itself.
+ */
+final class CompilationUnitPrefilter {
+
+  private final ImmutableList<String> basePackages;
+
+  CompilationUnitPrefilter(ImmutableList<String> basePackages) {
+    this.basePackages = basePackages;
+  }
+
+  /**
+   * Returns true if the given compilation unit might contain a reference to a base package, as
+   * given by the compilation's package rules.
+   */
+  boolean mayReferenceBasePackage(
+      CompilationUnitTree unit, VisitorState state, PackageTrie packageTrie) {
+    PackageSymbol unitPackage = ((JCCompilationUnit) unit).packge;
+    if (unitPackage == null || isUnderBasePackage(unitPackage, packageTrie)) {
+      return true;
+    }
+
+    for (ImportTree importTree : unit.getImports()) {
+      Tree qualifiedIdentifier = importTree.getQualifiedIdentifier();
+      if (!(qualifiedIdentifier instanceof MemberSelectTree)) {
+        return true;
+      }
+      // The class or package being imported from
+      Symbol importedFrom =
+          ASTHelpers.getSymbol(((MemberSelectTree) qualifiedIdentifier).getExpression());
+      PackageSymbol importedPackage = importedFrom == null ? null : enclosingPackage(importedFrom);
+      if (importedPackage == null || isUnderBasePackage(importedPackage, packageTrie)) {
+        return true;
+      }
+    }
+
+    for (Tree typeDeclaration : unit.getTypeDecls()) {
+      if (typeDeclaration instanceof ClassTree
+          && inheritsFromBasePackage((ClassTree) typeDeclaration, state.getTypes(), packageTrie)) {
+        return true;
+      }
+    }
+
+    // Fully qualified references; comments and string literals may cause false positives here,
+    // which only cost the time it takes to check the unit normally.
+    CharSequence source = state.getSourceCode();
+    if (source == null) {
+      return true;
+    }
+    for (String basePackage : basePackages) {
+      if (contains(source, basePackage)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns true if the given class or any of its member classes has a supertype in a base package,
+   * in which case members of that type may be referenced without qualification.
+   */
+  private static boolean inheritsFromBasePackage(
+      ClassTree classTree, Types types, PackageTrie packageTrie) {
+    ClassSymbol classSymbol = ASTHelpers.getSymbol(classTree);
+    if (classSymbol == null) {
+      return true;
+    }
+    for (Type supertype : types.closure(classSymbol.type)) {
+      PackageSymbol supertypePackage = enclosingPackage(supertype.tsym);
+      if (supertypePackage != null && isUnderBasePackage(supertypePackage, packageTrie)) {
+        return true;
+      }
+    }
+    for (Tree member : classTree.getMembers()) {
+      if (member instanceof ClassTree
+          && inheritsFromBasePackage((ClassTree) member, types, packageTrie)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns true if the given package is one of the base packages of some rule or a package under
+   * one, whether or not it's ignored.
+   */
+  private static boolean isUnderBasePackage(PackageSymbol packageSymbol, PackageTrie packageTrie) {
+    return packageTrie.rulesUnderRoot(packageSymbol) != 0;
+  }
+
+  /**
+   * Returns true if {@code text} contains {@code target}, without copying {@code text}.
+   */
+  private static boolean contains(CharSequence text, String target) {
+    int last = text.length() - target.length();
+    char first = target.charAt(0);
+    for (int i = 0; i <= last; i++) {
+      if (text.charAt(i) == first && regionMatches(text, i, target)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean regionMatches(CharSequence text, int offset, String target) {
+    for (int j = 1; j < target.length(); j++) {
+      if (text.charAt(offset + j) != target.charAt(j)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
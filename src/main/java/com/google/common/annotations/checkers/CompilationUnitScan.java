@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.annotations.checkers;
+
+import static com.google.errorprone.matchers.Description.NO_MATCH;
+
+import com.google.common.annotations.checkers.AnnotatedApiUsageChecker.Usage;
+import com.google.errorprone.VisitorState;
+import com.google.errorprone.matchers.Description;
+import com.sun.source.tree.LineMap;
+import com.sun.source.tree.Tree;
+import com.sun.tools.javac.code.Type;
+import java.util.List;
+
+/**
+ * Checks a whole compilation unit in one walk over it with a {@link UsageScanner}, rather than
+ * through a checker's per-tree matchers. This backs both the checker's summary mode and its
+ * single-pass engine; the latter also finds usages of annotated types that have no name in the
+ * source.
+ */
+final class CompilationUnitScan {
+
+  /** Receives the usages found, with the mask of rules each is reported for. */
+  private interface UsageConsumer {
+    void accept(Usage usage, long rules);
+  }
+
+  private final AnnotatedApiUsageChecker checker;
+  private final VisitorState state;
+  private final AnnotatedApiCache cache;
+  private final boolean findImpliedTypes;
+
+  /**
+   * Creates a scan of the compilation unit at the given state's path, which finds usages with no
+   * name in the source too if {@code findImpliedTypes}.
+   */
+  CompilationUnitScan(
+      AnnotatedApiUsageChecker checker,
+      VisitorState state,
+      AnnotatedApiCache cache,
+      boolean findImpliedTypes) {
+    this.checker = checker;
+    this.state = state;
+    this.cache = cache;
+    this.findImpliedTypes = findImpliedTypes;
+  }
+
+  /**
+   * Reports every usage of an annotated API in the compilation unit directly, once for each rule
+   * it breaks, and returns {@link Description#NO_MATCH}.
+   */
+  Description reportUsages() {
+    FindingsWriter findings = cache.getFindings();
+    scan(
+        (usage, usageRules) -> {
+          for (long rules = usageRules; rules != 0; rules &= rules - 1) {
+            int rule = Long.numberOfTrailingZeros(rules);
+            state.reportMatch(checker.describe(rule, usage.tree, null));
+            if (findings != null) {
+              findings.write(usage, rule, state);
+            }
+          }
+        });
+    return NO_MATCH;
+  }
+
+  /**
+   * Finds every usage of an annotated API in the compilation unit and returns, for each rule, a
+   * single description at the rule's first usage listing each API used with its count and first
+   * position. The description for the checker's own rule is returned and the others are reported
+   * directly. The findings file still lists every usage.
+   */
+  Description summarize() {
+    List<AnnotatedApiRule> rules = checker.rules();
+    UsageSummary[] summaries = new UsageSummary[rules.size()];
+    for (int rule = 0; rule < summaries.length; rule++) {
+      summaries[rule] = new UsageSummary();
+    }
+    FindingsWriter findings = cache.getFindings();
+    scan(
+        (usage, usageRules) -> {
+          for (long remaining = usageRules; remaining != 0; remaining &= remaining - 1) {
+            int rule = Long.numberOfTrailingZeros(remaining);
+            summaries[rule].add(usage.api, usage.tree);
+            if (findings != null) {
+              findings.write(usage, rule, state);
+            }
+          }
+        });
+
+    LineMap lineMap = state.getPath().getCompilationUnit().getLineMap();
+    Description description = NO_MATCH;
+    for (int rule = 0; rule < summaries.length; rule++) {
+      UsageSummary usages = summaries[rule];
+      if (usages.isEmpty()) {
+        continue;
+      }
+      String annotationType = rules.get(rule).annotationTypes().iterator().next();
+      Description ruleDescription =
+          checker.describe(rule, usages.firstUsage(), usages.message(annotationType, lineMap));
+      if (rule == checker.primaryRule()) {
+        description = ruleDescription;
+      } else {
+        state.reportMatch(ruleDescription);
+      }
+    }
+    return description;
+  }
+
+  /**
+   * Walks the compilation unit, passing each usage that isn't suppressed or baselined to the given
+   * consumer.
+   */
+  private void scan(UsageConsumer consumer) {
+    new UsageScanner(checker, state, findImpliedTypes) {
+      @Override
+      long rulesSuppressedBy(Tree tree) {
+        return checker.rulesSuppressedBy(tree);
+      }
+
+      @Override
+      void visitReference(Tree tree, VisitorState stateWithPath) {
+        if (!AnnotatedApiUsageChecker.isQualifierInChain(stateWithPath.getPath())) {
+          found(checker.annotatedApiUsagesInChain(tree, stateWithPath, cache), stateWithPath);
+        }
+      }
+
+      @Override
+      void visitImpliedType(
+          Tree tree, Type type, boolean includeTypeArguments, VisitorState stateWithPath) {
+        found(
+            checker.annotatedTypeUsages(tree, type, includeTypeArguments, stateWithPath, cache),
+            stateWithPath);
+      }
+
+      private void found(List<Usage> usages, VisitorState stateWithPath) {
+        for (Usage usage : usages) {
+          long usageRules = usage.rules & ~suppressedRules();
+          if (usageRules != 0
+              && !AnnotatedApiUsageChecker.isBaselined(usage, stateWithPath, cache)) {
+            consumer.accept(usage, usageRules);
+          }
+        }
+      }
+    }.scan(state.getPath(), null);
+  }
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright (C) 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.annotations.checkers;
+
+import static com.google.common.annotations.checkers.AnnotatedApiStats.appendString;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.annotations.checkers.AnnotatedApiUsageChecker.Usage;
+import com.google.errorprone.BugPattern.SeverityLevel;
+import com.google.errorprone.VisitorState;
+import com.google.errorprone.util.ASTHelpers;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.LineMap;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import javax.tools.JavaFileObject;
+
+/**
+ * Streams the usages a checker reports in one compilation to a file, one record per usage, for
+ * tools such as code scanning dashboards that shouldn't have to scrape javac's output.
+ *
+ * <p>Two formats are supported. {@link Format#JSONL} writes one JSON object per line with the
+ * file, the range of the usage as 1-based line and column numbers, the rule, the API and the
+ * message. {@link Format#SARIF} writes a SARIF 2.1.0 log with one run, whose tool lists the
+ * checker's rules, and one result per usage, whose level is the severity its rule is reported with.
+ * The SARIF log is only complete once the compilation finishes.
+ *
+ * <p>Records are appended to a buffered stream, which is flushed at the end of each compilation
+ * unit and closed when the compilation finishes, so memory use doesn't grow with the number of
+ * usages. Each compilation has its own writer, so compilations running in the same JVM can write
+ * to separate files; they must not share one. An I/O error stops the writing and is reported when
+ * the writer is closed, rather than failing the compilation.
+ */
+final class FindingsWriter {
+
+  /** The format of a findings file. */
+  enum Format {
+    JSONL,
+    SARIF;
+
+    /** Returns the format for the given file, which is SARIF if its name says so. */
+    static Format forFile(Path file) {
+      String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+      return name.endsWith(".sarif") || name.endsWith(".sarif.json") ? SARIF : JSONL;
+    }
+  }
+
+  private final AnnotatedApiUsageChecker checker;
+  private final Format format;
+  private final Writer out;
+  private boolean first = true;
+  private IOException failure;
+
+  private FindingsWriter(AnnotatedApiUsageChecker checker, Format format, Writer out) {
+    this.checker = checker;
+    this.format = format;
+    this.out = out;
+  }
+
+  /**
+   * Opens a writer for the usages the given checker reports, replacing the given file. If the file
+   * can't be opened, the returned writer discards its records and reports the failure when closed.
+   */
+  static FindingsWriter open(Path file, Format format, AnnotatedApiUsageChecker checker) {
+    try {
+      Path parent = file.toAbsolutePath().getParent();
+      if (parent != null) {
+        Files.createDirectories(parent);
+      }
+      FindingsWriter writer =
+          new FindingsWriter(checker, format, Files.newBufferedWriter(file, UTF_8));
+      if (format == Format.SARIF) {
+        writer.writeSarifHeader();
+      }
+      return writer;
+    } catch (IOException e) {
+      FindingsWriter writer = new FindingsWriter(checker, format, null);
+      writer.failure = e;
+      return writer;
+    }
+  }
+
+  private static String sarifLevel(SeverityLevel severity) {
+    switch (severity) {
+      case ERROR:
+        return "error";
+      case WARNING:
+        return "warning";
+      default:
+        return "note";
+    }
+  }
+
+  private void writeSarifHeader() throws IOException {
+    StringBuilder header = new StringBuilder();
+    header
+        .append("{\"version\":\"2.1.0\",")
+        .append("\"$schema\":\"https://json.schemastore.org/sarif-2.1.0.json\",")
+        .append("\"runs\":[{\"tool\":{\"driver\":{\"name\":");
+    appendString(header, checker.canonicalName());
+    header.append(",\"rules\":[");
+    List<AnnotatedApiRule> rules = checker.rules();
+    for (int i = 0; i < rules.size(); i++) {
+      AnnotatedApiRule rule = rules.get(i);
+      header.append(i == 0 ? "" : ",").append("{\"id\":");
+      appendString(header, rule.name());
+      header.append(",\"helpUri\":");
+      appendString(header, rule.link() == null ? checker.linkUrl() : rule.link());
+      header.append(",\"shortDescription\":{\"text\":");
+      appendString(header, rule.message() == null ? checker.message() : rule.message());
+      header.append("}}");
+    }
+    header.append("]}},\"results\":[\n");
+    out.write(header.toString());
+  }
+
+  /**
+   * Appends a record of the given usage, reported under the given rule in the compilation unit at
+   * the given state's path.
+   */
+  void write(Usage usage, int rule, VisitorState state) {
+    if (failure != null) {
+      return;
+    }
+    CompilationUnitTree unit = state.getPath().getCompilationUnit();
+    LineMap lineMap = unit.getLineMap();
+    int start = ASTHelpers.getStartPosition(usage.tree);
+    int end = state.getEndPosition(usage.tree);
+    AnnotatedApiRule annotatedApiRule = checker.rules().get(rule);
+    write(
+        unit.getSourceFile(),
+        lineMap.getLineNumber(start),
+        lineMap.getColumnNumber(start),
+        end < 0 ? 0 : lineMap.getLineNumber(end),
+        end < 0 ? 0 : lineMap.getColumnNumber(end),
+        annotatedApiRule.name(),
+        BaselineFilter.baselineName(usage.api),
+        annotatedApiRule.message() == null ? checker.message() : annotatedApiRule.message(),
+        sarifLevel(checker.reportedSeverity(rule, state)));
+  }
+
+  /**
+   * Appends a record of a usage of the given API in the given source file, reported under the
+   * given rule with the given message and SARIF level. Lines and columns are 1-based, and the end
+   * is exclusive; the end line and column are 0 if they aren't known. SARIF names the file by URI,
+   * and JSON lines by the name javac gives it.
+   */
+  private void write(
+      JavaFileObject sourceFile,
+      long startLine,
+      long startColumn,
+      long endLine,
+      long endColumn,
+      String rule,
+      String api,
+      String message,
+      String level) {
+    String file = format == Format.SARIF ? sourceFile.toUri().toString() : sourceFile.getName();
+    StringBuilder record = new StringBuilder(256);
+    if (format == Format.JSONL) {
+      record.append("{\"file\":");
+      appendString(record, file);
+      record.append(",\"startLine\":").append(startLine);
+      record.append(",\"startColumn\":").append(startColumn);
+      if (endLine > 0) {
+        record.append(",\"endLine\":").append(endLine);
+        record.append(",\"endColumn\":").append(endColumn);
+      }
+      record.append(",\"rule\":");
+      appendString(record, rule);
+      record.append(",\"api\":");
+      appendString(record, api);
+      record.append(",\"message\":");
+      appendString(record, message);
+      record.append("}\n");
+    } else {
+      record.append(first ? "" : ",\n").append("{\"ruleId\":");
+      appendString(record, rule);
+      record.append(",\"level\":\"").append(level).append("\",\"message\":{\"text\":");
+      appendString(record, message);
+      record.append("},\"locations\":[{\"physicalLocation\":{\"artifactLocation\":{\"uri\":");
+      appendString(record, file);
+      record
+          .append("},\"region\":{\"startLine\":")
+          .append(startLine)
+          .append(",\"startColumn\":")
+          .append(startColumn);
+      if (endLine > 0) {
+        record.append(",\"endLine\":").append(endLine).append(",\"endColumn\":").append(endColumn);
+      }
+      record.append("}}}],\"properties\":{\"api\":");
+      appendString(record, api);
+      record.append("}}");
+    }
+    first = false;
+    try {
+      out.write(record.toString());
+    } catch (IOException e) {
+      failure = e;
+    }
+  }
+
+  /** Flushes the records written so far, e.g. at the end of a compilation unit. */
+  void flush() {
+    if (failure != null) {
+      return;
+    }
+    try {
+      out.flush();
+    } catch (IOException e) {
+      failure = e;
+    }
+  }
+
+  /**
+   * Completes and closes the file. Throws the first I/O error the writer ran into, if any.
+   */
+  void close() throws IOException {
+    if (out != null) {
+      try {
+        if (failure == null && format == Format.SARIF) {
+          out.write((first ? "" : "\n") + "]}]}\n");
+        }
+        out.close();
+      } catch (IOException e) {
+        if (failure == null) {
+          failure = e;
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /** Returns the start of the JSON lines records for usages in the file with the given name. */
+  static String jsonlPrefix(String fileName) {
+    StringBuilder prefix = new StringBuilder("{\"file\":");
+    appendString(prefix, fileName);
+    return prefix.append(',').toString();
+  }
+}
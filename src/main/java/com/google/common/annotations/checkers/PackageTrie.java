@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.annotations.checkers;
+
+import com.sun.tools.javac.code.Kinds.Kind;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Symbol.PackageSymbol;
+import com.sun.tools.javac.util.Name;
+import com.sun.tools.javac.util.Names;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * The package roots and ignored packages of up to 64 rules, compiled into a trie of package name
+ * segments. Each rule is a bit in a {@code long} mask, so one walk answers for every rule.
+ *
+ * <p>A package matches a rule if it's one of the rule's roots or under one, unless it's one of the
+ * rule's ignored packages or under one that is itself under the root. The most specific rule wins,
+ * so a root can also be declared under an ignored package. Segments are keyed by {@link Name}s from
+ * the compilation's name table, which are interned, so walking the trie for a {@link
+ * PackageSymbol} takes one identity lookup per segment of the package's name, no matter how many
+ * roots there are.
+ */
+final class PackageTrie {
+
+  private static final class Node {
+    final Map<Name, Node> children = new IdentityHashMap<>();
+    long roots; // rules with a root here
+    long ignored; // rules that ignore this package
+  }
+
+  private final Node root = new Node();
+
+  private PackageTrie() {}
+
+  /**
+   * Compiles the package roots and ignored packages of the given rules into a trie using the given
+   * name table. The rule at index {@code i} is bit {@code i} of the masks the trie returns.
+   */
+  static PackageTrie compile(Iterable<AnnotatedApiRule> rules, Names names) {
+    PackageTrie trie = new PackageTrie();
+    long rule = 1;
+    for (AnnotatedApiRule each : rules) {
+      for (String ignoredPackage : each.ignoredPackages()) {
+        trie.node(ignoredPackage, names).ignored |= rule;
+      }
+      for (String root : each.basePackages()) {
+        trie.node(root, names).roots |= rule;
+      }
+      rule <<= 1;
+    }
+    return trie;
+  }
+
+  private Node node(String packageName, Names names) {
+    Node node = root;
+    for (String segment : packageName.split("\\.")) {
+      node = node.children.computeIfAbsent(names.fromString(segment), k -> new Node());
+    }
+    return node;
+  }
+
+  /** Returns the mask of rules the given package matches. */
+  long matchingRules(PackageSymbol packageSymbol) {
+    return walk(packageSymbol, true);
+  }
+
+  /**
+   * Returns the mask of rules that the given package is a root of or under a root of, whether or
+   * not it's ignored.
+   */
+  long rulesUnderRoot(PackageSymbol packageSymbol) {
+    return walk(packageSymbol, false);
+  }
+
+  private long walk(PackageSymbol packageSymbol, boolean matching) {
+    int depth = 0;
+    for (Symbol current = packageSymbol; isNamedPackage(current); current = current.owner) {
+      depth++;
+    }
+    Name[] segments = new Name[depth];
+    int i = depth;
+    for (Symbol current = packageSymbol; isNamedPackage(current); current = current.owner) {
+      segments[--i] = current.name;
+    }
+
+    long underRoot = 0;
+    long matches = 0;
+    Node node = root;
+    for (Name segment : segments) {
+      node = node.children.get(segment);
+      if (node == null) {
+        break;
+      }
+      // A root takes precedence over an ignored package with the same name
+      long ignoredHere = node.ignored & underRoot & ~node.roots;
+      matches = (matches & ~ignoredHere) | node.roots;
+      underRoot |= node.roots;
+    }
+    return matching ? matches : underRoot;
+  }
+
+  private static boolean isNamedPackage(Symbol symbol) {
+    return symbol != null && symbol.kind == Kind.PCK && !symbol.name.isEmpty();
+  }
+}
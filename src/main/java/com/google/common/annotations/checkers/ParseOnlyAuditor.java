@@ -0,0 +1,491 @@
+/*
+ * Copyright (C) 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.annotations.checkers;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ListMultimap;
+import com.sun.source.tree.AnnotationTree;
+import com.sun.source.tree.AssignmentTree;
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.ImportTree;
+import com.sun.source.tree.LineMap;
+import com.sun.source.tree.LiteralTree;
+import com.sun.source.tree.MemberReferenceTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.ModifiersTree;
+import com.sun.source.tree.NewArrayTree;
+import com.sun.source.tree.NewClassTree;
+import com.sun.source.tree.ParameterizedTypeTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.tree.VariableTree;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.SourcePositions;
+import com.sun.source.util.TreeScanner;
+import com.sun.source.util.Trees;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/**
+ * Finds likely usages of annotated APIs in source files by parsing them, without attributing them,
+ * for checks that must be fast, such as pre-commit hooks. Names are resolved the way a reader
+ * would: through the file's single-type, on-demand and static imports, and fully qualified names.
+ * Types, fields, methods and constructors resolved to a class in an {@link AnnotatedApiIndex} are
+ * checked against it with the same base packages, ignored packages and ignored types as a {@link
+ * ClassFileAuditor}, and {@code @SuppressWarnings} with the rule's name is honored.
+ *
+ * <p>Files that don't mention any of the rule's base packages can't refer to its APIs by any of
+ * those means, so they're only searched for the package names, not parsed. The rest are parsed in
+ * batches, one javac parser per batch, on a fork-join pool.
+ *
+ * <p>Without types, this is approximate. It misses usages of:
+ *
+ * <ul>
+ *   <li>instance members called on expressions, such as variables, parameters and method results,
+ *       since their types aren't known; this is the most common miss;
+ *   <li>inherited members and member types referenced through a subclass;
+ *   <li>classes in the same package as the file, which need no import.
+ * </ul>
+ *
+ * <p>It can also report usages that aren't there: a member is reported if any member with its name
+ * is annotated, since overloads can't be told apart, and a local variable or inherited member with
+ * the name of a statically imported member is taken for it. These cases are rare; the misses are
+ * not, and the full check should still run before submitting.
+ */
+final class ParseOnlyAuditor {
+
+  /** The number of files parsed by one javac parser, and in one task on the pool. */
+  private static final int BATCH_SIZE = 256;
+
+  private final ClassFileAuditor verdicts;
+  private final AnnotatedApiIndex index;
+  private final String ruleName;
+  private final ImmutableList<String> basePackages;
+
+  /**
+   * Creates an auditor for the given checker's rule for the annotation the given index was built
+   * for.
+   *
+   * @throws IllegalArgumentException if the checker has no rule for just that annotation
+   */
+  ParseOnlyAuditor(AnnotatedApiUsageChecker checker, AnnotatedApiIndex index) {
+    this.verdicts = new ClassFileAuditor(checker, index);
+    this.index = index;
+    this.ruleName = verdicts.rule().name();
+    this.basePackages = verdicts.rule().basePackages();
+  }
+
+  /**
+   * Audits the given source files, running a task on the given pool for each batch of them.
+   * Findings are returned in the order of the files, and of their positions in each file.
+   */
+  List<SourceAuditor.Finding> audit(List<Path> files, ForkJoinPool pool) throws IOException {
+    List<ForkJoinTask<List<SourceAuditor.Finding>>> tasks = new ArrayList<>();
+    for (int start = 0; start < files.size(); start += BATCH_SIZE) {
+      List<Path> batch = files.subList(start, Math.min(files.size(), start + BATCH_SIZE));
+      tasks.add(pool.submit(() -> auditBatch(batch)));
+    }
+    List<SourceAuditor.Finding> findings = new ArrayList<>();
+    for (ForkJoinTask<List<SourceAuditor.Finding>> task : tasks) {
+      try {
+        findings.addAll(task.get());
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof IOException) {
+          throw (IOException) e.getCause();
+        }
+        throw new IllegalStateException(e.getCause());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted", e);
+      }
+    }
+    return findings;
+  }
+
+  /** Parses the files in the given batch that mention a base package and audits them. */
+  List<SourceAuditor.Finding> auditBatch(List<Path> files) throws IOException {
+    List<JavaFileObject> sources = new ArrayList<>();
+    Map<URI, Path> paths = new HashMap<>();
+    for (Path file : files) {
+      String content = new String(Files.readAllBytes(file), UTF_8);
+      if (basePackages.stream().anyMatch(content::contains)) {
+        Source source = new Source(file, content);
+        sources.add(source);
+        paths.put(source.toUri(), file);
+      }
+    }
+    if (sources.isEmpty()) {
+      return ImmutableList.of();
+    }
+    JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+    List<SourceAuditor.Finding> findings = new ArrayList<>();
+    try (StandardJavaFileManager fileManager =
+        javac.getStandardFileManager(null, Locale.ROOT, UTF_8)) {
+      JavacTask task =
+          (JavacTask)
+              javac.getTask(
+                  null,
+                  fileManager,
+                  diagnostic -> {}, // syntax errors are left to the compiler
+                  ImmutableList.of("-proc:none"),
+                  null /*classes*/,
+                  sources);
+      SourcePositions positions = Trees.instance(task).getSourcePositions();
+      for (CompilationUnitTree unit : task.parse()) {
+        Path file = paths.get(unit.getSourceFile().toUri());
+        new UnitScanner(file, unit, positions, findings).audit();
+      }
+    }
+    return findings;
+  }
+
+  /** A source file whose content has already been read. */
+  private static final class Source extends SimpleJavaFileObject {
+    private final String content;
+
+    Source(Path file, String content) {
+      super(file.toUri(), Kind.SOURCE);
+      this.content = content;
+    }
+
+    @Override
+    public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+      return content;
+    }
+  }
+
+  /** Resolves and reports the names in one compilation unit. */
+  private final class UnitScanner extends TreeScanner<Void, Void> {
+    private final Path file;
+    private final CompilationUnitTree unit;
+    private final SourcePositions positions;
+    private final List<SourceAuditor.Finding> findings;
+
+    /** Canonical names of the types imported by single-type imports, by simple name. */
+    private final Map<String, String> importedTypes = new HashMap<>();
+    /** Packages and types whose member types are imported on demand. */
+    private final List<String> onDemandImports = new ArrayList<>();
+    /** Binary names of the classes whose members are statically imported, by member name. */
+    private final ListMultimap<String, String> staticImports = ArrayListMultimap.create();
+    /** Binary names of the classes whose static members are all imported. */
+    private final List<String> staticOnDemandImports = new ArrayList<>();
+
+    private Set<String> declaredTypes; // computed only if there are on-demand imports
+
+    UnitScanner(
+        Path file,
+        CompilationUnitTree unit,
+        SourcePositions positions,
+        List<SourceAuditor.Finding> findings) {
+      this.file = file;
+      this.unit = unit;
+      this.positions = positions;
+      this.findings = findings;
+    }
+
+    void audit() {
+      String packageName =
+          unit.getPackageName() == null ? "" : dottedName(unit.getPackageName()) + ".";
+      for (Tree declaration : unit.getTypeDecls()) {
+        if (declaration instanceof ClassTree
+            && index.covers(packageName + ((ClassTree) declaration).getSimpleName())) {
+          return; // part of the library itself
+        }
+      }
+      for (ImportTree importTree : unit.getImports()) {
+        addImport(importTree);
+      }
+      for (Tree declaration : unit.getTypeDecls()) {
+        scan(declaration, null);
+      }
+    }
+
+    private void addImport(ImportTree importTree) {
+      if (!(importTree.getQualifiedIdentifier() instanceof MemberSelectTree)) {
+        return;
+      }
+      MemberSelectTree imported = (MemberSelectTree) importTree.getQualifiedIdentifier();
+      String qualifier = dottedName(imported.getExpression());
+      String name = imported.getIdentifier().toString();
+      if (qualifier == null) {
+        return;
+      }
+      if (!importTree.isStatic()) {
+        if (name.equals("*")) {
+          onDemandImports.add(qualifier);
+        } else {
+          importedTypes.put(name, qualifier + "." + name);
+        }
+        return;
+      }
+      String owner = binaryName(qualifier);
+      if (owner == null) {
+        return;
+      }
+      if (name.equals("*")) {
+        staticOnDemandImports.add(owner);
+      } else {
+        staticImports.put(name, owner);
+        importedTypes.putIfAbsent(name, qualifier + "." + name); // it may be a member type
+      }
+    }
+
+    @Override
+    public Void visitClass(ClassTree node, Void unused) {
+      return isSuppressed(node.getModifiers()) ? null : super.visitClass(node, null);
+    }
+
+    @Override
+    public Void visitMethod(MethodTree node, Void unused) {
+      return isSuppressed(node.getModifiers()) ? null : super.visitMethod(node, null);
+    }
+
+    @Override
+    public Void visitVariable(VariableTree node, Void unused) {
+      return isSuppressed(node.getModifiers()) ? null : super.visitVariable(node, null);
+    }
+
+    @Override
+    public Void visitIdentifier(IdentifierTree node, Void unused) {
+      String type = resolveType(node);
+      if (type != null) {
+        if (verdicts.isAnnotatedType(type)) {
+          report(node, type);
+        }
+        return null;
+      }
+      String name = node.getName().toString();
+      for (String owner : staticImports.get(name)) {
+        if (verdicts.isAnnotatedMember(owner, name)) {
+          report(node, owner + "#" + name);
+          return null;
+        }
+      }
+      for (String owner : staticOnDemandImports) {
+        if (verdicts.isAnnotatedMember(owner, name)) {
+          report(node, owner + "#" + name);
+          return null;
+        }
+      }
+      return null;
+    }
+
+    @Override
+    public Void visitMemberSelect(MemberSelectTree node, Void unused) {
+      String type = resolveType(node);
+      if (type != null) {
+        if (verdicts.isAnnotatedType(type)) {
+          report(node, type);
+        }
+        return null;
+      }
+      String owner = resolveType(node.getExpression());
+      if (owner != null) {
+        String name = node.getIdentifier().toString();
+        if (name.equals("class") || name.equals("this") || name.equals("super")) {
+          return scan(node.getExpression(), null);
+        }
+        if (verdicts.isAnnotatedMember(owner, name)) {
+          report(node, owner + "#" + name);
+        }
+        return null;
+      }
+      return super.visitMemberSelect(node, null);
+    }
+
+    @Override
+    public Void visitNewClass(NewClassTree node, Void unused) {
+      String type = resolveType(node.getIdentifier());
+      if (type != null
+          && !verdicts.isAnnotatedType(type)
+          && verdicts.isAnnotatedMember(type, "<init>")) {
+        report(node, type + "#<init>");
+      }
+      return super.visitNewClass(node, null);
+    }
+
+    @Override
+    public Void visitMemberReference(MemberReferenceTree node, Void unused) {
+      String owner = resolveType(node.getQualifierExpression());
+      String name = node.getName().toString();
+      if (owner != null
+          && !verdicts.isAnnotatedType(owner)
+          && verdicts.isAnnotatedMember(owner, name)) {
+        report(node, owner + "#" + name);
+      }
+      return super.visitMemberReference(node, null);
+    }
+
+    /**
+     * Returns the binary name of the library class the given type name refers to, or {@code null}
+     * if it doesn't appear to refer to one.
+     */
+    private String resolveType(Tree tree) {
+      switch (tree.getKind()) {
+        case PARAMETERIZED_TYPE:
+          return resolveType(((ParameterizedTypeTree) tree).getType());
+        case IDENTIFIER:
+          String name = ((IdentifierTree) tree).getName().toString();
+          String imported = importedTypes.get(name);
+          if (imported != null) {
+            return binaryName(imported);
+          }
+          if (onDemandImports.isEmpty() || declaredTypes().contains(name)) {
+            return null;
+          }
+          for (String qualifier : onDemandImports) {
+            String type = binaryName(qualifier + "." + name);
+            if (type != null) {
+              return type;
+            }
+          }
+          return null;
+        case MEMBER_SELECT:
+          MemberSelectTree select = (MemberSelectTree) tree;
+          String owner = resolveType(select.getExpression());
+          if (owner != null) {
+            String memberType = owner + "$" + select.getIdentifier();
+            return index.covers(memberType) ? memberType : null;
+          }
+          String qualifiedName = dottedName(select);
+          return qualifiedName != null && isInBasePackage(qualifiedName)
+              ? binaryName(qualifiedName)
+              : null;
+        default:
+          return null;
+      }
+    }
+
+    /** Returns the simple names of the types declared in this compilation unit. */
+    private Set<String> declaredTypes() {
+      if (declaredTypes == null) {
+        Set<String> names = new HashSet<>();
+        new TreeScanner<Void, Void>() {
+          @Override
+          public Void visitClass(ClassTree node, Void unused) {
+            names.add(node.getSimpleName().toString());
+            return super.visitClass(node, null);
+          }
+        }.scan(unit.getTypeDecls(), null);
+        declaredTypes = names;
+      }
+      return declaredTypes;
+    }
+
+    private boolean isSuppressed(ModifiersTree modifiers) {
+      for (AnnotationTree annotation : modifiers.getAnnotations()) {
+        String type = dottedName(annotation.getAnnotationType());
+        if (!"SuppressWarnings".equals(type) && !"java.lang.SuppressWarnings".equals(type)) {
+          continue;
+        }
+        for (ExpressionTree argument : annotation.getArguments()) {
+          ExpressionTree value =
+              argument instanceof AssignmentTree
+                  ? ((AssignmentTree) argument).getExpression()
+                  : argument;
+          List<? extends ExpressionTree> values =
+              value instanceof NewArrayTree
+                  ? ((NewArrayTree) value).getInitializers()
+                  : ImmutableList.of(value);
+          for (ExpressionTree element : values) {
+            if (element instanceof LiteralTree
+                && ruleName.equals(((LiteralTree) element).getValue())) {
+              return true;
+            }
+          }
+        }
+      }
+      return false;
+    }
+
+    private void report(Tree tree, String api) {
+      long position = positions.getStartPosition(unit, tree);
+      LineMap lineMap = unit.getLineMap();
+      findings.add(
+          new SourceAuditor.Finding(
+              file.toString(),
+              lineMap.getLineNumber(position),
+              lineMap.getColumnNumber(position),
+              "[" + ruleName + "] " + api));
+    }
+  }
+
+  /**
+   * Returns the binary name of the library class with the given canonical name, in which any of
+   * the trailing segments may be member types, or {@code null} if the index doesn't cover it.
+   */
+  private String binaryName(String canonicalName) {
+    if (!isInBasePackage(canonicalName)) {
+      return null; // e.g. a JDK type, which would otherwise be searched for once per dot
+    }
+    String candidate = canonicalName;
+    while (!index.covers(candidate)) {
+      int lastDot = candidate.lastIndexOf('.');
+      if (lastDot < 0) {
+        return null;
+      }
+      candidate = candidate.substring(0, lastDot) + "$" + candidate.substring(lastDot + 1);
+    }
+    return candidate;
+  }
+
+  private boolean isInBasePackage(String qualifiedName) {
+    for (String basePackage : basePackages) {
+      if (qualifiedName.startsWith(basePackage)
+          && qualifiedName.length() > basePackage.length()
+          && qualifiedName.charAt(basePackage.length()) == '.') {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Returns the name a tree of identifiers separated by dots spells, or {@code null}. */
+  private static String dottedName(Tree tree) {
+    if (tree instanceof IdentifierTree) {
+      return ((IdentifierTree) tree).getName().toString();
+    }
+    if (tree instanceof MemberSelectTree) {
+      String qualifier = dottedName(((MemberSelectTree) tree).getExpression());
+      return qualifier == null ? null : qualifier + "." + ((MemberSelectTree) tree).getIdentifier();
+    }
+    return null;
+  }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.annotations.checkers;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.File;
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A JVM-wide memo of which rules APIs read from class files are directly annotated for, shared by
+ * all compilations in a long-lived compiler process such as a Gradle daemon or a Bazel persistent
+ * worker, where the same library jars are on the classpath of many compilations.
+ *
+ * <p>Verdicts are keyed by the <em>origin</em> of the class file the API was read from and the
+ * API's {@linkplain AnnotatedApiIndex index key}. The origin identifies the classpath entry, e.g. a
+ * jar, along with its last modification time and size, so a jar that is rebuilt in place gets new
+ * entries rather than stale ones. APIs compiled from source are never shared. Only the masks of
+ * rules are stored, as primitive {@code long}s, so the cache keeps no javac symbols, and with them
+ * no compilation, alive.
+ *
+ * <p>The cache is split into stripes, each a small LRU map guarded by its own lock, so concurrent
+ * compilations rarely contend, and its total size is bounded. There is one cache per checker
+ * configuration, since the rule masks only mean something to checkers with the same rules.
+ */
+final class SharedVerdictCache {
+
+  /** The most verdicts kept by each cache, across all of its stripes. */
+  static final int DEFAULT_MAXIMUM_SIZE = 1 << 16;
+
+  private static final int STRIPES = 16;
+
+  /** Caches by checker configuration. */
+  private static final Map<String, SharedVerdictCache> CACHES = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the cache shared by all checkers with the given configuration, which must identify the
+   * annotation types of each of the checker's rules, in order, and which of them exist.
+   */
+  static SharedVerdictCache forConfiguration(String configuration) {
+    return CACHES.computeIfAbsent(
+        configuration, c -> new SharedVerdictCache(DEFAULT_MAXIMUM_SIZE));
+  }
+
+  /**
+   * Returns the origin of the class file with the given URI for the class with the given binary
+   * name, or {@code null} if verdicts for it can't be shared. For a class in a jar, e.g. {@code
+   * jar:file:/lib.jar!/com/example/Foo.class}, the origin is the jar with its modification time and
+   * size, plus any directory in the jar that the class's package is under, as in {@code ct.sym}.
+   * For a class file in a directory it's the directory with the class file's modification time.
+   * Class files from other kinds of locations aren't shared.
+   *
+   * @param lastModified the class file's own modification time, as given by its file object
+   */
+  static String origin(URI classfileUri, String className, long lastModified) {
+    String uri = classfileUri.toString();
+    String classPath = className.replace('.', '/');
+    if (uri.startsWith("jar:")) {
+      int separator = uri.indexOf("!/");
+      int classStart = uri.lastIndexOf(classPath);
+      if (separator < 0 || classStart < separator + 2) {
+        return null;
+      }
+      File jar;
+      try {
+        jar = new File(URI.create(uri.substring("jar:".length(), separator)));
+      } catch (IllegalArgumentException e) {
+        return null;
+      }
+      long jarLastModified = jar.lastModified();
+      if (jarLastModified == 0) {
+        return null;
+      }
+      return uri.substring(0, classStart) + "@" + jarLastModified + ":" + jar.length();
+    }
+    if (uri.startsWith("file:")) {
+      int classStart = uri.lastIndexOf(classPath);
+      if (classStart < 0 || lastModified == 0) {
+        return null;
+      }
+      return uri.substring(0, classStart) + "@" + lastModified;
+    }
+    return null;
+  }
+
+  private final Stripe[] stripes = new Stripe[STRIPES];
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  SharedVerdictCache(int maximumSize) {
+    checkArgument(maximumSize >= STRIPES, "maximum size must be at least %s", STRIPES);
+    for (int i = 0; i < STRIPES; i++) {
+      stripes[i] = new Stripe(maximumSize / STRIPES);
+    }
+  }
+
+  /**
+   * Returns the cached mask of rules the API with the given index key from the given origin is
+   * directly annotated for, or {@code null} if there is none.
+   */
+  Long get(String origin, String api) {
+    Entry key = new Entry(origin, api, 0);
+    Entry entry = stripe(key).get(key);
+    if (entry == null) {
+      misses.increment();
+      return null;
+    }
+    hits.increment();
+    return entry.verdict;
+  }
+
+  /** Records the verdict for the API with the given index key from the given origin. */
+  void put(String origin, String api, long verdict) {
+    Entry entry = new Entry(origin, api, verdict);
+    stripe(entry).put(entry);
+  }
+
+  private Stripe stripe(Entry entry) {
+    int hash = entry.hash;
+    return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+  }
+
+  /** Returns the number of verdicts cached. */
+  int size() {
+    int size = 0;
+    for (Stripe stripe : stripes) {
+      size += stripe.size();
+    }
+    return size;
+  }
+
+  /** Returns the number of lookups answered from this cache. */
+  long hitCount() {
+    return hits.sum();
+  }
+
+  /** Returns the number of lookups that found no verdict. */
+  long missCount() {
+    return misses.sum();
+  }
+
+  @Override
+  public String toString() {
+    return "SharedVerdictCache{size=" + size()
+        + ", hits=" + hitCount() + ", misses=" + missCount() + "}";
+  }
+
+  /** A cached verdict, which is also its own key; the verdict isn't part of its identity. */
+  private static final class Entry {
+    final String origin;
+    final String api;
+    final long verdict;
+    final int hash;
+
+    Entry(String origin, String api, long verdict) {
+      this.origin = origin;
+      this.api = api;
+      this.verdict = verdict;
+      this.hash = 31 * origin.hashCode() + api.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Entry)) {
+        return false;
+      }
+      Entry that = (Entry) o;
+      return hash == that.hash && api.equals(that.api) && origin.equals(that.origin);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  /** A bounded map from entries to themselves that evicts the least recently used entry. */
+  private static final class Stripe {
+    private final LinkedHashMap<Entry, Entry> entries;
+
+    Stripe(int maximumSize) {
+      this.entries =
+          new LinkedHashMap<Entry, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Entry, Entry> eldest) {
+              return size() > maximumSize;
+            }
+          };
+    }
+
+    synchronized Entry get(Entry key) {
+      return entries.get(key);
+    }
+
+    synchronized void put(Entry entry) {
+      // Replaces any entry with the same key, so a recomputed verdict always wins
+      entries.remove(entry);
+      entries.put(entry, entry);
+    }
+
+    synchronized int size() {
+      return entries.size();
+    }
+  }
+}
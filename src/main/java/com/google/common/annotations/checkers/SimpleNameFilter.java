@@ -0,0 +1,379 @@
+/*
+ * Copyright (C) 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.annotations.checkers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+
+/**
+ * A Bloom filter over the simple names by which annotated APIs can be referenced in source, used to
+ * skip identifiers and member selects that can't name one before resolving their symbols.
+ *
+ * <p>The names are those of every directly annotated class, field and method, and of every class,
+ * field and method declared in an annotated class, since those are annotated APIs too. An annotated
+ * constructor contributes the name of its class, {@code this} and {@code super} as well as {@code
+ * <init>}, which is the name of a constructor reference. Queries can return false positives, which
+ * only cost a normal check, but never false negatives.
+ *
+ * <p>A filter for a compilation also needs the names of annotated APIs on its class path that the
+ * precomputed index doesn't cover. {@link #forClassPath} reads them from class files once per
+ * distinct class path and shares the result with later compilations in the same JVM.
+ */
+final class SimpleNameFilter {
+
+  /** Bits set per name. With 10 to 20 bits per name, this gives 1% false positives or fewer. */
+  private static final int HASHES = 7;
+
+  private static final int MIN_BITS_PER_NAME = 10;
+
+  /** The most filters {@link #forClassPath} keeps, one per class path. */
+  private static final int MAX_CLASS_PATH_FILTERS = 32;
+
+  /**
+   * Filters built by {@link #forClassPath}, keyed by the index, the annotations, the base packages
+   * and the origin of each class path entry, least recently used first.
+   */
+  private static final Map<String, SimpleNameFilter> CLASS_PATH_FILTERS =
+      Collections.synchronizedMap(
+          new LinkedHashMap<String, SimpleNameFilter>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SimpleNameFilter> eldest) {
+              return size() > MAX_CLASS_PATH_FILTERS;
+            }
+          });
+
+  private final long[] bits;
+  private final int bitMask;
+
+  private SimpleNameFilter(int bitCount) {
+    this.bits = new long[bitCount / Long.SIZE];
+    this.bitMask = bitCount - 1;
+  }
+
+  /** Creates a filter containing the given names. */
+  static SimpleNameFilter create(Collection<? extends CharSequence> names) {
+    long minBits = Math.max(Long.SIZE, (long) names.size() * MIN_BITS_PER_NAME);
+    int bitCount = Integer.highestOneBit((int) Math.min(minBits, 1 << 30) - 1) << 1;
+    SimpleNameFilter filter = new SimpleNameFilter(bitCount);
+    for (CharSequence name : names) {
+      filter.put(name);
+    }
+    return filter;
+  }
+
+  private void put(CharSequence name) {
+    long hash = hash(name);
+    int h1 = (int) hash;
+    int h2 = (int) (hash >>> 32) | 1;
+    for (int i = 0; i < HASHES; i++) {
+      int bit = (h1 + i * h2) & bitMask;
+      bits[bit >>> 6] |= 1L << bit;
+    }
+  }
+
+  /**
+   * Returns true if the given name might be in this filter, or false if it definitely isn't. Takes
+   * a javac {@code Name} without converting it to a string.
+   */
+  boolean mightContain(CharSequence name) {
+    long hash = hash(name);
+    int h1 = (int) hash;
+    int h2 = (int) (hash >>> 32) | 1;
+    for (int i = 0; i < HASHES; i++) {
+      int bit = (h1 + i * h2) & bitMask;
+      if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** FNV-1a over the name's chars, followed by MurmurHash3's finalizer to spread the bits. */
+  private static long hash(CharSequence name) {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < name.length(); i++) {
+      hash ^= name.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+
+  /**
+   * Returns a filter of the simple names that can refer to an API annotated with one of the given
+   * annotations, given as descriptors, in a compilation that uses the given index and file manager,
+   * or {@code null} if names can't be filtered. The names come from the index, plus names read from
+   * any class files in the base packages on the class path that the index doesn't cover, such as
+   * another library's. Names can't be filtered if the index has none, if the source path has
+   * sources in the base packages, or if there's a module path, which isn't scanned.
+   *
+   * <p>With a {@link StandardJavaFileManager}, the filter is shared by every compilation whose
+   * class path entries have the same origins: for a jar, its path, size and modification time, and
+   * for a directory, its path and the modification times of the class files in the base packages
+   * under it. So a long-lived JVM, such as a build daemon, reads each class path's class files only
+   * once.
+   *
+   * @param indexJar the URI of the jar on the class path the index was built from
+   */
+  static SimpleNameFilter forClassPath(
+      AnnotatedApiIndex index,
+      String indexJar,
+      Collection<String> basePackages,
+      Set<String> annotationDescriptors,
+      JavaFileManager fileManager)
+      throws IOException {
+    if (index.simpleNameFilter() == null
+        || fileManager.hasLocation(StandardLocation.MODULE_PATH)
+        || hasSources(fileManager, basePackages)) {
+      return null;
+    }
+    String key = classPathKey(index, indexJar, basePackages, annotationDescriptors, fileManager);
+    SimpleNameFilter filter = key == null ? null : CLASS_PATH_FILTERS.get(key);
+    if (filter == null) {
+      filter = read(index, indexJar, basePackages, annotationDescriptors, fileManager);
+      if (key != null) {
+        CLASS_PATH_FILTERS.put(key, filter);
+      }
+    }
+    return filter;
+  }
+
+  /** Returns true if the source path has sources in the given packages or packages under them. */
+  private static boolean hasSources(JavaFileManager fileManager, Collection<String> packages)
+      throws IOException {
+    if (!fileManager.hasLocation(StandardLocation.SOURCE_PATH)) {
+      return false;
+    }
+    for (String packageName : packages) {
+      Iterator<JavaFileObject> sources =
+          fileManager
+              .list(
+                  StandardLocation.SOURCE_PATH,
+                  packageName,
+                  EnumSet.of(JavaFileObject.Kind.SOURCE),
+                  true)
+              .iterator();
+      if (sources.hasNext()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the key of the filter for the given compilation in {@link #CLASS_PATH_FILTERS}, or
+   * {@code null} if the origins of its class path entries can't be told.
+   */
+  private static String classPathKey(
+      AnnotatedApiIndex index,
+      String indexJar,
+      Collection<String> basePackages,
+      Set<String> annotationDescriptors,
+      JavaFileManager fileManager)
+      throws IOException {
+    if (!(fileManager instanceof StandardJavaFileManager)) {
+      return null;
+    }
+    Iterable<? extends Path> classPath =
+        ((StandardJavaFileManager) fileManager).getLocationAsPaths(StandardLocation.CLASS_PATH);
+    if (classPath == null) {
+      return null;
+    }
+    StringBuilder key =
+        new StringBuilder()
+            .append(index.fingerprint())
+            .append('\n')
+            .append(indexJar)
+            .append('\n')
+            .append(new TreeSet<>(annotationDescriptors))
+            .append('\n')
+            .append(basePackages);
+    for (Path entry : classPath) {
+      key.append('\n').append(entry.toAbsolutePath());
+      if (Files.isDirectory(entry)) {
+        for (String basePackage : basePackages) {
+          appendClassFileTimes(key, entry, entry.resolve(basePackage.replace(".", "/")));
+        }
+      } else if (Files.exists(entry)) {
+        BasicFileAttributes attributes = Files.readAttributes(entry, BasicFileAttributes.class);
+        key.append(' ')
+            .append(attributes.size())
+            .append(' ')
+            .append(attributes.lastModifiedTime().toMillis());
+      }
+    }
+    return key.toString();
+  }
+
+  /**
+   * Appends the path relative to {@code entry} and modification time of each class file under the
+   * given package directory to the given key.
+   */
+  private static void appendClassFileTimes(StringBuilder key, Path entry, Path packageDirectory)
+      throws IOException {
+    if (!Files.isDirectory(packageDirectory)) {
+      return;
+    }
+    try (Stream<Path> files = Files.walk(packageDirectory)) {
+      Iterator<Path> classFiles =
+          files.filter(file -> file.toString().endsWith(".class")).sorted().iterator();
+      while (classFiles.hasNext()) {
+        Path classFile = classFiles.next();
+        key.append('\n')
+            .append(entry.relativize(classFile))
+            .append(' ')
+            .append(Files.getLastModifiedTime(classFile).toMillis());
+      }
+    }
+  }
+
+  /**
+   * Builds the filter for the given compilation, reading the class files in the base packages on
+   * its class path that the index doesn't cover.
+   */
+  private static SimpleNameFilter read(
+      AnnotatedApiIndex index,
+      String indexJar,
+      Collection<String> basePackages,
+      Set<String> annotationDescriptors,
+      JavaFileManager fileManager)
+      throws IOException {
+    List<ClassFile> uncoveredClasses = new ArrayList<>();
+    for (String basePackage : basePackages) {
+      for (JavaFileObject file :
+          fileManager.list(
+              StandardLocation.CLASS_PATH,
+              basePackage,
+              EnumSet.of(JavaFileObject.Kind.CLASS),
+              true)) {
+        String className = fileManager.inferBinaryName(StandardLocation.CLASS_PATH, file);
+        if (className.endsWith("package-info")
+            || className.endsWith("module-info")
+            || index.covers(className, file, indexJar)) {
+          continue;
+        }
+        try (InputStream in = file.openInputStream()) {
+          uncoveredClasses.add(ClassFile.parse(in.readAllBytes()));
+        }
+      }
+    }
+    if (uncoveredClasses.isEmpty()) {
+      return index.simpleNameFilter();
+    }
+    List<String> names = new ArrayList<>(index.simpleNames());
+    names.addAll(annotatedSimpleNames(uncoveredClasses, annotationDescriptors));
+    return create(names);
+  }
+
+  /**
+   * Returns the simple names by which the APIs in the given classes that are annotated with one of
+   * the given annotations, given as descriptors like {@code Lcom/google/common/annotations/Beta;},
+   * can be referenced in source. A nested class counts as annotated if a class enclosing it is,
+   * which is only known if that class is among the given classes.
+   */
+  static Set<String> annotatedSimpleNames(
+      Collection<ClassFile> classFiles, Set<String> annotationDescriptors) {
+    Set<String> annotatedClasses = new HashSet<>();
+    for (ClassFile classFile : classFiles) {
+      if (isAnnotated(classFile.annotations, annotationDescriptors)) {
+        annotatedClasses.add(classFile.name);
+      }
+    }
+    Set<String> names = new TreeSet<>();
+    for (ClassFile classFile : classFiles) {
+      String simpleName = simpleName(classFile.name);
+      if (simpleName.isEmpty() || Character.isDigit(simpleName.charAt(0))) {
+        // Anonymous and local classes can't be referenced by name from other files
+        continue;
+      }
+      boolean classAnnotated = isOrIsEnclosedBy(classFile.name, annotatedClasses);
+      if (classAnnotated) {
+        names.add(simpleName);
+      }
+      for (ClassFile.Member field : classFile.fields) {
+        if (classAnnotated || isAnnotated(field.annotations, annotationDescriptors)) {
+          names.add(field.name);
+        }
+      }
+      for (ClassFile.Member method : classFile.methods) {
+        if (method.name.equals("<clinit>")
+            || !(classAnnotated || isAnnotated(method.annotations, annotationDescriptors))) {
+          continue;
+        }
+        if (method.isConstructor()) {
+          // Named by its class in source, or by this or super when called from a constructor
+          names.add(simpleName);
+          names.add("this");
+          names.add("super");
+        }
+        names.add(method.name);
+      }
+    }
+    return names;
+  }
+
+  private static boolean isAnnotated(Set<String> annotations, Set<String> annotationDescriptors) {
+    for (String annotation : annotations) {
+      if (annotationDescriptors.contains(annotation)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns true if the class with the given binary name, or a class it's nested in, is one of the
+   * given classes.
+   */
+  private static boolean isOrIsEnclosedBy(String className, Set<String> classes) {
+    for (int end = className.length(); end > 0; end = className.lastIndexOf('$', end - 1)) {
+      if (classes.contains(className.substring(0, end))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Returns the simple name of the class with the given binary name. */
+  private static String simpleName(String className) {
+    return className.substring(
+        Math.max(className.lastIndexOf('.'), className.lastIndexOf('$')) + 1);
+  }
+}
@@ -0,0 +1,451 @@
+/*
+ * Copyright (C) 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.annotations.checkers;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import com.google.errorprone.BaseErrorProneJavaCompiler;
+import com.google.errorprone.scanner.ScannerSupplier;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticListener;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/**
+ * Finds usages of Guava's {@code @Beta} APIs in source trees by compiling them with only the
+ * {@link BetaChecker} enabled, for auditing a whole code base without building it with Error Prone.
+ *
+ * <p>Usage: {@code SourceAuditor [--threads <n>] [--shards <n>] [--classpath <path>]
+ * [--findings <file.jsonl>] [-XepOpt:...]... <source root or file>...}, or {@code SourceAuditor
+ * --parse-only [--threads <n>] [--library <guava.jar>] <source root or file>...}
+ *
+ * <p>The {@code .java} files under the given roots are split into shards of about the same total
+ * size, and each shard is compiled by its own {@code JavacTask} on a pool of threads, one per core
+ * by default. The source roots are on each task's source path, so a file can refer to files in
+ * other shards, though only its own shard reports usages in it. Annotation processing never runs,
+ * and compilation stops after flow analysis, where Error Prone runs, so no class files are
+ * written. {@code -XepOpt} flags are passed to the checker.
+ *
+ * <p>Each usage is printed as a line with the file, line and column, and the checker's message,
+ * ordered by file and position across all shards, and the exit status is 1 if there are any. With
+ * {@code --findings}, the checker's {@linkplain FindingsWriter JSON lines findings} for each shard
+ * are merged into the given file. Files that don't compile can't be fully checked, so compile
+ * errors are printed to standard error, and the exit status is 3 if there are any.
+ *
+ * <p>With {@code --parse-only}, the files are only parsed, and their names resolved through their
+ * imports, by a {@link ParseOnlyAuditor}. That's fast enough for a pre-commit hook but misses
+ * usages, mainly of instance methods, so it doesn't replace the full audit. The usages are checked
+ * against the index shipped with {@link BetaChecker}, or against an index of the Guava jar given by
+ * {@code --library}, and are printed the same way.
+ */
+public final class SourceAuditor {
+
+  /** A usage of an annotated API reported by the checker. */
+  static final class Finding {
+    final String file;
+    final long line;
+    final long column;
+    final String message;
+
+    Finding(String file, long line, long column, String message) {
+      this.file = file;
+      this.line = line;
+      this.column = column;
+      this.message = message;
+    }
+
+    @Override
+    public String toString() {
+      return file + ":" + line + ":" + column + "\t" + message;
+    }
+  }
+
+  /** The findings and compile errors of an audit, each ordered by file and position. */
+  static final class Result {
+    final ImmutableList<Finding> findings;
+    final ImmutableList<Finding> errors;
+
+    Result(List<Finding> findings, List<Finding> errors) {
+      this.findings = sorted(findings);
+      this.errors = sorted(errors);
+    }
+
+    private static ImmutableList<Finding> sorted(List<Finding> findings) {
+      return findings.stream()
+          .sorted(
+              Comparator.<Finding, String>comparing(finding -> finding.file)
+                  .thenComparingLong(finding -> finding.line)
+                  .thenComparingLong(finding -> finding.column))
+          .collect(toImmutableList());
+    }
+  }
+
+  private static final JavaCompiler COMPILER =
+      new BaseErrorProneJavaCompiler(ScannerSupplier.fromBugCheckerClasses(BetaChecker.class));
+
+  private final ImmutableList<String> options;
+
+  /**
+   * Creates an auditor that compiles against the given class path, finding sources that files
+   * refer to under the given roots, and passes the given {@code -XepOpt} flags to the checker.
+   */
+  SourceAuditor(String classpath, List<Path> sourceRoots, List<String> checkerOptions) {
+    ImmutableList.Builder<String> options = ImmutableList.builder();
+    options.add("-proc:none", "-implicit:none", "-XDshould-stop.ifNoError=FLOW");
+    if (classpath != null) {
+      options.add("-classpath", classpath);
+    }
+    List<String> directories = new ArrayList<>();
+    for (Path root : sourceRoots) {
+      if (Files.isDirectory(root)) {
+        directories.add(root.toString());
+      }
+    }
+    if (!directories.isEmpty()) {
+      options.add("-sourcepath", String.join(File.pathSeparator, directories));
+    }
+    this.options = options.addAll(checkerOptions).build();
+  }
+
+  public static void main(String[] args) throws IOException {
+    int threads = Runtime.getRuntime().availableProcessors();
+    int shards = -1;
+    String classpath = null;
+    Path findingsFile = null;
+    boolean parseOnly = false;
+    File library = null;
+    List<String> checkerOptions = new ArrayList<>();
+    List<Path> inputs = new ArrayList<>();
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("--threads") && i + 1 < args.length) {
+        threads = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("--shards") && i + 1 < args.length) {
+        shards = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("--classpath") && i + 1 < args.length) {
+        classpath = args[++i];
+      } else if (args[i].equals("--findings") && i + 1 < args.length) {
+        findingsFile = Paths.get(args[++i]);
+      } else if (args[i].equals("--parse-only")) {
+        parseOnly = true;
+      } else if (args[i].equals("--library") && i + 1 < args.length) {
+        library = new File(args[++i]);
+      } else if (args[i].startsWith("-XepOpt:")) {
+        checkerOptions.add(args[i]);
+      } else if (args[i].startsWith("-")) {
+        inputs.clear();
+        break;
+      } else {
+        inputs.add(Paths.get(args[i]));
+      }
+    }
+    if (inputs.isEmpty() || (parseOnly && (findingsFile != null || !checkerOptions.isEmpty()))) {
+      System.err.println(
+          "Usage: SourceAuditor [--threads <n>] [--shards <n>] [--classpath <path>]"
+              + " [--findings <file.jsonl>] [-XepOpt:...]... <source root or file>...\n"
+              + "   or: SourceAuditor --parse-only [--threads <n>] [--library <guava.jar>]"
+              + " <source root or file>...");
+      System.exit(2);
+    }
+
+    List<Path> files = sourceFiles(inputs);
+    if (parseOnly) {
+      System.exit(auditParseOnly(files, library, threads));
+    }
+    SourceAuditor auditor = new SourceAuditor(classpath, inputs, checkerOptions);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    Result result;
+    try {
+      result = auditor.audit(files, shards > 0 ? shards : threads, executor, findingsFile);
+    } finally {
+      executor.shutdown();
+    }
+    for (Finding finding : result.findings) {
+      System.out.println(finding);
+    }
+    for (Finding error : result.errors) {
+      System.err.println(error);
+    }
+    System.err.println(
+        "Found "
+            + result.findings.size()
+            + " usages of @Beta APIs in "
+            + files.size()
+            + " files"
+            + (result.errors.isEmpty() ? "" : "; " + result.errors.size() + " compile errors"));
+    System.exit(!result.errors.isEmpty() ? 3 : result.findings.isEmpty() ? 0 : 1);
+  }
+
+  /** Runs a {@link ParseOnlyAuditor} over the given files and returns the exit status. */
+  private static int auditParseOnly(List<Path> files, File library, int threads)
+      throws IOException {
+    BetaChecker checker = new BetaChecker();
+    AnnotatedApiIndex index =
+        library != null
+            ? AnnotatedApiIndexGenerator.generate(library, "com.google.common.annotations.Beta")
+            : checker
+                .precomputedIndex()
+                .orElseThrow(() -> new IOException("No @Beta index; pass --library"));
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    List<Finding> findings;
+    try {
+      findings = new ParseOnlyAuditor(checker, index).audit(files, pool);
+    } finally {
+      pool.shutdown();
+    }
+    for (Finding finding : findings) {
+      System.out.println(finding);
+    }
+    System.err.println(
+        "Found "
+            + findings.size()
+            + " likely usages of @Beta APIs in "
+            + files.size()
+            + " files by parsing only");
+    return findings.isEmpty() ? 0 : 1;
+  }
+
+  /** Returns the {@code .java} files under the given roots, or the given files, sorted. */
+  static List<Path> sourceFiles(List<Path> inputs) throws IOException {
+    List<Path> files = new ArrayList<>();
+    for (Path input : inputs) {
+      if (Files.isDirectory(input)) {
+        try (Stream<Path> walk = Files.walk(input)) {
+          walk.filter(path -> path.getFileName().toString().endsWith(".java"))
+              .filter(Files::isRegularFile)
+              .sorted()
+              .forEach(files::add);
+        }
+      } else {
+        files.add(input);
+      }
+    }
+    return files;
+  }
+
+  /**
+   * Splits the given files into at most the given number of shards of about the same total size,
+   * placing each file, largest first, in the shard that is smallest so far. The files in each shard
+   * keep their order.
+   */
+  static List<List<Path>> shard(List<Path> files, int shards) throws IOException {
+    int count = Math.max(1, Math.min(shards, files.size()));
+    long[] sizes = new long[files.size()];
+    List<Integer> bySize = new ArrayList<>();
+    for (int i = 0; i < files.size(); i++) {
+      sizes[i] = Files.size(files.get(i));
+      bySize.add(i);
+    }
+    bySize.sort(Comparator.<Integer>comparingLong(file -> -sizes[file]).thenComparing(i -> i));
+    long[] totals = new long[count];
+    PriorityQueue<Integer> smallest =
+        new PriorityQueue<>(
+            Comparator.<Integer>comparingLong(shard -> totals[shard])
+                .thenComparing(shard -> shard));
+    List<List<Integer>> shardIndexes = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      shardIndexes.add(new ArrayList<>());
+      smallest.add(i);
+    }
+    for (int file : bySize) {
+      int shard = smallest.poll();
+      shardIndexes.get(shard).add(file);
+      totals[shard] += sizes[file];
+      smallest.add(shard);
+    }
+    List<List<Path>> result = new ArrayList<>();
+    for (List<Integer> indexes : shardIndexes) {
+      if (!indexes.isEmpty()) {
+        Collections.sort(indexes);
+        result.add(indexes.stream().map(files::get).collect(toImmutableList()));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Audits the given files, compiling the given number of shards of them on the given executor,
+   * and returns the merged findings. If {@code findingsFile} isn't {@code null}, the JSON lines
+   * findings of the shards are merged into it, in shard order.
+   */
+  Result audit(List<Path> files, int shards, ExecutorService executor, Path findingsFile)
+      throws IOException {
+    List<List<Path>> fileShards = shard(files, shards);
+    List<Path> shardFindingsFiles = new ArrayList<>();
+    List<Future<Result>> results = new ArrayList<>();
+    try {
+      for (List<Path> shard : fileShards) {
+        Path shardFindingsFile = null;
+        if (findingsFile != null) {
+          shardFindingsFile = Files.createTempFile("beta-audit-shard", ".jsonl");
+          shardFindingsFiles.add(shardFindingsFile);
+        }
+        Path shardFindings = shardFindingsFile;
+        results.add(executor.submit(() -> auditShard(shard, shardFindings)));
+      }
+      List<Finding> findings = new ArrayList<>();
+      List<Finding> errors = new ArrayList<>();
+      for (Future<Result> result : results) {
+        try {
+          findings.addAll(result.get().findings);
+          errors.addAll(result.get().errors);
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof IOException) {
+            throw (IOException) e.getCause();
+          }
+          throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IOException("Interrupted", e);
+        }
+      }
+      if (findingsFile != null) {
+        try (OutputStream out = Files.newOutputStream(findingsFile)) {
+          for (Path shardFindingsFile : shardFindingsFiles) {
+            Files.copy(shardFindingsFile, out);
+          }
+        }
+      }
+      return new Result(findings, errors);
+    } finally {
+      for (Path shardFindingsFile : shardFindingsFiles) {
+        Files.deleteIfExists(shardFindingsFile);
+      }
+    }
+  }
+
+  /**
+   * Compiles the given shard of files and returns the checker's findings and compile errors in
+   * them. Files in other shards that these refer to are compiled too, from the source path, but
+   * what's reported about them is left to their own shard.
+   */
+  private Result auditShard(List<Path> files, Path findingsFile) throws IOException {
+    List<Finding> findings = new ArrayList<>();
+    List<Finding> errors = new ArrayList<>();
+    List<String> shardOptions = options;
+    if (findingsFile != null) {
+      shardOptions =
+          ImmutableList.<String>builder()
+              .addAll(options)
+              .add("-XepOpt:BetaApi:FindingsFile=" + findingsFile)
+              .add("-XepOpt:BetaApi:FindingsFormat=jsonl")
+              .build();
+    }
+    Set<String> names = new HashSet<>();
+    try (StandardJavaFileManager fileManager =
+        ToolProvider.getSystemJavaCompiler().getStandardFileManager(null, Locale.ROOT, UTF_8)) {
+      Iterable<? extends JavaFileObject> sources = fileManager.getJavaFileObjectsFromPaths(files);
+      for (JavaFileObject source : sources) {
+        names.add(source.getName());
+      }
+      DiagnosticListener<JavaFileObject> listener =
+          diagnostic -> {
+            if (diagnostic.getSource() != null
+                && !names.contains(diagnostic.getSource().getName())) {
+              return;
+            }
+            boolean finding = diagnostic.getCode().endsWith(".error.prone");
+            if (finding || diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+              (finding ? findings : errors).add(finding(diagnostic));
+            }
+          };
+      COMPILER
+          .getTask(
+              new StringWriter(),
+              new DiscardingFileManager(fileManager),
+              listener,
+              shardOptions,
+              null /*classes*/,
+              sources)
+          .call();
+    }
+    if (findingsFile != null) {
+      List<String> prefixes = new ArrayList<>();
+      for (String name : names) {
+        prefixes.add(FindingsWriter.jsonlPrefix(name));
+      }
+      List<String> records = new ArrayList<>();
+      for (String record : Files.readAllLines(findingsFile, UTF_8)) {
+        if (prefixes.stream().anyMatch(record::startsWith)) {
+          records.add(record);
+        }
+      }
+      Files.write(findingsFile, records, UTF_8);
+    }
+    return new Result(findings, errors);
+  }
+
+  private static Finding finding(Diagnostic<? extends JavaFileObject> diagnostic) {
+    String message = diagnostic.getMessage(Locale.ROOT);
+    int newline = message.indexOf('\n');
+    return new Finding(
+        diagnostic.getSource() == null ? "" : diagnostic.getSource().getName(),
+        diagnostic.getLineNumber(),
+        diagnostic.getColumnNumber(),
+        newline < 0 ? message : message.substring(0, newline));
+  }
+
+  /** A file manager that discards class files, in case anything is generated anyway. */
+  private static final class DiscardingFileManager
+      extends ForwardingJavaFileManager<JavaFileManager> {
+
+    DiscardingFileManager(JavaFileManager fileManager) {
+      super(fileManager);
+    }
+
+    @Override
+    public JavaFileObject getJavaFileForOutput(
+        Location location, String className, JavaFileObject.Kind kind, FileObject sibling) {
+      return new SimpleJavaFileObject(
+          URI.create("discarded:///" + className.replace('.', '/') + kind.extension), kind) {
+        @Override
+        public OutputStream openOutputStream() {
+          return OutputStream.nullOutputStream();
+        }
+      };
+    }
+  }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.annotations.checkers;
+
+import com.google.errorprone.VisitorState;
+import com.google.errorprone.bugpatterns.BugChecker;
+import com.google.errorprone.util.ASTHelpers;
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.EnhancedForLoopTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.ImportTree;
+import com.sun.source.tree.LambdaExpressionTree;
+import com.sun.source.tree.MemberReferenceTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.tree.VariableTree;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreePathScanner;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Type;
+
+/**
+ * Walks a compilation unit for a checker that looks at the whole unit at once rather than one tree
+ * at a time, passing each tree that may refer to an API to {@link #visitReference}. Like the
+ * checker's per-tree matchers, it skips imports, calls to {@code super()} and declarations the
+ * checker is suppressed on. Suppressions of the checker's individual rules are tracked as a mask
+ * of the rules suppressed on the enclosing declarations.
+ *
+ * <p>If asked to, it also passes types that are used without being named in the source to {@link
+ * #visitImpliedType}: the type of the expression an enhanced for loop iterates over, the interface
+ * a lambda implements and the inferred type of a local variable declared with {@code var}.
+ */
+abstract class UsageScanner extends TreePathScanner<Void, Void> {
+
+  private final BugChecker checker;
+  private final VisitorState state;
+  private final boolean findImpliedTypes;
+  private long suppressedRules;
+
+  UsageScanner(BugChecker checker, VisitorState state, boolean findImpliedTypes) {
+    this.checker = checker;
+    this.state = state;
+    this.findImpliedTypes = findImpliedTypes;
+  }
+
+  /**
+   * Called for each identifier, member select and member reference, with a state whose path is the
+   * tree's.
+   */
+  abstract void visitReference(Tree tree, VisitorState state);
+
+  /**
+   * Called, if implied types are found, for each type the given tree uses without naming it, with
+   * a state whose path is the tree's. If {@code includeTypeArguments}, the type's type arguments
+   * and array component types are implied too.
+   */
+  abstract void visitImpliedType(
+      Tree tree, Type type, boolean includeTypeArguments, VisitorState state);
+
+  /**
+   * Returns the mask of rules suppressed on the given class, method or variable declaration.
+   * Returns 0 by default.
+   */
+  long rulesSuppressedBy(Tree declaration) {
+    return 0;
+  }
+
+  /** Returns the mask of rules suppressed on the declarations enclosing the current tree. */
+  final long suppressedRules() {
+    return suppressedRules;
+  }
+
+  @Override
+  public Void visitImport(ImportTree tree, Void unused) {
+    return null;
+  }
+
+  @Override
+  public Void visitClass(ClassTree tree, Void unused) {
+    if (isSuppressed(tree)) {
+      return null;
+    }
+    long outer = suppressedRules;
+    suppressedRules |= rulesSuppressedBy(tree);
+    try {
+      return super.visitClass(tree, null);
+    } finally {
+      suppressedRules = outer;
+    }
+  }
+
+  @Override
+  public Void visitMethod(MethodTree tree, Void unused) {
+    if (isSuppressed(tree)) {
+      return null;
+    }
+    long outer = suppressedRules;
+    suppressedRules |= rulesSuppressedBy(tree);
+    try {
+      return super.visitMethod(tree, null);
+    } finally {
+      suppressedRules = outer;
+    }
+  }
+
+  @Override
+  public Void visitVariable(VariableTree tree, Void unused) {
+    if (isSuppressed(tree)) {
+      return null;
+    }
+    long outer = suppressedRules;
+    suppressedRules |= rulesSuppressedBy(tree);
+    try {
+      if (findImpliedTypes && isDeclaredWithVar(tree)) {
+        Symbol symbol = ASTHelpers.getSymbol(tree);
+        if (symbol != null) {
+          impliedTypeAt(tree, symbol.type, true, getCurrentPath());
+        }
+        // Any type tree javac made up for the variable isn't in the source
+        scan(tree.getModifiers(), null);
+        scan(tree.getInitializer(), null);
+        return null;
+      }
+      return super.visitVariable(tree, null);
+    } finally {
+      suppressedRules = outer;
+    }
+  }
+
+  @Override
+  public Void visitIdentifier(IdentifierTree tree, Void unused) {
+    if (!AnnotatedApiUsageChecker.isSuperCall(tree)) {
+      visitReference(tree, state.withPath(getCurrentPath()));
+    }
+    return super.visitIdentifier(tree, null);
+  }
+
+  @Override
+  public Void visitMemberSelect(MemberSelectTree tree, Void unused) {
+    visitReference(tree, state.withPath(getCurrentPath()));
+    return super.visitMemberSelect(tree, null);
+  }
+
+  @Override
+  public Void visitMemberReference(MemberReferenceTree tree, Void unused) {
+    visitReference(tree, state.withPath(getCurrentPath()));
+    return super.visitMemberReference(tree, null);
+  }
+
+  @Override
+  public Void visitEnhancedForLoop(EnhancedForLoopTree tree, Void unused) {
+    if (findImpliedTypes) {
+      Tree expression = tree.getExpression();
+      impliedTypeAt(
+          expression,
+          ASTHelpers.getType(expression),
+          false,
+          new TreePath(getCurrentPath(), expression));
+    }
+    return super.visitEnhancedForLoop(tree, null);
+  }
+
+  @Override
+  public Void visitLambdaExpression(LambdaExpressionTree tree, Void unused) {
+    if (findImpliedTypes) {
+      impliedTypeAt(tree, ASTHelpers.getType(tree), false, getCurrentPath());
+    }
+    return super.visitLambdaExpression(tree, null);
+  }
+
+  private void impliedTypeAt(Tree tree, Type type, boolean includeTypeArguments, TreePath path) {
+    if (type != null) {
+      visitImpliedType(tree, type, includeTypeArguments, state.withPath(path));
+    }
+  }
+
+  /** Returns true if the given variable is a local variable whose type is inferred. */
+  private boolean isDeclaredWithVar(VariableTree tree) {
+    return !(getCurrentPath().getParentPath().getLeaf() instanceof LambdaExpressionTree)
+        && ASTHelpers.hasImplicitType(tree, state);
+  }
+
+  private boolean isSuppressed(Tree tree) {
+    return checker.isSuppressed(tree, state.withPath(getCurrentPath()));
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.annotations.checkers;
+
+import com.google.errorprone.util.ASTHelpers;
+import com.sun.source.tree.LineMap;
+import com.sun.source.tree.Tree;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Symbol.ClassSymbol;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The usages of annotated APIs found in one compilation unit, for a checker's summary mode. Only
+ * one entry per distinct API is kept, however many times it's used, so memory is bounded by the
+ * number of APIs used rather than the number of usages.
+ */
+final class UsageSummary {
+
+  /** The usages of one annotated API. */
+  private static final class ApiUsages {
+    final int firstPosition;
+    int count;
+
+    ApiUsages(int firstPosition) {
+      this.firstPosition = firstPosition;
+    }
+  }
+
+  private final Map<Symbol, ApiUsages> usages = new LinkedHashMap<>();
+  private Tree firstUsage;
+  private int total;
+
+  /** Records a usage of the given API at the given tree. */
+  void add(Symbol api, Tree tree) {
+    if (firstUsage == null) {
+      firstUsage = tree;
+    }
+    usages.computeIfAbsent(api, k -> new ApiUsages(ASTHelpers.getStartPosition(tree))).count++;
+    total++;
+  }
+
+  boolean isEmpty() {
+    return usages.isEmpty();
+  }
+
+  /** Returns the first usage recorded, or {@code null} if there is none. */
+  Tree firstUsage() {
+    return firstUsage;
+  }
+
+  /**
+   * Returns a message listing each API used with its number of usages and the line and column of
+   * its first usage, referring to the annotation by its simple name.
+   */
+  String message(String annotationType, LineMap lineMap) {
+    String annotation = "@" + annotationType.substring(annotationType.lastIndexOf('.') + 1);
+    StringBuilder message = new StringBuilder();
+    message
+        .append(total)
+        .append(total == 1 ? " usage of " : " usages of ")
+        .append(usages.size())
+        .append(' ')
+        .append(annotation)
+        .append(usages.size() == 1 ? " API" : " APIs")
+        .append(" in this file:");
+    for (Map.Entry<Symbol, ApiUsages> entry : usages.entrySet()) {
+      ApiUsages apiUsages = entry.getValue();
+      message
+          .append("\n  ")
+          .append(apiName(entry.getKey()))
+          .append(": ")
+          .append(apiUsages.count)
+          .append(apiUsages.count == 1 ? " usage" : " usages")
+          .append(", first at ")
+          .append(lineMap.getLineNumber(apiUsages.firstPosition))
+          .append(':')
+          .append(lineMap.getColumnNumber(apiUsages.firstPosition));
+    }
+    return message.toString();
+  }
+
+  /**
+   * Returns a name for the given API in javadoc's style, e.g. {@code com.google.common.foo.Bar} or
+   * {@code com.google.common.foo.Bar#baz(java.lang.String)}.
+   */
+  static String apiName(Symbol symbol) {
+    if (symbol instanceof ClassSymbol) {
+      return ((ClassSymbol) symbol).getQualifiedName().toString();
+    }
+    return symbol.owner.getQualifiedName() + "#" + symbol;
+  }
+}
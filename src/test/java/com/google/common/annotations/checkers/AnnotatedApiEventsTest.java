@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.annotations.checkers;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.testing.compile.JavaFileObjects;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import javax.tools.JavaFileObject;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for {@link AnnotatedApiEvents}.
+ */
+@RunWith(JUnit4.class)
+public class AnnotatedApiEventsTest {
+
+  private static final String EVENT_PREFIX = "com.google.common.annotations.checkers.";
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private static final JavaFileObject RECORDED_API =
+      JavaFileObjects.forSourceLines(
+          "com.google.common.jfrtest.RecordedApi",
+          "package com.google.common.jfrtest;",
+          "",
+          "import com.google.common.annotations.Beta;",
+          "",
+          "public class RecordedApi {",
+          "  @Beta public static void betaMethod() {}",
+          "  public static void method() {}",
+          "}");
+
+  @Test
+  public void testEvents() throws Exception {
+    List<String> lines = new ArrayList<>();
+    lines.add("package example.jfrtest;");
+    lines.add("");
+    lines.add("import com.google.common.jfrtest.RecordedApi;");
+    lines.add("");
+    lines.add("public class Test {");
+    lines.add("  public static void foo() {");
+    lines.add("    RecordedApi.betaMethod();"); // error
+    for (int i = 0; i < AnnotatedApiEvents.OWNER_CHAIN_WALK_SAMPLE_INTERVAL; i++) {
+      lines.add("    RecordedApi.method();");
+    }
+    lines.add("  }");
+    lines.add("}");
+    TestCompiler compiler = new TestCompiler(BetaChecker.class);
+
+    Path dump = temporaryFolder.newFile("recording.jfr").toPath();
+    try (Recording recording = new Recording()) {
+      recording.enable(EVENT_PREFIX + "CompilationUnitChecked");
+      recording.enable(EVENT_PREFIX + "AnnotatedApiMatch");
+      recording.enable(EVENT_PREFIX + "OwnerChainWalk");
+      recording.start();
+      compiler.assertErrorsOnLines(
+          "example/jfrtest/Test.java",
+          compiler.compile(
+              RECORDED_API,
+              JavaFileObjects.forSourceLines("example.jfrtest.Test", lines)),
+          7);
+      recording.stop();
+      recording.dump(dump);
+    }
+    // Other tests may be compiling at the same time, so only look at this test's events
+    List<RecordedEvent> events =
+        RecordingFile.readAllEvents(dump).stream()
+            .filter(event -> event.getEventType().getName().startsWith(EVENT_PREFIX))
+            .filter(event -> event.getString(fieldFor(event)).contains("jfrtest"))
+            .collect(toImmutableList());
+
+    RecordedEvent unit = only(events, "CompilationUnitChecked", "example/jfrtest/Test.java");
+    assertThat(unit.getString("check")).isEqualTo("BetaApi");
+    assertThat(unit.getLong("matches")).isEqualTo(1);
+    assertThat(unit.getLong("treesInspected"))
+        .isAtLeast(1L + AnnotatedApiEvents.OWNER_CHAIN_WALK_SAMPLE_INTERVAL);
+    RecordedEvent match =
+        only(events, "AnnotatedApiMatch", "com.google.common.jfrtest.RecordedApi#betaMethod()");
+    assertThat(match.getString("treeKind")).isEqualTo("MEMBER_SELECT");
+    assertThat(match.getString("rules")).isEqualTo("BetaApi");
+    assertThat(
+            events.stream()
+                .anyMatch(event -> event.getEventType().getName().endsWith("OwnerChainWalk")))
+        .isTrue();
+  }
+
+  /** Returns the field naming the file or API the given event is about. */
+  private static String fieldFor(RecordedEvent event) {
+    switch (event.getEventType().getName().substring(EVENT_PREFIX.length())) {
+      case "CompilationUnitChecked":
+        return "file";
+      case "AnnotatedApiMatch":
+        return "api";
+      default:
+        return "symbol";
+    }
+  }
+
+  /** Returns the only event of the given type about the given file or API. */
+  private static RecordedEvent only(List<RecordedEvent> events, String type, String subject) {
+    ImmutableList<RecordedEvent> matching =
+        events.stream()
+            .filter(event -> event.getEventType().getName().equals(EVENT_PREFIX + type))
+            .filter(event -> event.getString(fieldFor(event)).endsWith(subject))
+            .collect(toImmutableList());
+    assertThat(matching).hasSize(1);
+    return matching.get(0);
+  }
+}
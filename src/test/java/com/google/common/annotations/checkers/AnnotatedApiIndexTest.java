@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.annotations.checkers;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for {@link AnnotatedApiIndex} and {@link AnnotatedApiIndexGenerator}.
+ */
+@RunWith(JUnit4.class)
+public class AnnotatedApiIndexTest {
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testWriteAndRead() throws Exception {
+    AnnotatedApiIndex index = AnnotatedApiIndex.create(
+        "com.example.Beta",
+        "com.example:lib:1.0",
+        ImmutableList.of("com.example.Foo", "com.example.Foo$Bar", "com.example.Baz"),
+        ImmutableList.of("com.example.Foo#bar(I)", "com.example.Baz", "com.example.Foo#BAR"));
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    index.write(out);
+    AnnotatedApiIndex read = AnnotatedApiIndex.read(new ByteArrayInputStream(out.toByteArray()));
+
+    assertThat(read.annotationType()).isEqualTo("com.example.Beta");
+    assertThat(read.fingerprint()).isEqualTo("com.example:lib:1.0");
+    assertThat(read.annotatedApiCount()).isEqualTo(3);
+    assertThat(read.simpleNames()).isNull();
+    assertThat(read.simpleNameFilter()).isNull();
+    ByteArrayOutputStream rewritten = new ByteArrayOutputStream();
+    read.write(rewritten);
+    assertThat(rewritten.toByteArray()).isEqualTo(out.toByteArray());
+  }
+
+  @Test
+  public void testWriteAndRead_simpleNames() throws Exception {
+    AnnotatedApiIndex index = AnnotatedApiIndex.create(
+        "com.example.Beta",
+        "com.example:lib:1.0",
+        ImmutableList.of("com.example.Foo"),
+        ImmutableList.of("com.example.Foo#bar(I)"),
+        ImmutableList.of("bar", "Foo", "bar"));
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    index.write(out);
+    AnnotatedApiIndex read = AnnotatedApiIndex.read(new ByteArrayInputStream(out.toByteArray()));
+
+    assertThat(read.simpleNames()).containsExactly("Foo", "bar").inOrder();
+    assertThat(read.simpleNameFilter().mightContain("bar")).isTrue();
+    assertThat(read.simpleNameFilter().mightContain("Foo")).isTrue();
+  }
+
+  @Test
+  public void testSimpleNameFilter() {
+    List<String> names = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      names.add("name" + i);
+    }
+    SimpleNameFilter filter = SimpleNameFilter.create(names);
+
+    for (String name : names) {
+      assertThat(filter.mightContain(name)).isTrue();
+      assertThat(filter.mightContain(new StringBuilder(name))).isTrue();
+    }
+    int falsePositives = 0;
+    for (int i = 0; i < 10000; i++) {
+      if (filter.mightContain("other" + i)) {
+        falsePositives++;
+      }
+    }
+    assertThat(falsePositives).isLessThan(200);
+    assertThat(SimpleNameFilter.create(ImmutableList.<String>of()).mightContain("name0"))
+        .isFalse();
+  }
+
+  @Test
+  public void testSimpleNameFilter_sharedByCompilationsWithSameClassPath() throws Exception {
+    File guavaJar =
+        new File(ImmutableSet.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+    AnnotatedApiIndex index =
+        AnnotatedApiIndex.fromResource("META-INF/guava-beta-checker/beta-index.bin").get();
+    // Another library's @Beta class in a base package, which the index doesn't cover
+    Path classes = temporaryFolder.newFolder().toPath();
+    Path source = temporaryFolder.newFolder().toPath().resolve("Extra.java");
+    Files.write(
+        source,
+        ImmutableList.of(
+            "package com.google.common.extra;",
+            "@com.google.common.annotations.Beta",
+            "public class Extra {",
+            "  public static void extraMethod() {}",
+            "}"),
+        UTF_8);
+    JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+    assertThat(
+            javac.run(
+                null,
+                null,
+                null,
+                "-proc:none",
+                "-classpath",
+                guavaJar.getPath(),
+                "-d",
+                classes.toString(),
+                source.toString()))
+        .isEqualTo(0);
+    Path extraClass = classes.resolve("com/google/common/extra/Extra.class");
+
+    try (StandardJavaFileManager fileManager = javac.getStandardFileManager(null, null, UTF_8)) {
+      fileManager.setLocationFromPaths(
+          StandardLocation.CLASS_PATH, ImmutableList.of(guavaJar.toPath(), classes));
+      String betaUri =
+          fileManager
+              .getJavaFileForInput(
+                  StandardLocation.CLASS_PATH,
+                  "com.google.common.annotations.Beta",
+                  JavaFileObject.Kind.CLASS)
+              .toUri()
+              .toString();
+      String indexJar = betaUri.substring("jar:".length(), betaUri.indexOf("!/"));
+      ImmutableList<String> basePackages = ImmutableList.of("com.google.common");
+      Set<String> annotations = ImmutableSet.of("Lcom/google/common/annotations/Beta;");
+
+      SimpleNameFilter filter =
+          SimpleNameFilter.forClassPath(index, indexJar, basePackages, annotations, fileManager);
+      assertThat(filter.mightContain("extraMethod")).isTrue();
+      assertThat(filter.mightContain("zip")).isTrue();
+      assertThat(
+              SimpleNameFilter.forClassPath(
+                  index, indexJar, basePackages, annotations, fileManager))
+          .isSameInstanceAs(filter);
+
+      Files.setLastModifiedTime(extraClass, FileTime.fromMillis(0));
+      assertThat(
+              SimpleNameFilter.forClassPath(
+                  index, indexJar, basePackages, annotations, fileManager))
+          .isNotSameInstanceAs(filter);
+    }
+  }
+
+  @Test
+  public void testSourceParameterDescriptor() {
+    assertThat(AnnotatedApiIndex.sourceParameterDescriptor("(I[Ljava/lang/String;)V", false))
+        .isEqualTo("(I[Ljava/lang/String;)");
+    assertThat(AnnotatedApiIndex.sourceParameterDescriptor("(Lcom/example/Outer;J)V", true))
+        .isEqualTo("(J)");
+    assertThat(AnnotatedApiIndex.sourceParameterDescriptor("()V", true)).isEqualTo("()");
+  }
+
+  @Test
+  public void testGenerate_guava() throws Exception {
+    File guavaJar =
+        new File(ImmutableSet.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+
+    AnnotatedApiIndex index =
+        AnnotatedApiIndexGenerator.generate(guavaJar, "com.google.common.annotations.Beta");
+
+    assertThat(index.fingerprint()).startsWith("com.google.guava:guava:");
+    assertThat(index.annotatedApiCount()).isGreaterThan(0);
+    // The index shipped in the checker was generated from the same Guava the tests run against
+    assertThat(AnnotatedApiIndex.fromResource("META-INF/guava-beta-checker/beta-index.bin")
+            .map(AnnotatedApiIndex::fingerprint))
+        .hasValue(index.fingerprint());
+    // Streams.zip is a @Beta method of a non-@Beta class
+    assertThat(index.simpleNames()).contains("zip");
+    assertThat(index.simpleNames()).doesNotContain("ImmutableList");
+    for (String name : index.simpleNames()) {
+      assertThat(index.simpleNameFilter().mightContain(name)).isTrue();
+    }
+  }
+}
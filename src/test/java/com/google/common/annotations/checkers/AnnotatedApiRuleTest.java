@@ -0,0 +1,363 @@
+/*
+ * Copyright (C) 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.annotations.checkers;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.errorprone.BugPattern.SeverityLevel.ERROR;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertThrows;
+
+import com.google.common.collect.ImmutableList;
+import com.google.errorprone.BugPattern;
+import com.google.errorprone.ErrorProneFlags;
+import com.google.testing.compile.JavaFileObjects;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for {@link AnnotatedApiUsageChecker} checking several {@link AnnotatedApiRule}s at once.
+ */
+@RunWith(JUnit4.class)
+public class AnnotatedApiRuleTest {
+
+  /** Checks Guava's {@code @Beta} under its own name and an {@code @Internal} annotation. */
+  @BugPattern(
+      name = "MultiRule",
+      summary = "Annotated API used",
+      explanation = "Annotated API used.",
+      severity = ERROR)
+  public static final class MultiRuleChecker extends AnnotatedApiUsageChecker {
+    public MultiRuleChecker() {
+      this(ErrorProneFlags.empty());
+    }
+
+    public MultiRuleChecker(ErrorProneFlags flags) {
+      super(
+          flags,
+          ImmutableList.of(
+              AnnotatedApiRule.builder("MultiRule")
+                  .addAnnotationTypes("com.google.common.annotations.Beta")
+                  .addBasePackages("com.google.common")
+                  .build(),
+              AnnotatedApiRule.builder("InternalApi")
+                  .addAnnotationTypes("example.annotations.Internal")
+                  .addBasePackages("com.google.common", "example.lib")
+                  .addIgnoredPackages("example.lib.shaded")
+                  .addIgnoredTypes("example.lib.Legacy")
+                  .setMessage("Internal APIs must not be used outside their library")
+                  .build()));
+    }
+  }
+
+  private static final JavaFileObject INTERNAL =
+      JavaFileObjects.forSourceLines(
+          "example.annotations.Internal",
+          "package example.annotations;",
+          "",
+          "public @interface Internal {}");
+
+  private static final JavaFileObject BOTH =
+      JavaFileObjects.forSourceLines(
+          "com.google.common.foo.Both",
+          "package com.google.common.foo;",
+          "",
+          "@com.google.common.annotations.Beta",
+          "@example.annotations.Internal",
+          "public class Both {",
+          "  public static void run() {}",
+          "}");
+
+  private static final JavaFileObject LIB =
+      JavaFileObjects.forSourceLines(
+          "example.lib.Lib",
+          "package example.lib;",
+          "",
+          "import example.annotations.Internal;",
+          "",
+          "public class Lib {",
+          "  @Internal public static void internal() {}",
+          "  @com.google.common.annotations.Beta public static void beta() {}",
+          "}");
+
+  private static final JavaFileObject LEGACY =
+      JavaFileObjects.forSourceLines(
+          "example.lib.Legacy",
+          "package example.lib;",
+          "",
+          "@example.annotations.Internal",
+          "public class Legacy {",
+          "  public static void run() {}",
+          "}");
+
+  private final TestCompiler compiler = new TestCompiler(MultiRuleChecker.class);
+
+  @Test
+  public void testEachRuleReportedUnderItsName() {
+    List<Diagnostic<? extends JavaFileObject>> diagnostics =
+        compiler.compile(
+            BetaCheckerTest.BETA,
+            INTERNAL,
+            BOTH,
+            LIB,
+            LEGACY,
+            JavaFileObjects.forSourceLines(
+                "example.Test",
+                "package example;",
+                "",
+                "import com.google.common.foo.Both;",
+                "import example.lib.Legacy;",
+                "import example.lib.Lib;",
+                "",
+                "public class Test {",
+                "  public static void main(String[] args) {",
+                "    Both.run();", // MultiRule, InternalApi
+                "    Lib.internal();", // InternalApi
+                "    Lib.beta();", // not under com.google.common, so not @Beta for MultiRule
+                "    Legacy.run();", // ignored type
+                "  }",
+                "}"));
+
+    assertThat(findings(diagnostics))
+        .containsExactly("9:MultiRule", "9:InternalApi", "10:InternalApi");
+    assertThat(messages(diagnostics))
+        .contains("[InternalApi] Internal APIs must not be used outside their library");
+  }
+
+  @Test
+  public void testRuleSuppressedByName() {
+    List<Diagnostic<? extends JavaFileObject>> diagnostics =
+        compiler.compile(
+            BetaCheckerTest.BETA,
+            INTERNAL,
+            BOTH,
+            LIB,
+            JavaFileObjects.forSourceLines(
+                "example.Test",
+                "package example;",
+                "",
+                "import com.google.common.foo.Both;",
+                "import example.lib.Lib;",
+                "",
+                "public class Test {",
+                "  @SuppressWarnings(\"InternalApi\")",
+                "  public static void main(String[] args) {",
+                "    Both.run();", // MultiRule
+                "    Lib.internal();",
+                "  }",
+                "",
+                "  @SuppressWarnings(\"MultiRule\")",
+                "  public static void other() {",
+                "    Both.run();",
+                "  }",
+                "}"));
+
+    assertThat(findings(diagnostics)).containsExactly("9:MultiRule");
+  }
+
+  @Test
+  public void testRulePackagesConfiguredByFlags() {
+    TestCompiler compilerWithFlags =
+        new TestCompiler(MultiRuleChecker.class, "-XepOpt:InternalApi:BasePackages=example.other");
+    List<Diagnostic<? extends JavaFileObject>> diagnostics =
+        compilerWithFlags.compile(
+            BetaCheckerTest.BETA,
+            INTERNAL,
+            BOTH,
+            LIB,
+            JavaFileObjects.forSourceLines(
+                "example.Test",
+                "package example;",
+                "",
+                "import com.google.common.foo.Both;",
+                "import example.lib.Lib;",
+                "",
+                "public class Test {",
+                "  public static void main(String[] args) {",
+                "    Both.run();", // MultiRule
+                "    Lib.internal();",
+                "  }",
+                "}"));
+
+    assertThat(findings(diagnostics)).containsExactly("8:MultiRule");
+  }
+
+  private static final JavaFileObject SEVERITY_TEST =
+      JavaFileObjects.forSourceLines(
+          "example.Test",
+          "package example;",
+          "",
+          "import com.google.common.foo.Both;",
+          "",
+          "public class Test {",
+          "  public static void main(String[] args) {",
+          "    Both.run();", // MultiRule, InternalApi
+          "  }",
+          "}");
+
+  @Test
+  public void testRuleSeverityConfiguredByFlags() {
+    TestCompiler warningCompiler =
+        new TestCompiler(MultiRuleChecker.class, "-XepOpt:InternalApi:Severity=WARN");
+    List<Diagnostic<? extends JavaFileObject>> diagnostics =
+        warningCompiler.compile(BetaCheckerTest.BETA, INTERNAL, BOTH, SEVERITY_TEST);
+
+    assertThat(findings(diagnostics)).containsExactly("7:MultiRule", "7:InternalApi");
+    for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics) {
+      assertThat(diagnostic.getKind())
+          .isEqualTo(
+              diagnostic.getMessage(Locale.US).startsWith("[InternalApi]")
+                  ? Diagnostic.Kind.WARNING
+                  : Diagnostic.Kind.ERROR);
+    }
+
+    TestCompiler offCompiler =
+        new TestCompiler(MultiRuleChecker.class, "-XepOpt:InternalApi:Severity=OFF");
+    assertThat(findings(offCompiler.compile(BetaCheckerTest.BETA, INTERNAL, BOTH, SEVERITY_TEST)))
+        .containsExactly("7:MultiRule");
+  }
+
+  @Test
+  public void testFindingsFileLevelsFollowReportedSeverities() throws IOException {
+    Path findingsFile = Files.createTempFile("multi-rule-findings", ".sarif");
+    try {
+      TestCompiler compilerWithFindings =
+          new TestCompiler(
+              MultiRuleChecker.class,
+              "-Xep:MultiRule:WARN",
+              "-XepOpt:InternalApi:Severity=SUGGESTION",
+              "-XepOpt:MultiRule:FindingsFile=" + findingsFile);
+      List<Diagnostic<? extends JavaFileObject>> diagnostics =
+          compilerWithFindings.compile(BetaCheckerTest.BETA, INTERNAL, BOTH, SEVERITY_TEST);
+
+      assertThat(findings(diagnostics)).containsExactly("7:MultiRule", "7:InternalApi");
+      String sarif = new String(Files.readAllBytes(findingsFile), UTF_8);
+      assertThat(sarif).contains("{\"ruleId\":\"MultiRule\",\"level\":\"warning\",");
+      assertThat(sarif).contains("{\"ruleId\":\"InternalApi\",\"level\":\"note\",");
+      assertThat(sarif).doesNotContain("\"level\":\"error\"");
+    } finally {
+      Files.delete(findingsFile);
+    }
+  }
+
+  @Test
+  public void testRuleIgnoredPackagesFlagAddsToRule() {
+    TestCompiler compilerWithFlags =
+        new TestCompiler(
+            MultiRuleChecker.class, "-XepOpt:InternalApi:IgnoredPackages=example.lib.vendored");
+    List<Diagnostic<? extends JavaFileObject>> diagnostics =
+        compilerWithFlags.compile(
+            INTERNAL,
+            LIB,
+            JavaFileObjects.forSourceLines(
+                "example.lib.shaded.Shaded",
+                "package example.lib.shaded;",
+                "",
+                "@example.annotations.Internal",
+                "public class Shaded {}"),
+            JavaFileObjects.forSourceLines(
+                "example.lib.vendored.Vendored",
+                "package example.lib.vendored;",
+                "",
+                "@example.annotations.Internal",
+                "public class Vendored {}"),
+            JavaFileObjects.forSourceLines(
+                "example.Test",
+                "package example;",
+                "",
+                "public class Test {",
+                "  public static void main(String[] args) {",
+                "    new example.lib.shaded.Shaded();",
+                "    new example.lib.vendored.Vendored();",
+                "    example.lib.Lib.internal();", // InternalApi
+                "  }",
+                "}"));
+
+    assertThat(findings(diagnostics)).containsExactly("7:InternalApi");
+  }
+
+  @Test
+  public void testSummaryPerRule() {
+    TestCompiler summaryCompiler =
+        new TestCompiler(MultiRuleChecker.class, "-XepOpt:MultiRule:Summary=true");
+    List<Diagnostic<? extends JavaFileObject>> diagnostics =
+        summaryCompiler.compile(
+            BetaCheckerTest.BETA,
+            INTERNAL,
+            BOTH,
+            LIB,
+            JavaFileObjects.forSourceLines(
+                "example.Test",
+                "package example;",
+                "",
+                "import com.google.common.foo.Both;",
+                "import example.lib.Lib;",
+                "",
+                "public class Test {",
+                "  public static void main(String[] args) {",
+                "    Lib.internal();", // InternalApi
+                "    Both.run();", // MultiRule
+                "    Both.run();",
+                "  }",
+                "}"));
+
+    assertThat(findings(diagnostics)).containsExactly("9:MultiRule", "8:InternalApi");
+    assertThat(messages(diagnostics))
+        .contains("[MultiRule] 2 usages of 1 @Beta API in this file:");
+    assertThat(messages(diagnostics))
+        .contains("[InternalApi] 3 usages of 2 @Internal APIs in this file:");
+  }
+
+  @Test
+  public void testBuilderValidation() {
+    assertThrows(
+        IllegalStateException.class,
+        () -> AnnotatedApiRule.builder("NoAnnotations").addBasePackages("example").build());
+    assertThrows(
+        IllegalStateException.class,
+        () -> AnnotatedApiRule.builder("NoPackages").addAnnotationTypes("example.A").build());
+    assertThrows(IllegalArgumentException.class, () -> AnnotatedApiRule.builder(""));
+  }
+
+  /** Returns each diagnostic as "line:RuleName". */
+  private static List<String> findings(List<Diagnostic<? extends JavaFileObject>> diagnostics) {
+    List<String> findings = new ArrayList<>();
+    for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics) {
+      String message = diagnostic.getMessage(Locale.US);
+      String rule = message.substring(message.indexOf('[') + 1, message.indexOf(']'));
+      findings.add(diagnostic.getLineNumber() + ":" + rule);
+    }
+    return findings;
+  }
+
+  /** Returns the first line of each diagnostic's message. */
+  private static List<String> messages(List<Diagnostic<? extends JavaFileObject>> diagnostics) {
+    List<String> messages = new ArrayList<>();
+    for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics) {
+      messages.add(diagnostic.getMessage(Locale.US).split("\n", -1)[0].trim());
+    }
+    return messages;
+  }
+}
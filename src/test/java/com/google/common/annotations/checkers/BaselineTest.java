@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.annotations.checkers;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for {@link Baseline}.
+ */
+@RunWith(JUnit4.class)
+public class BaselineTest {
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testLoad() throws Exception {
+    Path file = temporaryFolder.newFile("baseline.txt").toPath();
+    Files.write(
+        file,
+        ImmutableList.of(
+            "# file\tmember\tAPI",
+            "",
+            Baseline.entry("a/A.java", "a.A#foo()", "com.google.common.X"),
+            Baseline.entry("a/A.java", "a.A#foo()", "com.google.common.X")),
+        UTF_8);
+
+    Baseline baseline = Baseline.load(file);
+
+    assertThat(baseline.size()).isEqualTo(1);
+    assertThat(baseline.contains("a/A.java", "a.A#foo()", "com.google.common.X")).isTrue();
+    assertThat(baseline.contains("a/A.java", "a.A#bar()", "com.google.common.X")).isFalse();
+    assertThat(baseline.contains("a/A.java\ta.A#foo()", "", "com.google.common.X")).isFalse();
+  }
+
+  @Test
+  public void testUpdate_replacesOnlyCompiledFiles() throws Exception {
+    Path file = temporaryFolder.getRoot().toPath().resolve("sub/baseline.txt");
+
+    Baseline.update(
+        file,
+        ImmutableSet.of("a/A.java", "b/B.java"),
+        ImmutableList.of(
+            Baseline.entry("b/B.java", "b.B", "com.google.common.Y"),
+            Baseline.entry("a/A.java", "a.A", "com.google.common.X")));
+    Baseline.update(
+        file,
+        ImmutableSet.of("a/A.java"),
+        ImmutableList.of(Baseline.entry("a/A.java", "a.A#bar()", "com.google.common.Z")));
+
+    assertThat(Files.readAllLines(file, UTF_8))
+        .containsExactly(
+            "# file\tmember\tAPI",
+            Baseline.entry("a/A.java", "a.A#bar()", "com.google.common.Z"),
+            Baseline.entry("b/B.java", "b.B", "com.google.common.Y"))
+        .inOrder();
+  }
+
+  @Test
+  public void testUpdate_concurrentUpdatesAreAllKept() throws Exception {
+    Path file = temporaryFolder.getRoot().toPath().resolve("baseline.txt");
+    int compilations = 8;
+    ExecutorService executor = Executors.newFixedThreadPool(compilations);
+    try {
+      List<Future<?>> updates = new ArrayList<>();
+      for (int i = 0; i < compilations; i++) {
+        String fileName = "p/F" + i + ".java";
+        updates.add(
+            executor.submit(
+                () -> {
+                  Baseline.update(
+                      file,
+                      ImmutableSet.of(fileName),
+                      ImmutableList.of(Baseline.entry(fileName, "p.F", "com.google.common.X")));
+                  return null;
+                }));
+      }
+      for (Future<?> update : updates) {
+        update.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    // Every compilation's entry survives the others' read-merge-write
+    assertThat(Files.readAllLines(file, UTF_8)).hasSize(compilations + 1);
+    try (Stream<Path> files = Files.list(file.getParent())) {
+      assertThat(files.filter(f -> f.toString().endsWith(".tmp")).count()).isEqualTo(0);
+    }
+  }
+}
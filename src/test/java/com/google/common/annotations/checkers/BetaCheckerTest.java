@@ -17,9 +17,21 @@
 package com.google.common.annotations.checkers;
 
 import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assume.assumeFalse;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
+import com.google.common.collect.ImmutableList;
 import com.google.testing.compile.JavaFileObjects;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.tools.Diagnostic;
 import javax.tools.JavaFileObject;
 import org.junit.Test;
@@ -102,339 +114,330 @@ public class BetaCheckerTest {
     assertThat(diagnostics).isEmpty();
   }
 
-  @Test
-  public void testAnnotatedClass_asParameter() {
-    List<Diagnostic<? extends JavaFileObject>> diagnostics = compiler.compile(
-        BETA, ANNOTATED_CLASS,
+  /**
+   * The annotated class cases below are compiled together in one batch. Each case is in its own
+   * package, so its source lines are numbered as if it were in package {@code example}.
+   */
+  private static final TestCompiler.Batch ANNOTATED_CLASS_CASES =
+      new TestCompiler(BetaChecker.class).newBatch(BETA, ANNOTATED_CLASS);
+
+  /**
+   * Adds the given lines, following a package declaration, to the batch of annotated class cases
+   * and returns the source's file name.
+   */
+  private static String annotatedClassCase(String name, String... lines) {
+    String packageName = "example." + name.toLowerCase(Locale.ROOT);
+    return ANNOTATED_CLASS_CASES.add(
         JavaFileObjects.forSourceLines(
-            "example.Test",
-            "package example;",
-            "",
-            "import com.google.common.foo.AnnotatedClass;",
-            "",
-            "public class Test {",
-            "  public static void foo(AnnotatedClass annotated) {", // error
-            "  }",
-            "}")
-    );
+            packageName + ".Test",
+            ImmutableList.<String>builder()
+                .add("package " + packageName + ";")
+                .add(lines)
+                .build()));
+  }
 
-    compiler.assertErrorsOnLines("example/Test.java", diagnostics, 6);
+  private void assertAnnotatedClassErrorsOnLines(String file, long... lines) {
+    compiler.assertErrorsOnLines(file, ANNOTATED_CLASS_CASES.diagnostics(file), lines);
   }
 
+  private static final String ANNOTATED_CLASS_AS_PARAMETER =
+      annotatedClassCase(
+          "asParameter",
+          "",
+          "import com.google.common.foo.AnnotatedClass;",
+          "",
+          "public class Test {",
+          "  public static void foo(AnnotatedClass annotated) {", // error
+          "  }",
+          "}");
+
   @Test
-  public void testAnnotatedClass_asTypeArgument() {
-    List<Diagnostic<? extends JavaFileObject>> diagnostics = compiler.compile(
-        BETA, ANNOTATED_CLASS,
-        JavaFileObjects.forSourceLines(
-            "example.Test",
-            "package example;",
-            "",
-            "import com.google.common.foo.AnnotatedClass;",
-            "",
-            "import java.util.List;",
-            "",
-            "public class Test {",
-            "  public static void foo(List<AnnotatedClass> stuff) {", // error
-            "  }",
-            "}")
-    );
+  public void testAnnotatedClass_asParameter() {
+    assertAnnotatedClassErrorsOnLines(ANNOTATED_CLASS_AS_PARAMETER, 6);
+  }
 
-    compiler.assertErrorsOnLines("example/Test.java", diagnostics, 8);
+  private static final String ANNOTATED_CLASS_AS_TYPE_ARGUMENT =
+      annotatedClassCase(
+          "asTypeArgument",
+          "",
+          "import com.google.common.foo.AnnotatedClass;",
+          "",
+          "import java.util.List;",
+          "",
+          "public class Test {",
+          "  public static void foo(List<AnnotatedClass> stuff) {", // error
+          "  }",
+          "}");
+
+  @Test
+  public void testAnnotatedClass_asTypeArgument() {
+    assertAnnotatedClassErrorsOnLines(ANNOTATED_CLASS_AS_TYPE_ARGUMENT, 8);
   }
 
+  private static final String ANNOTATED_CLASS_EXTENDING =
+      annotatedClassCase(
+          "extending",
+          "",
+          "import com.google.common.foo.AnnotatedClass;",
+          "",
+          "public class Test extends AnnotatedClass {", // error
+          "}");
+
   @Test
   public void testAnnotatedClass_extending() {
-    List<Diagnostic<? extends JavaFileObject>> diagnostics = compiler.compile(
-        BETA, ANNOTATED_CLASS,
-        JavaFileObjects.forSourceLines(
-            "example.Test",
-            "package example;",
-            "",
-            "import com.google.common.foo.AnnotatedClass;",
-            "",
-            "public class Test extends AnnotatedClass {", // error
-            "}")
-    );
-
-    compiler.assertErrorsOnLines("example/Test.java", diagnostics, 5);
+    assertAnnotatedClassErrorsOnLines(ANNOTATED_CLASS_EXTENDING, 5);
   }
 
+  private static final String ANNOTATED_CLASS_EXTENDING_GENERATED_SUPER_CALL_IS_NOT_MATCHED =
+      annotatedClassCase(
+          "extending_generatedSuperCallIsNotMatched",
+          "",
+          "import com.google.common.foo.AnnotatedClass;",
+          "",
+          "public class Test extends AnnotatedClass {", // error
+          "",
+          "  private final String foo;",
+          "",
+          "  public Test(String foo) {", // no error for implicit super() here
+          "    this.foo = foo;",
+          "  }",
+          "}");
+
   @Test
   public void testAnnotatedClass_extending_generatedSuperCallIsNotMatched() {
-    List<Diagnostic<? extends JavaFileObject>> diagnostics = compiler.compile(
-        BETA, ANNOTATED_CLASS,
-        JavaFileObjects.forSourceLines(
-            "example.Test",
-            "package example;",
-            "",
-            "import com.google.common.foo.AnnotatedClass;",
-            "",
-            "public class Test extends AnnotatedClass {", // error
-            "",
-            "  private final String foo;",
-            "",
-            "  public Test(String foo) {", // no error for implicit super() here
-            "    this.foo = foo;",
-            "  }",
-            "}")
-    );
-
-    compiler.assertErrorsOnLines("example/Test.java", diagnostics, 5);
+    assertAnnotatedClassErrorsOnLines(
+        ANNOTATED_CLASS_EXTENDING_GENERATED_SUPER_CALL_IS_NOT_MATCHED, 5);
   }
 
+  private static final String ANNOTATED_CLASS_AS_BOUND_IN_GENERIC_TYPE =
+      annotatedClassCase(
+          "asBoundInGenericType",
+          "",
+          "import com.google.common.foo.AnnotatedClass;",
+          "",
+          "public class Test<T extends AnnotatedClass> {", // error
+          "}");
+
   @Test
   public void testAnnotatedClass_asBoundInGenericType() {
-    List<Diagnostic<? extends JavaFileObject>> diagnostics = compiler.compile(
-        BETA, ANNOTATED_CLASS,
-        JavaFileObjects.forSourceLines("example.Test",
-            "package example;",
-            "",
-            "import com.google.common.foo.AnnotatedClass;",
-            "",
-            "public class Test<T extends AnnotatedClass> {", // error
-            "}")
-    );
-
-    compiler.assertErrorsOnLines("example/Test.java", diagnostics, 5);
+    assertAnnotatedClassErrorsOnLines(ANNOTATED_CLASS_AS_BOUND_IN_GENERIC_TYPE, 5);
   }
 
+  private static final String ANNOTATED_CLASS_AS_TYPE_ARG_IN_IMPLEMENTED_GENERIC_INTERFACE =
+      annotatedClassCase(
+          "asTypeArgInImplementedGenericInterface",
+          "",
+          "import com.google.common.foo.AnnotatedClass;",
+          "",
+          "import java.util.List;",
+          "",
+          "public abstract class Test implements List<AnnotatedClass> {", // error
+          "}");
+
   @Test
   public void testAnnotatedClass_asTypeArgInImplementedGenericInterface() {
-    List<Diagnostic<? extends JavaFileObject>> diagnostics = compiler.compile(
-        BETA, ANNOTATED_CLASS,
-        JavaFileObjects.forSourceLines("example.Test",
-            "package example;",
-            "",
-            "import com.google.common.foo.AnnotatedClass;",
-            "",
-            "import java.util.List;",
-            "",
-            "public abstract class Test implements List<AnnotatedClass> {", // error
-            "}")
-    );
-
-    compiler.assertErrorsOnLines("example/Test.java", diagnostics, 7);
+    assertAnnotatedClassErrorsOnLines(
+        ANNOTATED_CLASS_AS_TYPE_ARG_IN_IMPLEMENTED_GENERIC_INTERFACE, 7);
   }
 
+  private static final String ANNOTATED_CLASS_AS_BOUND_IN_GENERIC_METHOD =
+      annotatedClassCase(
+          "asBoundInGenericMethod",
+          "",
+          "import com.google.common.foo.AnnotatedClass;",
+          "",
+          "public class Test {",
+          "  public static <T extends AnnotatedClass> T foo(T t) {", // error
+          "    return null;",
+          "  }",
+          "}");
+
   @Test
   public void testAnnotatedClass_asBoundInGenericMethod() {
-    List<Diagnostic<? extends JavaFileObject>> diagnostics = compiler.compile(
-        BETA, ANNOTATED_CLASS,
-        JavaFileObjects.forSourceLines("example.Test",
-            "package example;",
-            "",
-            "import com.google.common.foo.AnnotatedClass;",
-            "",
-            "public class Test {",
-            "  public static <T extends AnnotatedClass> T foo(T t) {", // error
-            "    return null;",
-            "  }",
-            "}")
-    );
-
-    compiler.assertErrorsOnLines("example/Test.java", diagnostics, 6);
+    assertAnnotatedClassErrorsOnLines(ANNOTATED_CLASS_AS_BOUND_IN_GENERIC_METHOD, 6);
   }
 
+  private static final String ANNOTATED_CLASS_AS_BOUND_IN_GENERIC_PARAMETER =
+      annotatedClassCase(
+          "asBoundInGenericParameter",
+          "",
+          "import com.google.common.foo.AnnotatedClass;",
+          "",
+          "import java.util.List;",
+          "",
+          "public class Test {",
+          "  public static void foo(List<? super AnnotatedClass> list) {", // error
+          "  }",
+          "}");
+
   @Test
   public void testAnnotatedClass_asBoundInGenericParameter() {
-    List<Diagnostic<? extends JavaFileObject>> diagnostics = compiler.compile(
-        BETA, ANNOTATED_CLASS,
-        JavaFileObjects.forSourceLines("example.Test",
-            "package example;",
-            "",
-            "import com.google.common.foo.AnnotatedClass;",
-            "",
-            "import java.util.List;",
-            "",
-            "public class Test {",
-            "  public static void foo(List<? super AnnotatedClass> list) {", // error
-            "  }",
-            "}")
-    );
-
-    compiler.assertErrorsOnLines("example/Test.java", diagnostics, 8);
+    assertAnnotatedClassErrorsOnLines(ANNOTATED_CLASS_AS_BOUND_IN_GENERIC_PARAMETER, 8);
   }
 
+  private static final String ANNOTATED_CLASS_INSTANTIATION =
+      annotatedClassCase(
+          "instantiation",
+          "",
+          "import com.google.common.foo.AnnotatedClass;",
+          "",
+          "public class Test {",
+          "  public static void main(String[] args) {",
+          "    System.out.println(new AnnotatedClass());", // error
+          "  }",
+          "}");
+
   @Test
   public void testAnnotatedClass_instantiation() {
-    List<Diagnostic<? extends JavaFileObject>> diagnostics = compiler.compile(
-        BETA, ANNOTATED_CLASS,
-        JavaFileObjects.forSourceLines("example.Test",
-            "package example;",
-            "",
-            "import com.google.common.foo.AnnotatedClass;",
-            "",
-            "public class Test {",
-            "  public static void main(String[] args) {",
-            "    System.out.println(new AnnotatedClass());", // error
-            "  }",
-            "}")
-    );
-
-    compiler.assertErrorsOnLines("example/Test.java", diagnostics, 7);
+    assertAnnotatedClassErrorsOnLines(ANNOTATED_CLASS_INSTANTIATION, 7);
   }
 
+  private static final String ANNOTATED_CLASS_STATIC_METHOD_CALL =
+      annotatedClassCase(
+          "staticMethodCall",
+          "",
+          "import com.google.common.foo.AnnotatedClass;",
+          "",
+          "public class Test {",
+          "  public static void main(String[] args) {",
+          "    AnnotatedClass.staticMethod();", // error
+          "  }",
+          "}");
+
   @Test
   public void testAnnotatedClass_staticMethodCall() {
-    List<Diagnostic<? extends JavaFileObject>> diagnostics = compiler.compile(
-        BETA, ANNOTATED_CLASS,
-        JavaFileObjects.forSourceLines("example.Test",
-            "package example;",
-            "",
-            "import com.google.common.foo.AnnotatedClass;",
-            "",
-            "public class Test {",
-            "  public static void main(String[] args) {",
-            "    AnnotatedClass.staticMethod();", // 2 errors
-            "  }",
-            "}")
-    );
-
-    compiler.assertErrorsOnLines("example/Test.java", diagnostics, 7, 7);
+    assertAnnotatedClassErrorsOnLines(ANNOTATED_CLASS_STATIC_METHOD_CALL, 7);
   }
 
+  private static final String ANNOTATED_CLASS_INSTANCE_METHOD_CALL =
+      annotatedClassCase(
+          "instanceMethodCall",
+          "",
+          "import com.google.common.foo.AnnotatedClass;",
+          "",
+          "public class Test {",
+          "  public static void foo(AnnotatedClass a) {", // error
+          "    a.instanceMethod();", // error
+          "  }",
+          "}");
+
   @Test
   public void testAnnotatedClass_instanceMethodCall() {
-    List<Diagnostic<? extends JavaFileObject>> diagnostics = compiler.compile(
-        BETA, ANNOTATED_CLASS,
-        JavaFileObjects.forSourceLines("example.Test",
-            "package example;",
-            "",
-            "import com.google.common.foo.AnnotatedClass;",
-            "",
-            "public class Test {",
-            "  public static void foo(AnnotatedClass a) {", // error
-            "    a.instanceMethod();", // error
-            "  }",
-            "}")
-    );
-
-    compiler.assertErrorsOnLines("example/Test.java", diagnostics, 6, 7);
+    assertAnnotatedClassErrorsOnLines(ANNOTATED_CLASS_INSTANCE_METHOD_CALL, 6, 7);
   }
 
+  private static final String ANNOTATED_CLASS_STATIC_METHOD_CALL_FROM_STATIC_IMPORT =
+      annotatedClassCase(
+          "staticMethodCall_fromStaticImport",
+          "",
+          "import static com.google.common.foo.AnnotatedClass.staticMethod;",
+          "",
+          "public class Test {",
+          "  public static void main(String[] args) {",
+          "    staticMethod();", // error
+          "  }",
+          "}");
+
   @Test
   public void testAnnotatedClass_staticMethodCall_fromStaticImport() {
-    List<Diagnostic<? extends JavaFileObject>> diagnostics = compiler.compile(
-        BETA, ANNOTATED_CLASS,
-        JavaFileObjects.forSourceLines("example.Test",
-            "package example;",
-            "",
-            "import static com.google.common.foo.AnnotatedClass.staticMethod;",
-            "",
-            "public class Test {",
-            "  public static void main(String[] args) {",
-            "    staticMethod();", // error
-            "  }",
-            "}")
-    );
-
-    compiler.assertErrorsOnLines("example/Test.java", diagnostics, 7);
+    assertAnnotatedClassErrorsOnLines(ANNOTATED_CLASS_STATIC_METHOD_CALL_FROM_STATIC_IMPORT, 7);
   }
 
+  private static final String ANNOTATED_CLASS_STATIC_METHOD_CALL_FROM_INSTANCE_VARIABLE =
+      annotatedClassCase(
+          "staticMethodCall_fromInstanceVariable",
+          "",
+          "import com.google.common.foo.AnnotatedClass;",
+          "",
+          "public class Test {",
+          "  public static void foo(AnnotatedClass a) {", // error
+          "    a.staticMethod();", // error
+          "  }",
+          "}");
+
   @Test
   public void testAnnotatedClass_staticMethodCall_fromInstanceVariable() {
-    List<Diagnostic<? extends JavaFileObject>> diagnostics = compiler.compile(
-        BETA, ANNOTATED_CLASS,
-        JavaFileObjects.forSourceLines("example.Test",
-            "package example;",
-            "",
-            "import com.google.common.foo.AnnotatedClass;",
-            "",
-            "public class Test {",
-            "  public static void foo(AnnotatedClass a) {", // error
-            "    a.staticMethod();", // error
-            "  }",
-            "}")
-    );
-
-    compiler.assertErrorsOnLines("example/Test.java", diagnostics, 6, 7);
+    assertAnnotatedClassErrorsOnLines(
+        ANNOTATED_CLASS_STATIC_METHOD_CALL_FROM_INSTANCE_VARIABLE, 6, 7);
   }
 
+  private static final String ANNOTATED_CLASS_FULLY_QUALIFIED_REFERENCES =
+      annotatedClassCase(
+          "fullyQualifiedReferences",
+          "",
+          "public class Test {",
+          "  public static void foo(com.google.common.foo.AnnotatedClass parameter) {", // error
+          "    com.google.common.foo.AnnotatedClass c = ", // error
+          "        new com.google.common.foo.AnnotatedClass();", // error
+          "    String s = com.google.common.foo.AnnotatedClass.staticMethod();", // error
+          "  }",
+          "}");
+
   @Test
   public void testAnnotatedClass_fullyQualifiedReferences() {
-    List<Diagnostic<? extends JavaFileObject>> diagnostics = compiler.compile(
-        BETA, ANNOTATED_CLASS,
-        JavaFileObjects.forSourceLines("example.Test",
-            "package example;",
-            "",
-            "public class Test {",
-            "  public static void foo(com.google.common.foo.AnnotatedClass parameter) {", // error
-            "    com.google.common.foo.AnnotatedClass c = ", // error
-            "        new com.google.common.foo.AnnotatedClass();", // error
-            "    String s = com.google.common.foo.AnnotatedClass.staticMethod();", // 2 errors
-            "  }",
-            "}")
-    );
-
-    compiler.assertErrorsOnLines("example/Test.java", diagnostics, 4, 5, 6, 7, 7);
+    assertAnnotatedClassErrorsOnLines(ANNOTATED_CLASS_FULLY_QUALIFIED_REFERENCES, 4, 5, 6, 7);
   }
 
+  private static final String ANNOTATED_CLASS_IMPORTS_ARE_NOT_MATCHED =
+      annotatedClassCase(
+          "importsAreNotMatched",
+          "",
+          "import static com.google.common.foo.AnnotatedClass.staticMethod;",
+          "",
+          "import com.google.common.foo.AnnotatedClass;",
+          "",
+          "public class Test {",
+          "  public static void foo() {",
+          "    AnnotatedClass c = new AnnotatedClass();", // 2 errors
+          "    String s = staticMethod();", // error
+          "  }",
+          "}");
+
   @Test
   public void testAnnotatedClass_importsAreNotMatched() {
-    List<Diagnostic<? extends JavaFileObject>> diagnostics = compiler.compile(
-        BETA, ANNOTATED_CLASS,
-        JavaFileObjects.forSourceLines("example.Test",
-            "package example;",
-            "",
-            "import static com.google.common.foo.AnnotatedClass.staticMethod;",
-            "",
-            "import com.google.common.foo.AnnotatedClass;",
-            "",
-            "public class Test {",
-            "  public static void foo() {",
-            "    AnnotatedClass c = new AnnotatedClass();", // 2 errors
-            "    String s = staticMethod();", // error
-            "  }",
-            "}")
-    );
-
-    compiler.assertErrorsOnLines("example/Test.java", diagnostics, 9, 9, 10);
+    assertAnnotatedClassErrorsOnLines(ANNOTATED_CLASS_IMPORTS_ARE_NOT_MATCHED, 9, 9, 10);
   }
 
+  private static final String ANNOTATED_CLASS_METHOD_REFERENCE =
+      annotatedClassCase(
+          "methodReference",
+          "",
+          "import static java.util.stream.Collectors.joining;",
+          "",
+          "import com.google.common.foo.AnnotatedClass;",
+          "import java.util.List;",
+          "",
+          "public class Test {",
+          "  public static void foo(List<? extends AnnotatedClass> list) {", // error
+          "    String s = list.stream()",
+          "        .map(AnnotatedClass::instanceMethod)", // error
+          "        .collect(joining(", "));",
+          "  }",
+          "}");
+
   @Test
   public void testAnnotatedClass_methodReference() {
-    List<Diagnostic<? extends JavaFileObject>> diagnostics = compiler.compile(
-        BETA, ANNOTATED_CLASS,
-        JavaFileObjects.forSourceLines("example.Test",
-            "package example;",
-            "",
-            "import static java.util.stream.Collectors.joining;",
-            "",
-            "import com.google.common.foo.AnnotatedClass;",
-            "import java.util.List;",
-            "",
-            "public class Test {",
-            "  public static void foo(List<? extends AnnotatedClass> list) {", // error
-            "    String s = list.stream()",
-            "        .map(AnnotatedClass::instanceMethod)", // error
-            "        .collect(joining(", "));",
-            "  }",
-            "}")
-    );
-
-    compiler.assertErrorsOnUniqueLines("example/Test.java", diagnostics, 9, 11);
+    assertAnnotatedClassErrorsOnLines(ANNOTATED_CLASS_METHOD_REFERENCE, 9, 11);
   }
 
+  private static final String ANNOTATED_CLASS_CONSTRUCTOR_REFERENCE =
+      annotatedClassCase(
+          "constructorReference",
+          "",
+          "import com.google.common.foo.AnnotatedClass;",
+          "import java.util.Optional;",
+          "",
+          "public class Test {",
+          "  public static void foo(Optional<AnnotatedClass> optional) {", // error
+          "    String s = optional",
+          "        .orElseGet(AnnotatedClass::new)", // error
+          "        .toString();",
+          "  }",
+          "}");
+
   @Test
   public void testAnnotatedClass_constructorReference() {
-    List<Diagnostic<? extends JavaFileObject>> diagnostics = compiler.compile(
-        BETA, ANNOTATED_CLASS,
-        JavaFileObjects.forSourceLines("example.Test",
-            "package example;",
-            "",
-            "import com.google.common.foo.AnnotatedClass;",
-            "import java.util.Optional;",
-            "",
-            "public class Test {",
-            "  public static void foo(Optional<AnnotatedClass> optional) {", // error
-            "    String s = optional",
-            "        .orElseGet(AnnotatedClass::new)", // error
-            "        .toString();",
-            "  }",
-            "}")
-    );
-
-    compiler.assertErrorsOnUniqueLines("example/Test.java", diagnostics, 7, 9);
+    assertAnnotatedClassErrorsOnLines(ANNOTATED_CLASS_CONSTRUCTOR_REFERENCE, 7, 9);
   }
 
   /**
@@ -618,6 +621,49 @@ public class BetaCheckerTest {
     compiler.assertErrorsOnLines("example/Test.java", diagnostics, 7);
   }
 
+  @Test
+  public void testAnnotatedMembers_repeatedUsages() {
+    List<Diagnostic<? extends JavaFileObject>> diagnostics = compiler.compile(
+        BETA, ANNOTATED_MEMBERS,
+        JavaFileObjects.forSourceLines("example.Test",
+            "package example;",
+            "",
+            "import com.google.common.foo.AnnotatedMembers;",
+            "",
+            "public class Test {",
+            "  public static void foo(AnnotatedMembers instance) {",
+            "    String a = instance.annotatedInstanceMethod();", // error
+            "    String b = instance.instanceMethod();",
+            "    String c = instance.annotatedInstanceMethod();", // error
+            "    String d = instance.instanceMethod();",
+            "    String e = AnnotatedMembers.annotatedStaticMethod();", // error
+            "    String f = AnnotatedMembers.annotatedStaticMethod();", // error
+            "  }",
+            "}")
+    );
+
+    compiler.assertErrorsOnLines("example/Test.java", diagnostics, 7, 9, 11, 12);
+  }
+
+  @Test
+  public void testAnnotatedMembers_qualifierInChain() {
+    List<Diagnostic<? extends JavaFileObject>> diagnostics = compiler.compile(
+        BETA, ANNOTATED_MEMBERS,
+        JavaFileObjects.forSourceLines("example.Test",
+            "package example;",
+            "",
+            "public class Test {",
+            "  public static void foo() {",
+            "    int a = com.google.common.foo.AnnotatedMembers.ANNOTATED_STATIC_FIELD", // error
+            "        .length();",
+            "    int b = com.google.common.foo.AnnotatedMembers.STATIC_FIELD.length();",
+            "  }",
+            "}")
+    );
+
+    compiler.assertErrorsOnLines("example/Test.java", diagnostics, 5);
+  }
+
   @Test
   public void testAnnotatedMembers_methodReference() {
     List<Diagnostic<? extends JavaFileObject>> diagnostics = compiler.compile(
@@ -742,7 +788,652 @@ public class BetaCheckerTest {
     assertThat(diagnostics).isEmpty();
   }
 
-  private static final JavaFileObject IGNORED_TYPE = JavaFileObjects.forSourceLines(
+  @Test
+  public void testUsageByPackage_configuredBasePackages() {
+    TestCompiler compilerWithBasePackages =
+        new TestCompiler(BetaChecker.class, "-XepOpt:BetaApi:BasePackages=com.google.common,foo");
+    List<Diagnostic<? extends JavaFileObject>> diagnostics = compilerWithBasePackages.compile(
+        BETA, CLASS_IN_OTHER_PACKAGE, ANNOTATED_CLASS,
+        JavaFileObjects.forSourceLines("example.Test",
+            "package example;",
+            "",
+            "import com.google.common.foo.AnnotatedClass;",
+            "import foo.ClassInOtherPackage;",
+            "",
+            "public class Test {",
+            "  public static void main(String[] args) {",
+            "    System.out.println(new ClassInOtherPackage());", // error
+            "    System.out.println(new AnnotatedClass());", // error
+            "  }",
+            "}")
+    );
+
+    compilerWithBasePackages.assertErrorsOnLines("example/Test.java", diagnostics, 8, 9);
+  }
+
+  @Test
+  public void testUsageByPackage_ignoredPackages() {
+    TestCompiler compilerWithIgnoredPackages =
+        new TestCompiler(
+            BetaChecker.class,
+            "-XepOpt:BetaApi:IgnoredPackages=com.google.common.foo,com.google.common.foo.bar.baz");
+    List<Diagnostic<? extends JavaFileObject>> diagnostics = compilerWithIgnoredPackages.compile(
+        BETA, ANNOTATED_CLASS,
+        JavaFileObjects.forSourceLines("com.google.common.foo.bar.AnnotatedClass",
+            "package com.google.common.foo.bar;",
+            "",
+            "import com.google.common.annotations.Beta;",
+            "",
+            "@Beta",
+            "public class AnnotatedClass {}"),
+        JavaFileObjects.forSourceLines("example.Test",
+            "package example;",
+            "",
+            "public class Test {",
+            "  public static void main(String[] args) {",
+            "    System.out.println(new com.google.common.foo.AnnotatedClass());",
+            "    System.out.println(new com.google.common.foo.bar.AnnotatedClass());",
+            "  }",
+            "}")
+    );
+
+    assertThat(diagnostics).isEmpty();
+  }
+
+  private static final JavaFileObject CLASS_IN_SIMILARLY_NAMED_PACKAGE =
+      JavaFileObjects.forSourceLines(
+          "com.google.commonx.ClassInSimilarlyNamedPackage",
+          "package com.google.commonx;",
+          "",
+          "import com.google.common.annotations.Beta;",
+          "",
+          "@Beta",
+          "public class ClassInSimilarlyNamedPackage {}");
+
+  @Test
+  public void testUsageByPackage_similarlyNamedPackage_doesNotMatch() {
+    List<Diagnostic<? extends JavaFileObject>> diagnostics = compiler.compile(
+        BETA, ANNOTATED_CLASS, CLASS_IN_SIMILARLY_NAMED_PACKAGE,
+        JavaFileObjects.forSourceLines("example.Test",
+            "package example;",
+            "",
+            "import com.google.common.foo.AnnotatedClass;",
+            "import com.google.commonx.ClassInSimilarlyNamedPackage;",
+            "",
+            "public class Test {",
+            "  public static void main(String[] args) {",
+            "    System.out.println(new ClassInSimilarlyNamedPackage());",
+            "    System.out.println(new AnnotatedClass());", // error
+            "    System.out.println(new ClassInSimilarlyNamedPackage());",
+            "  }",
+            "}")
+    );
+
+    compiler.assertErrorsOnLines("example/Test.java", diagnostics, 9);
+  }
+
+  @Test
+  public void testUsage_otherAnnotationWithSameSimpleName_doesNotMatch() {
+    List<Diagnostic<? extends JavaFileObject>> diagnostics = compiler.compile(
+        BETA,
+        JavaFileObjects.forSourceLines("com.google.common.foo.Beta",
+            "package com.google.common.foo;",
+            "",
+            "public @interface Beta {}"),
+        JavaFileObjects.forSourceLines("com.google.common.foo.NotReallyBeta",
+            "package com.google.common.foo;",
+            "",
+            "@Beta",
+            "public class NotReallyBeta {}"),
+        JavaFileObjects.forSourceLines("example.Test",
+            "package example;",
+            "",
+            "import com.google.common.foo.NotReallyBeta;",
+            "",
+            "public class Test {",
+            "  public static void main(String[] args) {",
+            "    System.out.println(new NotReallyBeta());",
+            "  }",
+            "}")
+    );
+
+    assertThat(diagnostics).isEmpty();
+  }
+
+  /**
+   * A class outside com.google.common that exposes com.google.common types without requiring
+   * its users to import them.
+   */
+  private static final JavaFileObject INDIRECT_ACCESS = JavaFileObjects.forSourceLines(
+      "foo.IndirectAccess",
+      "package foo;",
+      "",
+      "import com.google.common.foo.AnnotatedMembers;",
+      "",
+      "@SuppressWarnings(\"BetaApi\")",
+      "public class IndirectAccess extends AnnotatedMembers {",
+      "  public static AnnotatedMembers get() {",
+      "    return new AnnotatedMembers();",
+      "  }",
+      "}");
+
+  @Test
+  public void testPrefilter_inheritedMembers_areMatched() {
+    TestCompiler compilerWithPrefilter =
+        new TestCompiler(BetaChecker.class, "-XepOpt:BetaApi:CompilationUnitPrefilter=true");
+    List<Diagnostic<? extends JavaFileObject>> diagnostics = compilerWithPrefilter.compile(
+        BETA, ANNOTATED_MEMBERS, INDIRECT_ACCESS,
+        JavaFileObjects.forSourceLines("example.Test",
+            "package example;",
+            "",
+            "public class Test extends foo.IndirectAccess {",
+            "  public String foo() {",
+            "    return annotatedInstanceMethod();", // error
+            "  }",
+            "}")
+    );
+
+    compilerWithPrefilter.assertErrorsOnLines("example/Test.java", diagnostics, 5);
+  }
+
+  private static final JavaFileObject RETURNED_VALUE_TEST = JavaFileObjects.forSourceLines(
+      "example.Test",
+      "package example;",
+      "",
+      "import foo.IndirectAccess;",
+      "",
+      "public class Test {",
+      "  public String foo() {",
+      "    return IndirectAccess.get().annotatedInstanceMethod();", // error
+      "  }",
+      "}");
+
+  @Test
+  public void testMembersOfReturnedValues_areMatchedByDefault() {
+    assumeFalse("The prefilter is turned on for all tests", TestCompiler.prefilterForced());
+    List<Diagnostic<? extends JavaFileObject>> diagnostics =
+        compiler.compile(BETA, ANNOTATED_MEMBERS, INDIRECT_ACCESS, RETURNED_VALUE_TEST);
+
+    compiler.assertErrorsOnLines("example/Test.java", diagnostics, 7);
+  }
+
+  @Test
+  public void testPrefilter_enabled_missesMembersOfReturnedValues() {
+    TestCompiler compilerWithPrefilter =
+        new TestCompiler(BetaChecker.class, "-XepOpt:BetaApi:CompilationUnitPrefilter=true");
+    List<Diagnostic<? extends JavaFileObject>> diagnostics =
+        compilerWithPrefilter.compile(
+            BETA, ANNOTATED_MEMBERS, INDIRECT_ACCESS, RETURNED_VALUE_TEST);
+
+    // Test.java names nothing in com.google.common, so the prefilter skips it
+    assertThat(diagnostics).isEmpty();
+  }
+
+  @Test
+  public void testStatsFile() throws IOException {
+    Path statsFile = Files.createTempFile("beta-checker-stats", ".json");
+    try {
+      TestCompiler compilerWithStats =
+          new TestCompiler(BetaChecker.class, "-XepOpt:BetaApi:StatsFile=" + statsFile);
+      List<Diagnostic<? extends JavaFileObject>> diagnostics = compilerWithStats.compile(
+          BETA, ANNOTATED_MEMBERS,
+          JavaFileObjects.forSourceLines("example.Test",
+              "package example;",
+              "",
+              "import com.google.common.foo.AnnotatedMembers;",
+              "",
+              "public class Test {",
+              "  public static void foo(AnnotatedMembers instance) {",
+              "    System.out.println(instance.annotatedInstanceMethod());", // error
+              "  }",
+              "}")
+      );
+
+      compilerWithStats.assertErrorsOnLines("example/Test.java", diagnostics, 7);
+      String stats = new String(Files.readAllBytes(statsFile), UTF_8);
+      assertThat(stats).contains("\"check\": \"BetaApi\"");
+      assertThat(stats).contains("\"compilationUnits\": {\"checked\": 3, \"skipped\": 0}");
+      assertThat(stats).contains("\"matches\": 1,");
+      assertThat(stats).containsMatch("\"MEMBER_SELECT\": [1-9]");
+      assertThat(stats).containsMatch("\"annotationMirrorLookups\": [1-9]");
+    } finally {
+      Files.delete(statsFile);
+    }
+  }
+
+  private static final JavaFileObject FINDINGS_TEST = JavaFileObjects.forSourceLines(
+      "example.Test",
+      "package example;",
+      "",
+      "import com.google.common.foo.AnnotatedMembers;",
+      "",
+      "public class Test {",
+      "  public static void foo(AnnotatedMembers instance) {",
+      "    System.out.println(instance.annotatedInstanceMethod());", // error
+      "  }",
+      "",
+      "  @SuppressWarnings(\"BetaApi\")",
+      "  public static void bar() {",
+      "    AnnotatedMembers.annotatedStaticMethod();",
+      "  }",
+      "}");
+
+  @Test
+  public void testFindingsFile_jsonl() throws IOException {
+    Path findingsFile = Files.createTempFile("beta-checker-findings", ".jsonl");
+    try {
+      TestCompiler compilerWithFindings =
+          new TestCompiler(BetaChecker.class, "-XepOpt:BetaApi:FindingsFile=" + findingsFile);
+      List<Diagnostic<? extends JavaFileObject>> diagnostics =
+          compilerWithFindings.compile(BETA, ANNOTATED_MEMBERS, FINDINGS_TEST);
+
+      compilerWithFindings.assertErrorsOnLines("example/Test.java", diagnostics, 7);
+      List<String> findings = Files.readAllLines(findingsFile, UTF_8);
+      assertThat(findings).hasSize(1);
+      assertThat(findings.get(0)).containsMatch("^\\{\"file\":\"[^\"]*example/Test.java\",");
+      assertThat(findings.get(0)).contains("\"startLine\":7,\"startColumn\":24,");
+      assertThat(findings.get(0))
+          .contains(
+              "\"rule\":\"BetaApi\","
+                  + "\"api\":\"com.google.common.foo.AnnotatedMembers#annotatedInstanceMethod()\"");
+    } finally {
+      Files.delete(findingsFile);
+    }
+  }
+
+  @Test
+  public void testFindingsFile_sarif() throws IOException {
+    Path findingsFile = Files.createTempFile("beta-checker-findings", ".sarif");
+    try {
+      TestCompiler compilerWithFindings =
+          new TestCompiler(BetaChecker.class, "-XepOpt:BetaApi:FindingsFile=" + findingsFile);
+      List<Diagnostic<? extends JavaFileObject>> diagnostics =
+          compilerWithFindings.compile(BETA, ANNOTATED_MEMBERS, FINDINGS_TEST);
+
+      compilerWithFindings.assertErrorsOnLines("example/Test.java", diagnostics, 7);
+      String sarif = new String(Files.readAllBytes(findingsFile), UTF_8);
+      assertThat(sarif).startsWith("{\"version\":\"2.1.0\",");
+      assertThat(sarif).contains("\"rules\":[{\"id\":\"BetaApi\",");
+      assertThat(sarif).containsMatch("\"uri\":\"[^\"]*example/Test.java\"");
+      assertThat(sarif).contains("\"region\":{\"startLine\":7,\"startColumn\":24");
+      assertThat(sarif.split("\"ruleId\"", -1)).hasLength(2);
+      assertThat(sarif).endsWith("]}]}\n");
+    } finally {
+      Files.delete(findingsFile);
+    }
+  }
+
+  @Test
+  public void testFindingsFile_concurrentCompilations() throws Exception {
+    Path first = Files.createTempFile("beta-checker-findings", ".jsonl");
+    Path second = Files.createTempFile("beta-checker-findings", ".jsonl");
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      List<Future<List<Diagnostic<? extends JavaFileObject>>>> results = new ArrayList<>();
+      for (Path findingsFile : ImmutableList.of(first, second)) {
+        TestCompiler compilerWithFindings =
+            new TestCompiler(BetaChecker.class, "-XepOpt:BetaApi:FindingsFile=" + findingsFile);
+        Callable<List<Diagnostic<? extends JavaFileObject>>> compilation =
+            () -> compilerWithFindings.compile(BETA, ANNOTATED_MEMBERS, FINDINGS_TEST);
+        results.add(executor.submit(compilation));
+      }
+      for (Future<List<Diagnostic<? extends JavaFileObject>>> result : results) {
+        compiler.assertErrorsOnLines("example/Test.java", result.get(), 7);
+      }
+
+      assertThat(Files.readAllLines(first, UTF_8)).hasSize(1);
+      assertThat(Files.readAllLines(second, UTF_8)).hasSize(1);
+    } finally {
+      executor.shutdown();
+      Files.delete(first);
+      Files.delete(second);
+    }
+  }
+
+  private static final JavaFileObject BASELINE_TEST = JavaFileObjects.forSourceLines(
+      "example.Test",
+      "package example;",
+      "",
+      "import com.google.common.foo.AnnotatedMembers;",
+      "",
+      "public class Test {",
+      "  private final String field = AnnotatedMembers.annotatedStaticMethod();",
+      "",
+      "  public static void foo(AnnotatedMembers instance) {",
+      "    String a = instance.annotatedInstanceMethod();",
+      "    String b = AnnotatedMembers.annotatedStaticMethod();",
+      "  }",
+      "}");
+
+  @Test
+  public void testBaseline() throws IOException {
+    Path baseline = Files.createTempFile("beta-checker-baseline", ".txt");
+    try {
+      Files.write(
+          baseline,
+          ImmutableList.of(
+              "# accepted usages",
+              "example/Test.java\texample.Test#field"
+                  + "\tcom.google.common.foo.AnnotatedMembers#annotatedStaticMethod()",
+              "example/Test.java\texample.Test#foo(com.google.common.foo.AnnotatedMembers)"
+                  + "\tcom.google.common.foo.AnnotatedMembers#annotatedInstanceMethod()",
+              "example/Gone.java\texample.Gone#bar()"
+                  + "\tcom.google.common.foo.AnnotatedMembers#annotatedInstanceMethod()"),
+          UTF_8);
+      TestCompiler compilerWithBaseline =
+          new TestCompiler(BetaChecker.class, "-XepOpt:BetaApi:Baseline=" + baseline);
+      List<Diagnostic<? extends JavaFileObject>> diagnostics =
+          compilerWithBaseline.compile(BETA, ANNOTATED_MEMBERS, BASELINE_TEST);
+
+      // Only the usage that isn't in the baseline is reported
+      compilerWithBaseline.assertErrorsOnLines("example/Test.java", diagnostics, 10);
+    } finally {
+      Files.delete(baseline);
+    }
+  }
+
+  @Test
+  public void testBaselineOutput() throws IOException {
+    Path output = Files.createTempFile("beta-checker-baseline", ".txt");
+    try {
+      TestCompiler compilerWithBaselineOutput =
+          new TestCompiler(BetaChecker.class, "-XepOpt:BetaApi:BaselineOutput=" + output);
+      List<Diagnostic<? extends JavaFileObject>> diagnostics =
+          compilerWithBaselineOutput.compile(BETA, ANNOTATED_MEMBERS, BASELINE_TEST);
+
+      compilerWithBaselineOutput.assertErrorsOnLines(
+          "example/Test.java", diagnostics, 6, 9, 10);
+      assertThat(Files.readAllLines(output, UTF_8))
+          .containsExactly(
+              "# file\tmember\tAPI",
+              "example/Test.java\texample.Test#field"
+                  + "\tcom.google.common.foo.AnnotatedMembers#annotatedStaticMethod()",
+              "example/Test.java\texample.Test#foo(com.google.common.foo.AnnotatedMembers)"
+                  + "\tcom.google.common.foo.AnnotatedMembers#annotatedInstanceMethod()",
+              "example/Test.java\texample.Test#foo(com.google.common.foo.AnnotatedMembers)"
+                  + "\tcom.google.common.foo.AnnotatedMembers#annotatedStaticMethod()")
+          .inOrder();
+
+      // Using the output as the baseline accepts everything
+      TestCompiler compilerWithBaseline =
+          new TestCompiler(BetaChecker.class, "-XepOpt:BetaApi:Baseline=" + output);
+      assertThat(compilerWithBaseline.compile(BETA, ANNOTATED_MEMBERS, BASELINE_TEST)).isEmpty();
+    } finally {
+      Files.delete(output);
+    }
+  }
+
+  @Test
+  public void testBaselineOutput_keepsEntriesForFilesNotCompiled() throws IOException {
+    Path output = Files.createTempFile("beta-checker-baseline", ".txt");
+    try {
+      Files.write(
+          output,
+          ImmutableList.of(
+              "# file\tmember\tAPI",
+              "example/Gone.java\texample.Gone#bar()"
+                  + "\tcom.google.common.foo.AnnotatedMembers#annotatedInstanceMethod()",
+              "example/Test.java\texample.Test#removed()"
+                  + "\tcom.google.common.foo.AnnotatedMembers#annotatedInstanceMethod()"),
+          UTF_8);
+      TestCompiler compilerWithBaselineOutput =
+          new TestCompiler(BetaChecker.class, "-XepOpt:BetaApi:BaselineOutput=" + output);
+      compilerWithBaselineOutput.compile(BETA, ANNOTATED_MEMBERS, BASELINE_TEST);
+
+      // Test.java was compiled, so its entries are replaced; Gone.java wasn't, so its are kept
+      assertThat(Files.readAllLines(output, UTF_8))
+          .containsExactly(
+              "# file\tmember\tAPI",
+              "example/Gone.java\texample.Gone#bar()"
+                  + "\tcom.google.common.foo.AnnotatedMembers#annotatedInstanceMethod()",
+              "example/Test.java\texample.Test#field"
+                  + "\tcom.google.common.foo.AnnotatedMembers#annotatedStaticMethod()",
+              "example/Test.java\texample.Test#foo(com.google.common.foo.AnnotatedMembers)"
+                  + "\tcom.google.common.foo.AnnotatedMembers#annotatedInstanceMethod()",
+              "example/Test.java\texample.Test#foo(com.google.common.foo.AnnotatedMembers)"
+                  + "\tcom.google.common.foo.AnnotatedMembers#annotatedStaticMethod()")
+          .inOrder();
+    } finally {
+      Files.delete(output);
+    }
+  }
+
+  @Test
+  public void testChangedLines_ranges() throws IOException {
+    Path changedLines = Files.createTempFile("beta-checker-changed-lines", ".txt");
+    try {
+      Files.write(
+          changedLines,
+          ImmutableList.of("# changed lines", "example/Other.java:1-20", "example/Test.java:9-10"),
+          UTF_8);
+      TestCompiler compilerWithChangedLines =
+          new TestCompiler(BetaChecker.class, "-XepOpt:BetaApi:ChangedLines=" + changedLines);
+      List<Diagnostic<? extends JavaFileObject>> diagnostics =
+          compilerWithChangedLines.compile(BETA, ANNOTATED_MEMBERS, BASELINE_TEST);
+
+      // The usage in the field initializer on line 6 isn't on a changed line
+      compilerWithChangedLines.assertErrorsOnLines("example/Test.java", diagnostics, 9, 10);
+
+      TestCompiler singlePassCompiler =
+          new TestCompiler(
+              BetaChecker.class,
+              "-XepOpt:BetaApi:ChangedLines=" + changedLines,
+              "-XepOpt:BetaApi:SinglePass=true");
+      singlePassCompiler.assertErrorsOnLines(
+          "example/Test.java",
+          singlePassCompiler.compile(BETA, ANNOTATED_MEMBERS, BASELINE_TEST),
+          9,
+          10);
+    } finally {
+      Files.delete(changedLines);
+    }
+  }
+
+  @Test
+  public void testBaselineOutput_leavesOutSuppressedUsages() throws IOException {
+    Path output = Files.createTempFile("beta-checker-baseline", ".txt");
+    try {
+      TestCompiler compilerWithBaselineOutput =
+          new TestCompiler(BetaChecker.class, "-XepOpt:BetaApi:BaselineOutput=" + output);
+      compilerWithBaselineOutput.compile(
+          BETA,
+          ANNOTATED_MEMBERS,
+          JavaFileObjects.forSourceLines(
+              "example.Test",
+              "package example;",
+              "",
+              "import com.google.common.foo.AnnotatedMembers;",
+              "",
+              "public class Test {",
+              "  @SuppressWarnings(\"BetaApi\")",
+              "  public static void foo() {",
+              "    AnnotatedMembers.annotatedStaticMethod();",
+              "  }",
+              "}"));
+
+      assertThat(Files.readAllLines(output, UTF_8)).containsExactly("# file\tmember\tAPI");
+    } finally {
+      Files.delete(output);
+    }
+  }
+
+  @Test
+  public void testChangedLines_diff() throws IOException {
+    Path diff = Files.createTempFile("beta-checker-changed-lines", ".diff");
+    try {
+      Files.write(
+          diff,
+          ImmutableList.of(
+              "diff --git a/example/Test.java b/example/Test.java",
+              "--- a/example/Test.java",
+              "+++ b/example/Test.java",
+              "@@ -5,3 +5,4 @@",
+              " public class Test {",
+              "+  private final String field = AnnotatedMembers.annotatedStaticMethod();",
+              " ",
+              "   public static void foo(AnnotatedMembers instance) {"),
+          UTF_8);
+      TestCompiler compilerWithChangedLines =
+          new TestCompiler(BetaChecker.class, "-XepOpt:BetaApi:ChangedLines=" + diff);
+      List<Diagnostic<? extends JavaFileObject>> diagnostics =
+          compilerWithChangedLines.compile(BETA, ANNOTATED_MEMBERS, BASELINE_TEST);
+
+      compilerWithChangedLines.assertErrorsOnLines("example/Test.java", diagnostics, 6);
+    } finally {
+      Files.delete(diff);
+    }
+  }
+
+  @Test
+  public void testChangedLines_fileNotChanged() throws IOException {
+    Path changedLines = Files.createTempFile("beta-checker-changed-lines", ".txt");
+    try {
+      Files.write(changedLines, ImmutableList.of("example/Other.java:1-20"), UTF_8);
+      TestCompiler compilerWithChangedLines =
+          new TestCompiler(BetaChecker.class, "-XepOpt:BetaApi:ChangedLines=" + changedLines);
+
+      assertThat(compilerWithChangedLines.compile(BETA, ANNOTATED_MEMBERS, BASELINE_TEST))
+          .isEmpty();
+    } finally {
+      Files.delete(changedLines);
+    }
+  }
+
+  @Test
+  public void testSummary() {
+    TestCompiler summaryCompiler =
+        new TestCompiler(BetaChecker.class, "-XepOpt:BetaApi:Summary=true");
+    List<Diagnostic<? extends JavaFileObject>> diagnostics = summaryCompiler.compile(
+        BETA, ANNOTATED_MEMBERS,
+        JavaFileObjects.forSourceLines("example.Test",
+            "package example;",
+            "",
+            "import com.google.common.foo.AnnotatedMembers;",
+            "",
+            "public class Test {",
+            "  public static void foo(AnnotatedMembers instance) {",
+            "    String a = instance.annotatedInstanceMethod();", // error (summary)
+            "    String b = instance.instanceMethod();",
+            "    String c = instance.annotatedInstanceMethod();",
+            "    String d = AnnotatedMembers.annotatedStaticMethod();",
+            "    String e = AnnotatedMembers.annotatedStaticMethod();",
+            "  }",
+            "",
+            "  @SuppressWarnings(\"BetaApi\")",
+            "  public static void bar() {",
+            "    String a = AnnotatedMembers.annotatedStaticMethod();",
+            "  }",
+            "}")
+    );
+
+    summaryCompiler.assertErrorsOnLines("example/Test.java", diagnostics, 7);
+    String message = diagnostics.get(0).getMessage(Locale.US);
+    assertThat(message).contains("4 usages of 2 @Beta APIs in this file:");
+    assertThat(message).contains(
+        "com.google.common.foo.AnnotatedMembers#annotatedInstanceMethod(): 2 usages,"
+            + " first at 7:16");
+    assertThat(message).contains(
+        "com.google.common.foo.AnnotatedMembers#annotatedStaticMethod(): 2 usages,"
+            + " first at 10:16");
+  }
+
+  /**
+   * Non-annotated methods in a com.google.common package that hand out annotated types without
+   * naming them at the call site.
+   */
+  private static final JavaFileObject IMPLICIT_USAGES = JavaFileObjects.forSourceLines(
+      "com.google.common.foo.ImplicitUsages",
+      "package com.google.common.foo;",
+      "",
+      "import com.google.common.annotations.Beta;",
+      "import java.util.Collections;",
+      "import java.util.Iterator;",
+      "import java.util.List;",
+      "",
+      "@SuppressWarnings(\"BetaApi\")",
+      "public class ImplicitUsages {",
+      "  @Beta",
+      "  public interface AnnotatedFunction {",
+      "    String apply(String s);",
+      "  }",
+      "",
+      "  @Beta",
+      "  public static class AnnotatedIterable implements Iterable<String> {",
+      "    @Override",
+      "    public Iterator<String> iterator() {",
+      "      return Collections.emptyIterator();",
+      "    }",
+      "  }",
+      "",
+      "  public static AnnotatedIterable iterable() {",
+      "    return new AnnotatedIterable();",
+      "  }",
+      "",
+      "  public static String apply(AnnotatedFunction function) {",
+      "    return function.apply(\"foo\");",
+      "  }",
+      "",
+      "  public static List<AnnotatedClass> list() {",
+      "    return Collections.emptyList();",
+      "  }",
+      "}");
+
+  private static final JavaFileObject IMPLICIT_USAGES_TEST = JavaFileObjects.forSourceLines(
+      "example.Test",
+      "package example;",
+      "",
+      "import com.google.common.foo.AnnotatedClass;",
+      "import com.google.common.foo.ImplicitUsages;",
+      "",
+      "public class Test {",
+      "  public static void foo() {",
+      "    AnnotatedClass.staticMethod();", // error
+      "    for (String s : ImplicitUsages.iterable()) {", // error with SinglePass
+      "      System.out.println(s);",
+      "    }",
+      "    String result = ImplicitUsages.apply(s -> s);", // error with SinglePass
+      "    var list = ImplicitUsages.list();", // error with SinglePass
+      "    var text = \"\";",
+      "  }",
+      "",
+      "  @SuppressWarnings(\"BetaApi\")",
+      "  public static void bar() {",
+      "    var list = ImplicitUsages.list();",
+      "  }",
+      "}");
+
+  @Test
+  public void testImplicitUsages_notFoundByMatchers() {
+    List<Diagnostic<? extends JavaFileObject>> diagnostics =
+        compiler.compile(BETA, ANNOTATED_CLASS, IMPLICIT_USAGES, IMPLICIT_USAGES_TEST);
+
+    compiler.assertErrorsOnLines("example/Test.java", diagnostics, 8);
+  }
+
+  @Test
+  public void testSinglePass() {
+    TestCompiler singlePassCompiler =
+        new TestCompiler(BetaChecker.class, "-XepOpt:BetaApi:SinglePass=true");
+    List<Diagnostic<? extends JavaFileObject>> diagnostics =
+        singlePassCompiler.compile(BETA, ANNOTATED_CLASS, IMPLICIT_USAGES, IMPLICIT_USAGES_TEST);
+
+    singlePassCompiler.assertErrorsOnLines("example/Test.java", diagnostics, 8, 9, 12, 13);
+  }
+
+  @Test
+  public void testSinglePass_summary() {
+    TestCompiler summaryCompiler =
+        new TestCompiler(
+            BetaChecker.class, "-XepOpt:BetaApi:SinglePass=true", "-XepOpt:BetaApi:Summary=true");
+    List<Diagnostic<? extends JavaFileObject>> diagnostics =
+        summaryCompiler.compile(BETA, ANNOTATED_CLASS, IMPLICIT_USAGES, IMPLICIT_USAGES_TEST);
+
+    summaryCompiler.assertErrorsOnLines("example/Test.java", diagnostics, 8);
+    assertThat(diagnostics.get(0).getMessage(Locale.US))
+        .contains("4 usages of 4 @Beta APIs in this file:");
+  }
+
+  private static final JavaFileObject IGNORED_TYPE =JavaFileObjects.forSourceLines(
       "com.google.common.cache.Cache",
       "package com.google.common.cache;",
       "",
@@ -771,4 +1462,66 @@ public class BetaCheckerTest {
 
     assertThat(diagnostics).isEmpty();
   }
+
+  @Test
+  public void testRealGuava() {
+    // No BETA source here, so the annotations come from the Guava jar on the classpath, which is
+    // the version the precomputed index was built from
+    List<Diagnostic<? extends JavaFileObject>> diagnostics = compiler.compile(
+        JavaFileObjects.forSourceLines("example.Test",
+            "package example;",
+            "",
+            "import com.google.common.collect.ImmutableList;",
+            "import com.google.common.collect.Streams;",
+            "import com.google.common.hash.BloomFilter;",
+            "import java.util.Optional;",
+            "import java.util.stream.Stream;",
+            "",
+            "public class Test {",
+            "  public static void foo(BloomFilter<String> filter) {", // error
+            "    ImmutableList<String> a = ImmutableList.of(\"a\");",
+            "    Stream<String> b = Streams.stream(Optional.of(\"b\"));", // error
+            "  }",
+            "}")
+    );
+
+    compiler.assertErrorsOnLines("example/Test.java", diagnostics, 10, 12);
+  }
+
+  @Test
+  public void testRealGuava_classShadowedFromSource_readsAnnotationMirrors() {
+    // The index matches the Guava jar on the classpath, but says nothing about a class of the same
+    // name compiled from source
+    List<Diagnostic<? extends JavaFileObject>> diagnostics = compiler.compile(
+        JavaFileObjects.forSourceLines("com.google.common.collect.Streams",
+            "package com.google.common.collect;",
+            "",
+            "import com.google.common.annotations.Beta;",
+            "import java.util.Optional;",
+            "import java.util.stream.Stream;",
+            "",
+            "public final class Streams {",
+            "  public static <T> Stream<T> stream(Optional<T> optional) {",
+            "    return null;",
+            "  }",
+            "",
+            "  @Beta",
+            "  public static void notInIndex() {}",
+            "}"),
+        JavaFileObjects.forSourceLines("example.Test",
+            "package example;",
+            "",
+            "import com.google.common.collect.Streams;",
+            "import java.util.Optional;",
+            "",
+            "public class Test {",
+            "  public static void foo() {",
+            "    Streams.stream(Optional.of(\"a\"));", // @Beta in the jar, but not here
+            "    Streams.notInIndex();", // error
+            "  }",
+            "}")
+    );
+
+    compiler.assertErrorsOnLines("example/Test.java", diagnostics, 9);
+  }
 }
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.annotations.checkers;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for {@link ChangedLines}.
+ */
+@RunWith(JUnit4.class)
+public class ChangedLinesTest {
+
+  @Test
+  public void testRanges() {
+    ChangedLines changedLines =
+        ChangedLines.parse(
+            ImmutableList.of(
+                "# changed lines",
+                "",
+                "src/main/java/example/Test.java:12,30-41,40-45",
+                "./src/main/java/example/Other.java:3"));
+
+    ChangedLines.LineRanges ranges = changedLines.forFile("/repo/src/main/java/example/Test.java");
+    assertThat(ranges.intersects(12, 12)).isTrue();
+    assertThat(ranges.intersects(13, 29)).isFalse();
+    assertThat(ranges.intersects(20, 30)).isTrue();
+    assertThat(ranges.intersects(45, 45)).isTrue();
+    assertThat(ranges.intersects(46, 100)).isFalse();
+    assertThat(changedLines.forFile("/repo/src/main/java/example/Other.java").intersects(3, 3))
+        .isTrue();
+    // Paths match whole segments only
+    assertThat(changedLines.forFile("/repo/src/main/java/myexample/Test.java").isEmpty()).isTrue();
+    assertThat(changedLines.forFile("/repo/src/main/java/example/Missing.java").isEmpty()).isTrue();
+  }
+
+  @Test
+  public void testDiff() {
+    ChangedLines changedLines =
+        ChangedLines.parse(
+            ImmutableList.of(
+                "diff --git a/example/Test.java b/example/Test.java",
+                "index 1234567..89abcde 100644",
+                "--- a/example/Test.java",
+                "+++ b/example/Test.java",
+                "@@ -1,4 +1,5 @@",
+                " package example;",
+                "-import a.B;",
+                "+import a.C;",
+                "+import a.D;",
+                " ",
+                " class Test {",
+                "@@ -20 +21,2 @@ class Test {",
+                "--- removed line that looks like a header",
+                "+++ added line that looks like a header",
+                "+  int x;",
+                "\\ No newline at end of file",
+                "diff --git a/example/Deleted.java b/example/Deleted.java",
+                "--- a/example/Deleted.java",
+                "+++ /dev/null",
+                "@@ -1 +0,0 @@",
+                "-class Deleted {}"));
+
+    ChangedLines.LineRanges ranges = changedLines.forFile("/repo/example/Test.java");
+    assertThat(ranges.intersects(1, 1)).isFalse();
+    assertThat(ranges.intersects(2, 2)).isTrue();
+    assertThat(ranges.intersects(3, 3)).isTrue();
+    assertThat(ranges.intersects(4, 20)).isFalse();
+    assertThat(ranges.intersects(21, 21)).isTrue();
+    assertThat(ranges.intersects(22, 22)).isTrue();
+    assertThat(ranges.intersects(23, 23)).isFalse();
+    assertThat(changedLines.forFile("/repo/example/Deleted.java").isEmpty()).isTrue();
+  }
+
+  @Test
+  public void testBadRange() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> ChangedLines.parse(ImmutableList.of("example/Test.java:1-x")));
+  }
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright (C) 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.annotations.checkers;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.testing.compile.JavaFileObjects;
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.ToolProvider;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for {@link ClassFileAuditor}.
+ */
+@RunWith(JUnit4.class)
+public class ClassFileAuditorTest {
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private static final JavaFileObject USES_BETA =
+      JavaFileObjects.forSourceLines(
+          "example.UsesBeta",
+          "package example;",
+          "",
+          "import com.google.common.collect.Streams;",
+          "import com.google.common.io.Files;",
+          "import java.util.stream.Stream;",
+          "",
+          "public class UsesBeta {",
+          "  public static void main(String[] args) {",
+          "    Files.createTempDir();",
+          "    Streams.zip(Stream.of(1), Stream.of(2), Integer::sum);",
+          "    Streams.concat(Stream.of(1));",
+          "  }",
+          "}");
+
+  @Test
+  public void testAudit_directoryAndJar() throws Exception {
+    Path classes = compile(USES_BETA);
+    Path jar = jar(classes);
+    ClassFileAuditor auditor = new ClassFileAuditor(new BetaChecker(), guavaIndex());
+
+    ForkJoinPool pool = new ForkJoinPool(2);
+    try {
+      assertThat(apis(auditor.audit(ImmutableList.of(classes), pool)))
+          .containsExactly(
+              "example.UsesBeta\tcom.google.common.io.Files#createTempDir()",
+              "example.UsesBeta\tcom.google.common.collect.Streams#zip("
+                  + "Ljava/util/stream/Stream;Ljava/util/stream/Stream;"
+                  + "Ljava/util/function/BiFunction;)");
+      assertThat(apis(auditor.audit(ImmutableList.of(jar), pool)))
+          .containsExactlyElementsIn(apis(auditor.audit(ImmutableList.of(classes), pool)));
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testAudit_annotatedClassAndIgnoredTypes() throws Exception {
+    Path classes =
+        compile(
+            JavaFileObjects.forSourceLines(
+                "example.UsesCache",
+                "package example;",
+                "",
+                "import com.google.common.cache.Cache;",
+                "import com.google.common.cache.CacheBuilder;",
+                "import com.google.common.math.Stats;",
+                "",
+                "public class UsesCache {",
+                "  public static void main(String[] args) {",
+                "    Cache<String, String> cache = CacheBuilder.newBuilder().build();",
+                "    cache.put(\"a\", \"b\");",
+                "    Object stats = Stats.class;",
+                "  }",
+                "}"));
+    // Pretend Cache and Stats are annotated, as Cache used to be
+    AnnotatedApiIndex index =
+        AnnotatedApiIndex.create(
+            "com.google.common.annotations.Beta",
+            "test",
+            ImmutableList.of(
+                "com.google.common.cache.Cache",
+                "com.google.common.cache.CacheBuilder",
+                "com.google.common.math.Stats"),
+            ImmutableList.of("com.google.common.cache.Cache", "com.google.common.math.Stats"));
+    ClassFileAuditor auditor = new ClassFileAuditor(new BetaChecker(), index);
+
+    ForkJoinPool pool = new ForkJoinPool(1);
+    try {
+      // BetaChecker ignores Cache, so only the Stats class literal is reported
+      assertThat(apis(auditor.audit(ImmutableList.of(classes), pool)))
+          .containsExactly("example.UsesCache\tcom.google.common.math.Stats");
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testAudit_innerClassConstructorsOnlyForNonStaticMembers() throws Exception {
+    Path classes =
+        compile(
+            JavaFileObjects.forSourceLines(
+                "com.google.common.foo.Outer",
+                "package com.google.common.foo;",
+                "",
+                "public class Outer {",
+                "  public static class Nested {",
+                "    public Nested() {}",
+                "    public Nested(Outer outer) {}",
+                "  }",
+                "",
+                "  public class Inner {",
+                "    public Inner() {}",
+                "  }",
+                "}"),
+            JavaFileObjects.forSourceLines(
+                "example.UsesOuter",
+                "package example;",
+                "",
+                "import com.google.common.foo.Outer;",
+                "",
+                "public class UsesOuter {",
+                "  public static void main(String[] args) {",
+                "    Outer outer = new Outer();",
+                "    new Outer.Nested(outer);",
+                "    outer.new Inner();",
+                "  }",
+                "}"));
+    // Only the no-arg constructors are annotated; Nested(Outer) must not be mistaken for one
+    AnnotatedApiIndex index =
+        AnnotatedApiIndex.create(
+            "com.google.common.annotations.Beta",
+            "test",
+            ImmutableList.of(
+                "com.google.common.foo.Outer",
+                "com.google.common.foo.Outer$Inner",
+                "com.google.common.foo.Outer$Nested"),
+            ImmutableList.of(
+                "com.google.common.foo.Outer$Inner#<init>()",
+                "com.google.common.foo.Outer$Nested#<init>()"));
+    ClassFileAuditor auditor = new ClassFileAuditor(new BetaChecker(), index);
+
+    ForkJoinPool pool = new ForkJoinPool(1);
+    try {
+      assertThat(apis(auditor.audit(ImmutableList.of(classes), pool)))
+          .containsExactly("example.UsesOuter\tcom.google.common.foo.Outer$Inner#<init>()");
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testAudit_cache() throws Exception {
+    Path jar = jar(compile(USES_BETA));
+    Path cacheDirectory = temporaryFolder.newFolder("cache").toPath();
+    ClassFileAuditor auditor = new ClassFileAuditor(new BetaChecker(), guavaIndex());
+    AuditCache cache = new AuditCache(cacheDirectory, Long.MAX_VALUE, auditor.rulesFingerprint());
+    ClassFileAuditor cachingAuditor = auditor.withCache(cache);
+
+    List<String> expected = apis(auditor.auditJar(jar));
+    assertThat(apis(cachingAuditor.auditJar(jar))).isEqualTo(expected);
+    assertThat(apis(cachingAuditor.auditJar(jar))).isEqualTo(expected);
+    assertThat(cache.missCount()).isEqualTo(1);
+    assertThat(cache.hitCount()).isEqualTo(1);
+    assertThat(cachingAuditor.auditJar(jar).get(0).location).startsWith(jar + "!/example/");
+
+    // A damaged entry is audited again and replaced
+    List<Path> entries = entries(cacheDirectory);
+    assertThat(entries).hasSize(1);
+    Files.write(entries.get(0), new byte[] {1, 2, 3});
+    assertThat(apis(cachingAuditor.auditJar(jar))).isEqualTo(expected);
+    assertThat(cache.missCount()).isEqualTo(2);
+    assertThat(apis(cachingAuditor.auditJar(jar))).isEqualTo(expected);
+    assertThat(cache.hitCount()).isEqualTo(3);
+
+    // A jar that was touched is hashed again, finds its entry and gets a new ref
+    Files.setLastModifiedTime(jar, FileTime.fromMillis(0));
+    assertThat(apis(cachingAuditor.auditJar(jar))).isEqualTo(expected);
+    assertThat(cache.missCount()).isEqualTo(2);
+    assertThat(cache.hitCount()).isEqualTo(4);
+    assertThat(files(cacheDirectory, ".ref")).hasSize(2);
+
+    // Different rules don't share entries
+    AuditCache otherRulesCache = new AuditCache(cacheDirectory, Long.MAX_VALUE, "other");
+    auditor.withCache(otherRulesCache).auditJar(jar);
+    assertThat(otherRulesCache.missCount()).isEqualTo(1);
+    assertThat(entries(cacheDirectory)).hasSize(2);
+  }
+
+  @Test
+  public void testAudit_cacheEvictsLeastRecentlyUsed() throws Exception {
+    Path jar = jar(compile(USES_BETA));
+    Path cacheDirectory = temporaryFolder.newFolder("cache").toPath();
+    ClassFileAuditor auditor = new ClassFileAuditor(new BetaChecker(), guavaIndex());
+    new AuditCache(cacheDirectory, Long.MAX_VALUE, "old").findings(jar, auditor::auditJar);
+    Path oldEntry = entries(cacheDirectory).get(0);
+    Files.setLastModifiedTime(oldEntry, FileTime.fromMillis(0));
+    AuditCache cache = new AuditCache(cacheDirectory, Files.size(oldEntry), "new");
+    cache.findings(jar, auditor::auditJar);
+
+    cache.evict();
+
+    List<Path> entries = entries(cacheDirectory);
+    assertThat(entries).hasSize(1);
+    assertThat(entries).doesNotContain(oldEntry);
+    // The ref to the evicted entry goes with it
+    assertThat(files(cacheDirectory, ".ref")).hasSize(1);
+  }
+
+  private static List<Path> entries(Path cacheDirectory) throws Exception {
+    return files(cacheDirectory, ".audit");
+  }
+
+  private static List<Path> files(Path cacheDirectory, String suffix) throws Exception {
+    try (Stream<Path> files = Files.list(cacheDirectory)) {
+      return files.filter(file -> file.toString().endsWith(suffix)).collect(toImmutableList());
+    }
+  }
+
+  private static AnnotatedApiIndex guavaIndex() throws Exception {
+    return AnnotatedApiIndexGenerator.generate(guavaJar(), "com.google.common.annotations.Beta");
+  }
+
+  private static File guavaJar() throws Exception {
+    return new File(ImmutableSet.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+  }
+
+  /** Compiles the given sources against Guava and returns the output directory. */
+  private Path compile(JavaFileObject... sources) throws Exception {
+    Path output = temporaryFolder.newFolder("classes").toPath();
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    boolean success =
+        compiler
+            .getTask(
+                null,
+                null,
+                null,
+                ImmutableList.of(
+                    "-proc:none",
+                    "-d",
+                    output.toString(),
+                    "-classpath",
+                    guavaJar().getAbsolutePath()),
+                null,
+                ImmutableList.copyOf(sources))
+            .call();
+    assertThat(success).isTrue();
+    return output;
+  }
+
+  /** Packages the given directory of class files as a jar. */
+  private Path jar(Path classes) throws Exception {
+    Path jar = temporaryFolder.newFile("classes.jar").toPath();
+    try (OutputStream out = Files.newOutputStream(jar);
+        JarOutputStream jarOut = new JarOutputStream(out);
+        Stream<Path> files = Files.walk(classes)) {
+      for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+        jarOut.putNextEntry(new JarEntry(classes.relativize(file).toString().replace('\\', '/')));
+        jarOut.write(Files.readAllBytes(file));
+        jarOut.closeEntry();
+      }
+    }
+    return jar;
+  }
+
+  /** Returns the class and API of each finding. */
+  private static List<String> apis(List<ClassFileAuditor.Finding> findings) {
+    List<String> apis = new ArrayList<>();
+    for (ClassFileAuditor.Finding finding : findings) {
+      apis.add(finding.className + "\t" + finding.api);
+    }
+    return apis;
+  }
+}
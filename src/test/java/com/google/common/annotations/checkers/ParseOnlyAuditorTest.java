@@ -0,0 +1,237 @@
+/*
+ * Copyright (C) 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.annotations.checkers;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for {@link ParseOnlyAuditor}.
+ */
+@RunWith(JUnit4.class)
+public class ParseOnlyAuditorTest {
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testAudit() throws Exception {
+    Path root = temporaryFolder.newFolder("src").toPath();
+    Path file =
+        write(
+            root.resolve("example/UsesBeta.java"),
+            "package example;",
+            "",
+            "import static com.google.common.collect.Streams.zip;",
+            "",
+            "import com.google.common.collect.*;",
+            "import com.google.common.io.Files;",
+            "import java.util.function.BiFunction;",
+            "import java.util.stream.Stream;",
+            "",
+            "public class UsesBeta {",
+            "  public static void main(String[] args) {",
+            "    Files.createTempDir();", // error
+            "    Streams.zip(Stream.of(1), Stream.of(2), Integer::sum);", // error
+            "    zip(Stream.of(1), Stream.of(2), Integer::sum);", // error
+            "    com.google.common.collect.Streams.zip(", // error
+            "        Stream.of(1), Stream.of(2), Integer::sum);",
+            "    Streams.concat(Stream.of(1));",
+            "    Object zipper = (Runnable) Streams::zip;", // error
+            "    ImmutableList.of(1).asList();",
+            "  }",
+            "",
+            "  @SuppressWarnings(\"BetaApi\")",
+            "  public static void suppressed() {",
+            "    Streams.zip(Stream.of(1), Stream.of(2), Integer::sum);",
+            "  }",
+            "}");
+    Path unrelated =
+        write(
+            root.resolve("example/Unrelated.java"),
+            "package example;",
+            "",
+            "public class Unrelated {",
+            "  public static void zip() {}",
+            "}");
+
+    assertThat(lines(audit(guavaIndex(), file, unrelated)))
+        .containsExactly(
+            file + ":12\t[BetaApi] com.google.common.io.Files#createTempDir",
+            file + ":13\t[BetaApi] com.google.common.collect.Streams#zip",
+            file + ":14\t[BetaApi] com.google.common.collect.Streams#zip",
+            file + ":15\t[BetaApi] com.google.common.collect.Streams#zip",
+            file + ":18\t[BetaApi] com.google.common.collect.Streams#zip")
+        .inOrder();
+  }
+
+  @Test
+  public void testAudit_annotatedClassAndIgnoredTypes() throws Exception {
+    Path file =
+        write(
+            temporaryFolder.getRoot().toPath().resolve("UsesCache.java"),
+            "package example;",
+            "",
+            "import com.google.common.cache.Cache;",
+            "import com.google.common.cache.CacheBuilder;",
+            "import com.google.common.math.Stats;",
+            "",
+            "public class UsesCache {",
+            "  public static void main(String[] args) {",
+            "    Cache<String, String> cache = CacheBuilder.newBuilder().build();",
+            "    Object stats = Stats.class;", // error
+            "    stats = new com.google.common.math.Stats();", // error
+            "    stats = Stats.of(1);", // error
+            "  }",
+            "}");
+    // Pretend Cache and Stats are annotated, as Cache used to be
+    AnnotatedApiIndex index =
+        AnnotatedApiIndex.create(
+            "com.google.common.annotations.Beta",
+            "test",
+            ImmutableList.of(
+                "com.google.common.cache.Cache",
+                "com.google.common.cache.CacheBuilder",
+                "com.google.common.math.Stats"),
+            ImmutableList.of("com.google.common.cache.Cache", "com.google.common.math.Stats"));
+
+    // BetaChecker ignores Cache, so only the uses of Stats are reported
+    assertThat(lines(audit(index, file)))
+        .containsExactly(
+            file + ":10\t[BetaApi] com.google.common.math.Stats",
+            file + ":11\t[BetaApi] com.google.common.math.Stats",
+            file + ":12\t[BetaApi] com.google.common.math.Stats#of")
+        .inOrder();
+  }
+
+  @Test
+  public void testAudit_manyFiles() throws Exception {
+    Path root = temporaryFolder.newFolder("src").toPath();
+    List<Path> files = new ArrayList<>();
+    for (int i = 0; i < 600; i++) {
+      files.add(
+          write(
+              root.resolve("example/Test" + i + ".java"),
+              "package example;",
+              "",
+              "import com.google.common.collect.Streams;",
+              "import java.util.stream.Stream;",
+              "",
+              "public class Test" + i + " {",
+              "  Object zipped = Streams.zip(Stream.of(1), Stream.of(2), Integer::sum);", // error
+              "}"));
+    }
+
+    List<SourceAuditor.Finding> findings = audit(guavaIndex(), files.toArray(new Path[0]));
+
+    assertThat(findings.stream().map(finding -> finding.file).collect(toImmutableList()))
+        .containsExactlyElementsIn(files.stream().map(Path::toString).collect(toImmutableList()))
+        .inOrder();
+  }
+
+  @Test
+  public void testAudit_comparedWithSourceAuditor() throws Exception {
+    // The repo's test sources, plus the benchmarks' service that uses @Beta APIs like real code
+    Path guavaHeavy = temporaryFolder.newFolder("guava-heavy").toPath();
+    Files.copy(
+        Paths.get(
+            "benchmarks/src/main/resources/com/google/common/annotations/checkers/benchmarks",
+            "GuavaHeavy.java"),
+        Files.createDirectories(guavaHeavy.resolve("example/inventory"))
+            .resolve("GuavaHeavy.java"));
+    ImmutableList<Path> roots = ImmutableList.of(Paths.get("src/test/java"), guavaHeavy);
+    List<Path> files = SourceAuditor.sourceFiles(roots);
+
+    SourceAuditor.Result full;
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      full =
+          new SourceAuditor(System.getProperty("java.class.path"), roots, ImmutableList.of())
+              .audit(files, 1, executor, null);
+    } finally {
+      executor.shutdown();
+    }
+    List<SourceAuditor.Finding> parsed = audit(guavaIndex(), files.toArray(new Path[0]));
+
+    assertThat(full.errors).isEmpty();
+    ImmutableSet<String> fullLines = fileLines(full.findings);
+    ImmutableSet<String> parsedLines = fileLines(parsed);
+    // Nothing is reported that isn't there...
+    assertThat(fullLines).containsAtLeastElementsIn(parsedLines);
+    // ...but instance methods called on fields are missed, since their types aren't known
+    String file = guavaHeavy.resolve("example/inventory/GuavaHeavy.java").toString();
+    assertThat(Sets.difference(fullLines, parsedLines))
+        .containsExactly(file + ":87", file + ":90", file + ":100");
+  }
+
+  /** Returns the file and line of each finding. */
+  private static ImmutableSet<String> fileLines(List<SourceAuditor.Finding> findings) {
+    return findings.stream()
+        .map(finding -> finding.file + ":" + finding.line)
+        .collect(toImmutableSet());
+  }
+
+  private static List<SourceAuditor.Finding> audit(AnnotatedApiIndex index, Path... files)
+      throws Exception {
+    ParseOnlyAuditor auditor = new ParseOnlyAuditor(new BetaChecker(), index);
+    ForkJoinPool pool = new ForkJoinPool(2);
+    try {
+      return auditor.audit(ImmutableList.copyOf(files), pool);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /** Returns each finding as its file, line and message, without the column. */
+  private static List<String> lines(List<SourceAuditor.Finding> findings) {
+    return findings.stream()
+        .map(finding -> finding.file + ":" + finding.line + "\t" + finding.message)
+        .collect(toImmutableList());
+  }
+
+  private static AnnotatedApiIndex guavaIndex() throws Exception {
+    return AnnotatedApiIndexGenerator.generate(guavaJar(), "com.google.common.annotations.Beta");
+  }
+
+  private static File guavaJar() throws Exception {
+    return new File(ImmutableSet.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+  }
+
+  private static Path write(Path file, String... lines) throws Exception {
+    Files.createDirectories(file.getParent());
+    return Files.write(file, ImmutableList.copyOf(lines), UTF_8);
+  }
+}
@@ -0,0 +1,312 @@
+/*
+ * Copyright (C) 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.annotations.checkers;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.testing.compile.JavaFileObjects;
+import java.io.File;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+import javax.tools.Diagnostic;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.ToolProvider;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for {@link SharedVerdictCache}.
+ */
+@RunWith(JUnit4.class)
+public class SharedVerdictCacheTest {
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private static final JavaFileObject BETA_LIBRARY =
+      JavaFileObjects.forSourceLines(
+          "com.google.common.sharedtest.BetaLibrary",
+          "package com.google.common.sharedtest;",
+          "",
+          "import com.google.common.annotations.Beta;",
+          "",
+          "@Beta",
+          "public class BetaLibrary {",
+          "  public static void method() {}",
+          "}");
+
+  private static final JavaFileObject LIBRARY =
+      JavaFileObjects.forSourceLines(
+          "com.google.common.sharedtest.Library",
+          "package com.google.common.sharedtest;",
+          "",
+          "import com.google.common.annotations.Beta;",
+          "",
+          "public class Library {",
+          "  @Beta public static void betaMethod() {}",
+          "  public static void method() {}",
+          "}");
+
+  private static final JavaFileObject USES_LIBRARY =
+      JavaFileObjects.forSourceLines(
+          "example.Test",
+          "package example;",
+          "",
+          "import com.google.common.sharedtest.BetaLibrary;",
+          "import com.google.common.sharedtest.Library;",
+          "",
+          "public class Test {",
+          "  public static void foo() {",
+          "    BetaLibrary.method();", // error
+          "    Library.betaMethod();", // error
+          "    Library.method();",
+          "  }",
+          "}");
+
+  @Test
+  public void testOrigin_jar() throws Exception {
+    Path jar = temporaryFolder.newFile("lib.jar").toPath();
+    Files.write(jar, new byte[] {1});
+    URI classfile = URI.create("jar:" + jar.toUri() + "!/com/example/Foo$Bar.class");
+
+    String origin = SharedVerdictCache.origin(classfile, "com.example.Foo$Bar", 0);
+
+    assertThat(origin).startsWith("jar:" + jar.toUri() + "!/@");
+    assertThat(SharedVerdictCache.origin(classfile, "com.example.Foo$Bar", 0)).isEqualTo(origin);
+    // Rebuilding the jar in place changes its origin
+    Files.write(jar, new byte[] {1, 2});
+    assertThat(SharedVerdictCache.origin(classfile, "com.example.Foo$Bar", 0))
+        .isNotEqualTo(origin);
+  }
+
+  @Test
+  public void testOrigin_directoryInJar() throws Exception {
+    Path ctSym = temporaryFolder.newFile("ct.sym").toPath();
+    String jarUri = "jar:" + ctSym.toUri() + "!/";
+
+    String origin8 =
+        SharedVerdictCache.origin(
+            URI.create(jarUri + "8/java.base/java/lang/Object.sig"), "java.lang.Object", 0);
+    String origin9 =
+        SharedVerdictCache.origin(
+            URI.create(jarUri + "9/java.base/java/lang/Object.sig"), "java.lang.Object", 0);
+
+    assertThat(origin8).startsWith(jarUri + "8/java.base/@");
+    assertThat(origin9).startsWith(jarUri + "9/java.base/@");
+  }
+
+  @Test
+  public void testOrigin_directory() {
+    URI classfile = URI.create("file:/classes/com/example/Foo.class");
+
+    assertThat(SharedVerdictCache.origin(classfile, "com.example.Foo", 123))
+        .isEqualTo("file:/classes/@123");
+    assertThat(SharedVerdictCache.origin(classfile, "com.example.Foo", 0)).isNull();
+  }
+
+  @Test
+  public void testOrigin_notShared() {
+    assertThat(
+            SharedVerdictCache.origin(
+                URI.create("jrt:/java.base/java/lang/Object.class"), "java.lang.Object", 123))
+        .isNull();
+    assertThat(
+            SharedVerdictCache.origin(
+                URI.create("jar:file:/missing.jar!/com/example/Foo.class"), "com.example.Foo", 0))
+        .isNull();
+  }
+
+  @Test
+  public void testGetAndPut() {
+    SharedVerdictCache cache = new SharedVerdictCache(64);
+
+    assertThat(cache.get("a.jar@1", "com.example.Foo")).isNull();
+    cache.put("a.jar@1", "com.example.Foo", 1);
+    cache.put("a.jar@1", "com.example.Foo#bar()", 0);
+
+    assertThat(cache.get("a.jar@1", "com.example.Foo")).isEqualTo(1L);
+    assertThat(cache.get("a.jar@1", "com.example.Foo#bar()")).isEqualTo(0L);
+    assertThat(cache.get("a.jar@2", "com.example.Foo")).isNull();
+    assertThat(cache.hitCount()).isEqualTo(2);
+    assertThat(cache.missCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void testEviction() {
+    SharedVerdictCache cache = new SharedVerdictCache(64);
+
+    for (int i = 0; i < 1000; i++) {
+      cache.put("a.jar@1", "com.example.Foo" + i, i % 2);
+    }
+
+    assertThat(cache.size()).isAtMost(64);
+    assertThat(cache.get("a.jar@1", "com.example.Foo999")).isEqualTo(1L);
+    assertThat(cache.get("a.jar@1", "com.example.Foo0")).isNull();
+  }
+
+  @Test
+  public void testConcurrentGetAndPut() throws Exception {
+    SharedVerdictCache cache = new SharedVerdictCache(256);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<?>> results = new ArrayList<>();
+      for (int thread = 0; thread < 8; thread++) {
+        int seed = thread;
+        results.add(
+            executor.submit(
+                () -> {
+                  for (int i = 0; i < 20_000; i++) {
+                    int api = (i * 31 + seed) % 1000;
+                    Long verdict = cache.get("a.jar@1", "com.example.Foo" + api);
+                    if (verdict == null) {
+                      cache.put("a.jar@1", "com.example.Foo" + api, api % 3);
+                    } else {
+                      assertThat(verdict).isEqualTo((long) (api % 3));
+                    }
+                  }
+                }));
+      }
+      for (Future<?> result : results) {
+        result.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    assertThat(cache.size()).isAtMost(256);
+    assertThat(cache.hitCount()).isGreaterThan(0);
+  }
+
+  @Test
+  public void testConcurrentCompilations() throws Exception {
+    Path jar = jar(compile(BETA_LIBRARY, LIBRARY));
+    String classpath = jar + File.pathSeparator + System.getProperty("java.class.path");
+    Path firstStats = temporaryFolder.newFile("first.json").toPath();
+    Path lastStats = temporaryFolder.newFile("last.json").toPath();
+
+    TestCompiler first =
+        new TestCompiler(
+            BetaChecker.class, "-classpath", classpath, "-XepOpt:BetaApi:StatsFile=" + firstStats);
+    first.assertErrorsOnLines("example/Test.java", first.compile(USES_LIBRARY), 8, 9);
+
+    TestCompiler compiler = new TestCompiler(BetaChecker.class, "-classpath", classpath);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<List<Diagnostic<? extends JavaFileObject>>>> results = new ArrayList<>();
+      for (int i = 0; i < 32; i++) {
+        Callable<List<Diagnostic<? extends JavaFileObject>>> compilation =
+            () -> compiler.compile(USES_LIBRARY);
+        results.add(executor.submit(compilation));
+      }
+      for (Future<List<Diagnostic<? extends JavaFileObject>>> result : results) {
+        compiler.assertErrorsOnLines("example/Test.java", result.get(), 8, 9);
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    TestCompiler last =
+        new TestCompiler(
+            BetaChecker.class, "-classpath", classpath, "-XepOpt:BetaApi:StatsFile=" + lastStats);
+    last.assertErrorsOnLines("example/Test.java", last.compile(USES_LIBRARY), 8, 9);
+    // The first compilation has to read the annotations; the last finds its verdicts shared
+    assertThat(new String(Files.readAllBytes(firstStats), UTF_8))
+        .contains("\"sharedVerdictLookups\": 0,");
+    assertThat(new String(Files.readAllBytes(lastStats), UTF_8))
+        .containsMatch("\"sharedVerdictLookups\": [1-9]");
+  }
+
+  @Test
+  public void testConcurrentCompilations_sharedCacheDisabled() throws Exception {
+    Path jar = jar(compile(BETA_LIBRARY, LIBRARY));
+    String classpath = jar + File.pathSeparator + System.getProperty("java.class.path");
+    Path stats = temporaryFolder.newFile("stats.json").toPath();
+    TestCompiler compiler = new TestCompiler(BetaChecker.class, "-classpath", classpath);
+    compiler.assertErrorsOnLines("example/Test.java", compiler.compile(USES_LIBRARY), 8, 9);
+
+    TestCompiler withoutSharedCache =
+        new TestCompiler(
+            BetaChecker.class,
+            "-classpath",
+            classpath,
+            "-XepOpt:BetaApi:SharedCache=false",
+            "-XepOpt:BetaApi:StatsFile=" + stats);
+    withoutSharedCache.assertErrorsOnLines(
+        "example/Test.java", withoutSharedCache.compile(USES_LIBRARY), 8, 9);
+    assertThat(new String(Files.readAllBytes(stats), UTF_8))
+        .contains("\"sharedVerdictLookups\": 0,");
+  }
+
+  private static File guavaJar() throws Exception {
+    return new File(ImmutableSet.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+  }
+
+  /** Compiles the given sources against Guava and returns the output directory. */
+  private Path compile(JavaFileObject... sources) throws Exception {
+    Path output = temporaryFolder.newFolder("classes").toPath();
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    boolean success =
+        compiler
+            .getTask(
+                null,
+                null,
+                null,
+                ImmutableList.of(
+                    "-proc:none",
+                    "-d",
+                    output.toString(),
+                    "-classpath",
+                    guavaJar().getAbsolutePath()),
+                null,
+                ImmutableList.copyOf(sources))
+            .call();
+    assertThat(success).isTrue();
+    return output;
+  }
+
+  /** Packages the given directory of class files as a jar. */
+  private Path jar(Path classes) throws Exception {
+    Path jar = temporaryFolder.newFile("classes.jar").toPath();
+    try (OutputStream out = Files.newOutputStream(jar);
+        JarOutputStream jarOut = new JarOutputStream(out);
+        Stream<Path> files = Files.walk(classes)) {
+      for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+        jarOut.putNextEntry(new JarEntry(classes.relativize(file).toString().replace('\\', '/')));
+        Files.copy(file, jarOut);
+        jarOut.closeEntry();
+      }
+    }
+    return jar;
+  }
+}
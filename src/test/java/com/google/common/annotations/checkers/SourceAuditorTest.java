@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.annotations.checkers;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for {@link SourceAuditor}.
+ */
+@RunWith(JUnit4.class)
+public class SourceAuditorTest {
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testAudit_shards() throws Exception {
+    Path root = temporaryFolder.newFolder("src").toPath();
+    Path a =
+        write(
+            root.resolve("example/a/A.java"),
+            "package example.a;",
+            "",
+            "import com.google.common.collect.Streams;",
+            "import java.util.stream.Stream;",
+            "",
+            "public class A {",
+            "  public static Stream<Integer> zip() {",
+            "    return Streams.zip(Stream.of(1), Stream.of(2), Integer::sum);", // error
+            "  }",
+            "}");
+    write(
+        root.resolve("example/b/B.java"),
+        "package example.b;",
+        "",
+        "import example.a.A;",
+        "",
+        "public class B {",
+        "  public static Object zip() {",
+        "    return A.zip();",
+        "  }",
+        "}");
+    Path c =
+        write(
+            root.resolve("example/c/C.java"),
+            "package example.c;",
+            "",
+            "import com.google.common.collect.Streams;",
+            "import example.b.B;",
+            "import java.util.stream.Stream;",
+            "",
+            "public class C {",
+            "  public static Object zip() {",
+            "    B.zip();",
+            "    return Streams.zip(", // error
+            "        Stream.of(1), Stream.of(2), Integer::sum);",
+            "  }",
+            "}");
+    Path findingsFile = temporaryFolder.getRoot().toPath().resolve("findings.jsonl");
+    SourceAuditor auditor =
+        new SourceAuditor(
+            System.getProperty("java.class.path"), ImmutableList.of(root), ImmutableList.of());
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    SourceAuditor.Result result;
+    try {
+      result =
+          auditor.audit(
+              SourceAuditor.sourceFiles(ImmutableList.of(root)), 3, executor, findingsFile);
+    } finally {
+      executor.shutdown();
+    }
+
+    assertThat(result.errors.stream().map(Object::toString).collect(toImmutableList())).isEmpty();
+    assertThat(
+            result.findings.stream()
+                .map(finding -> finding.file + ":" + finding.line)
+                .collect(toImmutableList()))
+        .containsExactly(a + ":8", c + ":10")
+        .inOrder();
+    assertThat(result.findings.get(0).message).startsWith("[BetaApi]");
+    List<String> findings = Files.readAllLines(findingsFile, UTF_8);
+    assertThat(findings).hasSize(2);
+    assertThat(findings.get(0) + findings.get(1)).contains("\"startLine\":8");
+    assertThat(findings.get(0) + findings.get(1)).contains("\"startLine\":10");
+  }
+
+  @Test
+  public void testAudit_compileErrors() throws Exception {
+    Path root = temporaryFolder.newFolder("src").toPath();
+    Path broken =
+        write(
+            root.resolve("example/Broken.java"),
+            "package example;",
+            "",
+            "public class Broken {",
+            "  Missing missing;",
+            "}");
+    SourceAuditor auditor =
+        new SourceAuditor(
+            System.getProperty("java.class.path"), ImmutableList.of(root), ImmutableList.of());
+
+    ExecutorService executor = Executors.newFixedThreadPool(1);
+    SourceAuditor.Result result;
+    try {
+      result = auditor.audit(ImmutableList.of(broken), 1, executor, null);
+    } finally {
+      executor.shutdown();
+    }
+
+    assertThat(result.findings).isEmpty();
+    assertThat(result.errors).hasSize(1);
+    assertThat(result.errors.get(0).line).isEqualTo(4);
+  }
+
+  @Test
+  public void testShard() throws Exception {
+    Path root = temporaryFolder.newFolder("src").toPath();
+    Path large = Files.write(root.resolve("Large.java"), new byte[900]);
+    Path medium = Files.write(root.resolve("Medium.java"), new byte[500]);
+    Path small1 = Files.write(root.resolve("Small1.java"), new byte[300]);
+    Path small2 = Files.write(root.resolve("Small2.java"), new byte[100]);
+    List<Path> files = ImmutableList.of(large, medium, small1, small2);
+
+    assertThat(SourceAuditor.shard(files, 2))
+        .containsExactly(ImmutableList.of(large), ImmutableList.of(medium, small1, small2))
+        .inOrder();
+    assertThat(SourceAuditor.shard(files, 1)).containsExactly(files);
+    assertThat(SourceAuditor.shard(files, 10)).hasSize(4);
+    assertThat(SourceAuditor.shard(ImmutableList.of(), 4)).isEmpty();
+  }
+
+  private static Path write(Path file, String... lines) throws Exception {
+    Files.createDirectories(file.getParent());
+    return Files.write(file, ImmutableList.copyOf(lines), UTF_8);
+  }
+}
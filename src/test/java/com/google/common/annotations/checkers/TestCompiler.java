@@ -16,43 +16,130 @@
 
 package com.google.common.annotations.checkers;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableMultiset;
 import com.google.common.collect.ListMultimap;
-import com.google.common.io.Files;
+import com.google.common.io.ByteStreams;
 import com.google.common.primitives.Longs;
 import com.google.errorprone.BaseErrorProneJavaCompiler;
 import com.google.errorprone.BugCheckerInfo;
 import com.google.errorprone.bugpatterns.BugChecker;
 import com.google.errorprone.scanner.ScannerSupplier;
-import java.io.File;
+import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.net.URI;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 import javax.tools.Diagnostic;
 import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
 import javax.tools.JavaCompiler;
 import javax.tools.JavaCompiler.CompilationTask;
+import javax.tools.JavaFileManager.Location;
 import javax.tools.JavaFileObject;
+import javax.tools.JavaFileObject.Kind;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
 
 /**
  * Compiles Java sources with the {@link BetaChecker} and returns a list of diagnostics produced
  * by the compiler.
  *
+ * <p>Compilers are safe to use from several threads at once, so test classes can run in parallel.
+ * The Error Prone compiler for each checker is created once and shared, since it creates new
+ * checker instances for each compilation. Class files are discarded rather than written to disk,
+ * and file managers are pooled and reused, so the jars on the classpath are opened and indexed
+ * once per file manager rather than once per compilation. A file manager keeps the paths set by
+ * options such as {@code -classpath}, so it's only reused by compilations with the same ones.
+ *
  * @author Colin Decker
  */
 final class TestCompiler {
 
+  /**
+   * The system property that turns the compilation unit prefilter on for every compilation that
+   * doesn't set it itself, so that the tests can also be run with it on.
+   */
+  private static final String PREFILTER_PROPERTY = "testCompiler.prefilter";
+  /** Error Prone compilers running a single checker, shared by all tests. */
+  private static final ConcurrentMap<Class<? extends BugChecker>, JavaCompiler> COMPILERS =
+      new ConcurrentHashMap<>();
+
+  /**
+   * File managers not in use by a compilation, by the options that were applied to them. A file
+   * manager caches the contents of its paths, but isn't safe to use from two compilations at once.
+   */
+  private static final ConcurrentMap<ImmutableList<String>, Queue<StandardJavaFileManager>>
+      FILE_MANAGERS = new ConcurrentHashMap<>();
+
+  /** A file manager that's only asked which options it supports. */
+  private static final StandardJavaFileManager OPTIONS_FILE_MANAGER = newFileManager();
+
   private final Class<? extends BugChecker> checker;
+  private final String checkerName;
+  private final ImmutableList<String> options;
+  private final ImmutableList<String> fileManagerOptions;
 
-  TestCompiler(Class<? extends BugChecker> checker) {
+  /**
+   * Creates a compiler that runs the given checker, passing the given additional {@code options}
+   * (e.g. {@code -XepOpt} flags) to the compiler.
+   */
+  TestCompiler(Class<? extends BugChecker> checker, String... options) {
     this.checker = checker;
+    this.checkerName = BugCheckerInfo.create(checker).canonicalName();
+    ImmutableList.Builder<String> allOptions = ImmutableList.<String>builder().add(options);
+    String prefilterFlag = checkerName + ":CompilationUnitPrefilter";
+    if (prefilterForced()
+        && Arrays.stream(options).noneMatch(option -> option.contains(prefilterFlag))) {
+      allOptions.add("-XepOpt:" + prefilterFlag + "=true");
+    }
+    this.options = allOptions.build();
+    this.fileManagerOptions = fileManagerOptions(this.options);
+  }
+
+  /** Returns true if the prefilter is on for compilations that don't set it themselves. */
+  static boolean prefilterForced() {
+    return Boolean.getBoolean(PREFILTER_PROPERTY);
+  }
+
+  /**
+   * Returns the given options that javac passes on to the file manager, such as {@code -classpath}
+   * and {@code -sourcepath}, with their arguments.
+   */
+  private static ImmutableList<String> fileManagerOptions(List<String> options) {
+    ImmutableList.Builder<String> fileManagerOptions = ImmutableList.builder();
+    for (int i = 0; i < options.size(); i++) {
+      int arguments = OPTIONS_FILE_MANAGER.isSupportedOption(options.get(i));
+      if (arguments >= 0) {
+        fileManagerOptions.addAll(options.subList(i, Math.min(i + 1 + arguments, options.size())));
+        i += arguments;
+      }
+    }
+    return fileManagerOptions.build();
+  }
+
+  private static StandardJavaFileManager newFileManager() {
+    return ToolProvider.getSystemJavaCompiler().getStandardFileManager(null, Locale.ROOT, UTF_8);
   }
 
   // TODO(cgdecker): Would like to use compile-testing to avoid the need for this class
@@ -69,37 +156,171 @@ final class TestCompiler {
    */
   public List<Diagnostic<? extends JavaFileObject>> compile(
       Iterable<? extends JavaFileObject> sources) {
-    ScannerSupplier scannerSupplier = ScannerSupplier.fromBugCheckerClasses(checker);
+    JavaCompiler compiler =
+        COMPILERS.computeIfAbsent(
+            checker, c -> new BaseErrorProneJavaCompiler(ScannerSupplier.fromBugCheckerClasses(c)));
     DiagnosticCollector<JavaFileObject> collector = new DiagnosticCollector<>();
-    JavaCompiler compiler = new BaseErrorProneJavaCompiler(scannerSupplier);
-    File tmpDir = Files.createTempDir();
+    Queue<StandardJavaFileManager> fileManagers =
+        FILE_MANAGERS.computeIfAbsent(fileManagerOptions, o -> new ConcurrentLinkedQueue<>());
+    StandardJavaFileManager fileManager = fileManagers.poll();
+    if (fileManager == null) {
+      fileManager = newFileManager();
+    }
     CompilationTask task =
         compiler.getTask(
             new PrintWriter(System.err, true),
-            null /*filemanager*/,
+            new InMemoryOutputFileManager(fileManager),
             collector,
-            ImmutableList.of("-proc:none", "-d", tmpDir.getAbsolutePath()),
+            ImmutableList.<String>builder().add("-proc:none").addAll(options).build(),
             null /*classes*/,
             sources);
     try {
       task.call();
       return collector.getDiagnostics();
     } finally {
-      File[] files = tmpDir.listFiles();
-      if (files != null) {
-        for (File file : files) {
-          file.delete();
+      fileManagers.add(fileManager);
+    }
+  }
+
+  /**
+   * Returns a new batch that compiles test sources together with the given {@code sharedSources}
+   * in a single compilation.
+   */
+  Batch newBatch(JavaFileObject... sharedSources) {
+    return new Batch(ImmutableList.copyOf(sharedSources));
+  }
+
+  /**
+   * Independent test sources that are compiled together in one compilation, so that many test
+   * cases pay for compiler startup and classpath loading only once. Each test source must be in its
+   * own package. The diagnostics are split back out by source file, so each case can be checked
+   * with {@link #assertErrorsOnLines} against only its own diagnostics.
+   *
+   * <p>Sources are added up front, typically from static fields of the test class, and the batch
+   * is compiled the first time diagnostics are requested. Because the sources are compiled
+   * together, a compile error in one case may keep the checker from running on the others, in
+   * which case their assertions fail as well. The cases also share the checker's per-compilation
+   * caches, so a case that depends on what the checker has or hasn't seen yet in the compilation,
+   * or on its own flags, should be compiled on its own.
+   */
+  final class Batch {
+
+    private final ImmutableList<JavaFileObject> sharedSources;
+    private final Map<String, JavaFileObject> testSources = new LinkedHashMap<>();
+    private final Set<String> packageDirs = new HashSet<>();
+
+    /** Diagnostics in the test sources by file name, or null if the batch isn't compiled yet. */
+    private ImmutableListMultimap<String, Diagnostic<? extends JavaFileObject>> diagnosticsByFile;
+
+    /** Diagnostics that aren't in any test source, e.g. errors in the shared sources. */
+    private ImmutableList<Diagnostic<? extends JavaFileObject>> otherDiagnostics;
+
+    private Batch(ImmutableList<JavaFileObject> sharedSources) {
+      this.sharedSources = sharedSources;
+    }
+
+    /** Adds the given test source to this batch and returns its file name, e.g. "a/b/Test.java". */
+    synchronized String add(JavaFileObject source) {
+      checkState(diagnosticsByFile == null, "batch has already been compiled");
+      String file = source.getName();
+      int lastSlash = file.lastIndexOf('/');
+      String packageDir = lastSlash == -1 ? "" : file.substring(0, lastSlash);
+      checkArgument(
+          packageDirs.add(packageDir), "another source in the batch is in package %s", packageDir);
+      testSources.put(file, source);
+      return file;
+    }
+
+    /**
+     * Returns the diagnostics for the test source with the given file name, compiling the batch
+     * first if it hasn't been compiled yet. Diagnostics that aren't in any test source are included
+     * for every file, so that they fail every case.
+     */
+    synchronized List<Diagnostic<? extends JavaFileObject>> diagnostics(String file) {
+      checkArgument(testSources.containsKey(file), "no source %s in batch", file);
+      if (diagnosticsByFile == null) {
+        ImmutableListMultimap.Builder<String, Diagnostic<? extends JavaFileObject>> byFile =
+            ImmutableListMultimap.builder();
+        ImmutableList.Builder<Diagnostic<? extends JavaFileObject>> other =
+            ImmutableList.builder();
+        for (Diagnostic<? extends JavaFileObject> diagnostic :
+            compile(
+                ImmutableList.<JavaFileObject>builder()
+                    .addAll(sharedSources)
+                    .addAll(testSources.values())
+                    .build())) {
+          JavaFileObject source = diagnostic.getSource();
+          if (source != null && testSources.containsKey(source.getName())) {
+            byFile.put(source.getName(), diagnostic);
+          } else {
+            other.add(diagnostic);
+          }
         }
+        diagnosticsByFile = byFile.build();
+        otherDiagnostics = other.build();
       }
-      tmpDir.delete();
+      return ImmutableList.<Diagnostic<? extends JavaFileObject>>builder()
+          .addAll(otherDiagnostics)
+          .addAll(diagnosticsByFile.get(file))
+          .build();
     }
   }
 
-  private void assertErrorsOnLines(
-      String file,
-      List<Diagnostic<? extends JavaFileObject>> diagnostics,
-      long[] lines,
-      boolean omitDuplicateLines) {
+  /**
+   * A file manager that reads through to a standard file manager but discards everything the
+   * compiler writes.
+   */
+  private static final class InMemoryOutputFileManager
+      extends ForwardingJavaFileManager<StandardJavaFileManager> {
+
+    InMemoryOutputFileManager(StandardJavaFileManager fileManager) {
+      super(fileManager);
+    }
+
+    @Override
+    public JavaFileObject getJavaFileForOutput(
+        Location location, String className, Kind kind, FileObject sibling) {
+      return new DiscardedOutput(className.replace('.', '/') + kind.extension, kind);
+    }
+
+    @Override
+    public FileObject getFileForOutput(
+        Location location, String packageName, String relativeName, FileObject sibling) {
+      return new DiscardedOutput(packageName.replace('.', '/') + "/" + relativeName, Kind.OTHER);
+    }
+
+    @Override
+    public boolean isSameFile(FileObject a, FileObject b) {
+      return a instanceof DiscardedOutput || b instanceof DiscardedOutput
+          ? a.equals(b)
+          : super.isSameFile(a, b);
+    }
+
+    @Override
+    public void close() {
+      // The underlying file manager is reused by later compilations
+    }
+  }
+
+  /** An output file whose content is thrown away. */
+  private static final class DiscardedOutput extends SimpleJavaFileObject {
+    DiscardedOutput(String path, Kind kind) {
+      super(URI.create("mem:///" + path), kind);
+    }
+
+    @Override
+    public OutputStream openOutputStream() {
+      return ByteStreams.nullOutputStream();
+    }
+  }
+
+  /**
+   * Asserts that the given diagnostics contain errors with a message containing "[CheckerName]" on
+   * the given lines of the given file. If there should be multiple errors on a line, the line
+   * number must appear multiple times. There may not be any errors in any other file.
+   */
+  public void assertErrorsOnLines(
+      String file, List<Diagnostic<? extends JavaFileObject>> diagnostics, long... lines) {
     ListMultimap<String, Long> actualErrors = ArrayListMultimap.create();
     for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics) {
       String message = diagnostic.getMessage(Locale.US);
@@ -112,38 +333,14 @@ final class TestCompiler {
           "unexpected error in source file " + sourceName + ": " + message,
           file, sourceName);
 
-      long lineNumber = diagnostic.getLineNumber();
-      boolean omit = omitDuplicateLines && actualErrors.containsEntry(sourceName, lineNumber);
-      if (!omit) {
-        actualErrors.put(sourceName, lineNumber);
-      }
+      actualErrors.put(sourceName, diagnostic.getLineNumber());
 
       // any errors from the compiler that are not related to this checker should fail
-      assertThat(message).contains("[" + BugCheckerInfo.create(checker).canonicalName() + "]");
+      assertThat(message).contains("[" + checkerName + "]");
     }
 
     assertEquals(
         ImmutableMultiset.copyOf(Longs.asList(lines)),
         ImmutableMultiset.copyOf(actualErrors.get(file)));
   }
-
-  /**
-   * Asserts that the given diagnostics contain errors with a message containing "[CheckerName]" on
-   * the given lines of the given file. If there should be multiple errors on a line, the line
-   * number must appear multiple times. There may not be any errors in any other file.
-   */
-  public void assertErrorsOnLines(
-      String file, List<Diagnostic<? extends JavaFileObject>> diagnostics, long... lines) {
-    assertErrorsOnLines(file, diagnostics, lines, false);
-  }
-
-  /**
-   * Asserts that the given diagnostics contain errors with a message containing "[CheckerName]" on
-   * the given lines of the given file. Each line is only counted once, even if there are multiple
-   * errors on it.
-   */
-  public void assertErrorsOnUniqueLines(
-      String file, List<Diagnostic<? extends JavaFileObject>> diagnostics, long... lines) {
-    assertErrorsOnLines(file, diagnostics, lines, true);
-  }
 }
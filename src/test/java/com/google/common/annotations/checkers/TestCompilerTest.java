@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2026 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.common.annotations.checkers;
+
+import static com.google.common.annotations.checkers.BetaCheckerTest.ANNOTATED_CLASS;
+import static com.google.common.annotations.checkers.BetaCheckerTest.BETA;
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.google.testing.compile.JavaFileObjects;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for {@link TestCompiler}.
+ */
+@RunWith(JUnit4.class)
+public class TestCompilerTest {
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final TestCompiler compiler = new TestCompiler(BetaChecker.class);
+
+  @Test
+  public void testFileManagers_notReusedWithDifferentClasspath() throws IOException {
+    JavaFileObject usesGuava =
+        JavaFileObjects.forSourceLines(
+            "example.Test",
+            "package example;",
+            "",
+            "import com.google.common.collect.ImmutableList;",
+            "",
+            "public class Test {",
+            "  ImmutableList<String> list;",
+            "}");
+    TestCompiler withoutGuava =
+        new TestCompiler(
+            BetaChecker.class, "-classpath", temporaryFolder.newFolder().getAbsolutePath());
+
+    assertThat(withoutGuava.compile(usesGuava)).isNotEmpty();
+    // A file manager left with the empty classpath would fail this compilation too
+    assertThat(compiler.compile(usesGuava)).isEmpty();
+  }
+
+  @Test
+  public void testBatch_diagnosticsSplitBySource() {
+    TestCompiler.Batch batch = compiler.newBatch(BETA, ANNOTATED_CLASS);
+    String first =
+        batch.add(
+            JavaFileObjects.forSourceLines(
+                "first.Test",
+                "package first;",
+                "",
+                "import com.google.common.foo.AnnotatedClass;",
+                "",
+                "public class Test {",
+                "  Object annotated = AnnotatedClass.staticMethod();", // error
+                "}"));
+    String second =
+        batch.add(
+            JavaFileObjects.forSourceLines(
+                "second.Test",
+                "package second;",
+                "",
+                "public class Test {",
+                "  Object annotated =",
+                "      com.google.common.foo.AnnotatedClass.staticMethod();", // error
+                "}"));
+    String clean =
+        batch.add(
+            JavaFileObjects.forSourceLines(
+                "clean.Test", "package clean;", "", "public class Test {}"));
+
+    compiler.assertErrorsOnLines(first, batch.diagnostics(first), 6);
+    compiler.assertErrorsOnLines(second, batch.diagnostics(second), 5);
+    assertThat(batch.diagnostics(clean)).isEmpty();
+  }
+
+  @Test
+  public void testBatch_errorsOutsideTestSourcesGoToEveryCase() {
+    TestCompiler.Batch batch =
+        compiler.newBatch(
+            BETA,
+            JavaFileObjects.forSourceLines(
+                "shared.Broken", "package shared;", "", "public class Broken extends Missing {}"));
+    String first =
+        batch.add(
+            JavaFileObjects.forSourceLines(
+                "first.Test", "package first;", "", "public class Test {}"));
+    String second =
+        batch.add(
+            JavaFileObjects.forSourceLines(
+                "second.Test", "package second;", "", "public class Test {}"));
+
+    for (String file : new String[] {first, second}) {
+      List<Diagnostic<? extends JavaFileObject>> diagnostics = batch.diagnostics(file);
+      assertThat(diagnostics).hasSize(1);
+      assertThat(diagnostics.get(0).getMessage(Locale.US)).contains("Missing");
+    }
+  }
+
+  @Test
+  public void testBatch_rejectsSourcesInTheSamePackage() {
+    TestCompiler.Batch batch = compiler.newBatch(BETA);
+    batch.add(
+        JavaFileObjects.forSourceLines("example.First", "package example;", "class First {}"));
+
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            batch.add(
+                JavaFileObjects.forSourceLines(
+                    "example.Second", "package example;", "class Second {}")));
+  }
+}